@@ -0,0 +1,80 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Сериализация страниц ответа PageResponse (GET /api/cards, история переводов) тем же ObjectMapper,
+// что строит Spring Boot (JavaTimeModule, даты строками), в JSON и в CBOR (как CborConfig).
+// Размер ответа в байтах для каждого формата печатается при подготовке
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"10", "100"})
+    private int pageSize;
+
+    @Param({"json", "cbor"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private PageResponse<CardResponse> cards;
+    private PageResponse<TransferResponse> transfers;
+
+    @Setup
+    public void setUp() {
+        objectMapper = "cbor".equals(format)
+                ? Jackson2ObjectMapperBuilder.json()
+                        .factory(new CBORFactory())
+                        .featuresToEnable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY,
+                                SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                        .build()
+                : Jackson2ObjectMapperBuilder.json().build();
+
+        List<CardResponse> cardList = new ArrayList<>();
+        List<TransferResponse> transferList = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            cardList.add(new CardResponse(String.format("**** **** **** %04d", i), "BENCHMARK USER",
+                    LocalDate.now().plusYears(3), CardStatus.ACTIVE, new BigDecimal("1000.00"), 1L));
+            transferList.add(new TransferResponse((long) i, "**** **** **** 1111", "**** **** **** 2222",
+                    new BigDecimal("10.50"), LocalDateTime.now(), "Transfer " + i));
+        }
+        cards = PageResponse.of(new SliceImpl<>(cardList, PageRequest.of(0, pageSize), true));
+        transfers = PageResponse.of(new SliceImpl<>(transferList, PageRequest.of(0, pageSize), true));
+
+        try {
+            System.out.printf("%n[%s, pageSize=%d] payload bytes: cardPage=%d, transferPage=%d%n", format, pageSize,
+                    objectMapper.writeValueAsBytes(cards).length, objectMapper.writeValueAsBytes(transfers).length);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public byte[] cardPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(cards);
+    }
+
+    @Benchmark
+    public byte[] transferPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(transfers);
+    }
+}
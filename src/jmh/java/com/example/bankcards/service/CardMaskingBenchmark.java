@@ -0,0 +1,44 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Маскирование номера: getMaskedCardNumber (расшифровка + маска) вызывается
+// для каждой карты в каждом ответе API, maskCardNumber - только маска
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardMaskingBenchmark {
+
+    private CardService cardService;
+    private Card card;
+    private String cardNumber;
+
+    @Setup
+    public void setUp() {
+        EncryptionService encryptionService = new EncryptionService();
+        EncryptionBenchmark.setField(encryptionService, "secretKey", "my16bytekey12345");
+
+        cardService = new CardService();
+        EncryptionBenchmark.setField(cardService, "encryptionService", encryptionService);
+
+        cardNumber = "4111 1111 1111 1111";
+        card = new Card();
+        card.setCardNumber(encryptionService.encrypt(cardNumber));
+    }
+
+    @Benchmark
+    public String getMaskedCardNumber() {
+        return cardService.getMaskedCardNumber(card);
+    }
+
+    @Benchmark
+    public String maskCardNumber() {
+        return CardService.maskCardNumber(cardNumber);
+    }
+}
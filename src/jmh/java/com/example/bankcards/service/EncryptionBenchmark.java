@@ -0,0 +1,59 @@
+package com.example.bankcards.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Шифрование/расшифровка номера карты (выполняется на каждый запрос с номером карты).
+// keyVersion=1 - формат v1:<base64> после ротации ключа
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncryptionBenchmark {
+
+    @Param({"0", "1"})
+    private int keyVersion;
+
+    private EncryptionService encryptionService;
+    private String cardNumber;
+    private String encryptedCardNumber;
+
+    @Setup
+    public void setUp() {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.of("encryption.keys.v1", "benchmarkKeyV1!!")));
+
+        encryptionService = new EncryptionService();
+        setField(encryptionService, "secretKey", "my16bytekey12345");
+        setField(encryptionService, "currentKeyVersion", keyVersion);
+        setField(encryptionService, "environment", environment);
+
+        cardNumber = "4111111111111111";
+        encryptedCardNumber = encryptionService.encrypt(cardNumber);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptionService.encrypt(cardNumber);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionService.decrypt(encryptedCardNumber);
+    }
+
+    static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
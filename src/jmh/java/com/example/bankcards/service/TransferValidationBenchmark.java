@@ -0,0 +1,106 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.InsufficientFundsException;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// Проверки перевода (две карты + достаточность средств), как в TransactionService.transferBetweenCards.
+// legacy* - прежняя реализация для сравнения: маскирование (расшифровка) обоих номеров до проверок,
+// String.format через doubleValue и исключение со стеком.
+// Разница transferValidation и legacyTransferValidation - экономия CPU на каждом переводе
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferValidationBenchmark {
+
+    private CardService cardService;
+    private Card fromCard;
+    private Card toCard;
+    private BigDecimal amount;
+    private BigDecimal tooLargeAmount;
+
+    @Setup
+    public void setUp() {
+        EncryptionService encryptionService = new EncryptionService();
+        EncryptionBenchmark.setField(encryptionService, "secretKey", "my16bytekey12345");
+
+        cardService = new CardService();
+        EncryptionBenchmark.setField(cardService, "encryptionService", encryptionService);
+
+        fromCard = card(encryptionService.encrypt("4111111111111111"));
+        toCard = card(encryptionService.encrypt("5500000000000004"));
+        amount = new BigDecimal("10.50");
+        tooLargeAmount = new BigDecimal("1000000.00");
+    }
+
+    private static Card card(String cardNumber) {
+        Card card = new Card();
+        card.setCardNumber(cardNumber);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(new BigDecimal("1000.00"));
+        return card;
+    }
+
+    @Benchmark
+    public void transferValidation() {
+        cardService.validateCardForTransaction(fromCard);
+        cardService.validateCardForTransaction(toCard);
+        cardService.validateSufficientFunds(fromCard, amount);
+    }
+
+    @Benchmark
+    public void legacyTransferValidation() {
+        legacyValidateCard(fromCard);
+        legacyValidateCard(toCard);
+        legacyValidateSufficientFunds(fromCard, amount);
+    }
+
+    // Отказ по нехватке средств; сообщение не читается (как при откате транзакции до обработчика)
+    @Benchmark
+    public Object insufficientFunds() {
+        try {
+            cardService.validateSufficientFunds(fromCard, tooLargeAmount);
+            return null;
+        } catch (InsufficientFundsException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object legacyInsufficientFunds() {
+        try {
+            legacyValidateSufficientFunds(fromCard, tooLargeAmount);
+            return null;
+        } catch (LegacyException e) {
+            return e;
+        }
+    }
+
+    private void legacyValidateCard(Card card) {
+        String maskedNumber = cardService.getMaskedCardNumber(card);
+        if (card.getStatus() != CardStatus.ACTIVE) {
+            throw new LegacyException("Card is not active: " + maskedNumber);
+        }
+    }
+
+    private void legacyValidateSufficientFunds(Card card, BigDecimal amount) {
+        if (card.getBalance().compareTo(amount) < 0) {
+            String maskedNumber = cardService.getMaskedCardNumber(card);
+            throw new LegacyException(String.format("Insufficient funds on card %s: balance=%.2f, required=%.2f",
+                    maskedNumber, card.getBalance().doubleValue(), amount.doubleValue()));
+        }
+    }
+
+    private static class LegacyException extends RuntimeException {
+        LegacyException(String message) {
+            super(message);
+        }
+    }
+}
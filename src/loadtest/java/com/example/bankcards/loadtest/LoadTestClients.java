@@ -0,0 +1,167 @@
+package com.example.bankcards.loadtest;
+
+import com.example.bankcards.loadtest.LoadTestDataSeeder.SeededUser;
+import com.example.bankcards.loadtest.LoadTestSettings.Operation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Клиенты нагрузки: каждый работает от имени одного пользователя (клиент i -> пользователь i % users),
+// логинится и в цикле выполняет операции из смеси до окончания прогона
+class LoadTestClients {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final LoadTestSettings settings;
+    private final LoadTestDataSeeder.SeededData data;
+    private final LoadTestStats stats = new LoadTestStats();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient;
+
+    private volatile boolean running = true;
+
+    LoadTestClients(String baseUrl, LoadTestSettings settings, LoadTestDataSeeder.SeededData data) {
+        this.baseUrl = baseUrl;
+        this.settings = settings;
+        this.data = data;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    LoadTestStats run() throws Exception {
+        ExecutorService executor = newClientExecutor(settings.clients);
+        List<Future<?>> clients = new ArrayList<>();
+        for (int i = 0; i < settings.clients; i++) {
+            SeededUser user = data.users.get(i % data.users.size());
+            clients.add(executor.submit(() -> runClient(user)));
+        }
+
+        System.out.printf("Warming up for %d s...%n", settings.warmupSeconds);
+        TimeUnit.SECONDS.sleep(settings.warmupSeconds);
+        stats.startMeasuring();
+        System.out.printf("Measuring for %d s...%n", settings.durationSeconds);
+        TimeUnit.SECONDS.sleep(settings.durationSeconds);
+        stats.stopMeasuring();
+
+        running = false;
+        for (Future<?> client : clients) {
+            client.get();
+        }
+        executor.shutdown();
+        return stats;
+    }
+
+    // Виртуальные потоки на Java 21+ (через reflection - проект собирается под Java 17)
+    private static ExecutorService newClientExecutor(int clients) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            System.out.println("Clients run on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Virtual threads are not available, using " + clients + " platform threads");
+            return Executors.newFixedThreadPool(clients);
+        }
+    }
+
+    private void runClient(SeededUser user) {
+        String token = null;
+        while (running) {
+            try {
+                Operation operation = token == null
+                        ? Operation.LOGIN
+                        : settings.pick(ThreadLocalRandom.current().nextInt(settings.totalWeight));
+                String newToken = execute(operation, user, token);
+                if (newToken != null) {
+                    token = newToken;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Выполнить операцию; для LOGIN возвращает новый токен
+    private String execute(Operation operation, SeededUser user, String token) throws InterruptedException {
+        HttpRequest request = buildRequest(operation, user, token);
+        long startTime = System.nanoTime();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            stats.record(operation, System.nanoTime() - startTime, response.statusCode());
+
+            if (operation == Operation.LOGIN && response.statusCode() == 200) {
+                return objectMapper.readTree(response.body()).get("token").asText();
+            }
+        } catch (IOException e) {
+            stats.record(operation, System.nanoTime() - startTime, -1);
+        }
+        return null;
+    }
+
+    private HttpRequest buildRequest(Operation operation, SeededUser user, String token) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> cards = user.cardNumbers;
+        String card = cards.get(random.nextInt(cards.size()));
+
+        switch (operation) {
+            case LOGIN:
+                return json(baseUrl + "/api/auth/login", null, Map.of(
+                        "username", user.username,
+                        "password", LoadTestDataSeeder.PASSWORD));
+            case TRANSFER:
+                String toCard = cards.get(random.nextInt(cards.size()));
+                while (toCard.equals(card)) {
+                    toCard = cards.get(random.nextInt(cards.size()));
+                }
+                return json(baseUrl + "/api/transactions/transfer", token, Map.of(
+                        "fromCardNumber", card,
+                        "toCardNumber", toCard,
+                        "amount", random.nextInt(1, 5000) / 100.0,
+                        "description", "load test"));
+            case HISTORY:
+                return get(baseUrl + "/api/transactions/history?cardNumber=" + card + "&size=10", token);
+            case CARDS:
+                return get(baseUrl + "/api/cards?size=10", token);
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    private HttpRequest get(String url, String token) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private HttpRequest json(String url, String token, Map<String, Object> body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json");
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        try {
+            return builder.POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body))).build();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize request body", e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.bankcards.loadtest;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.service.EncryptionService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Тестовые данные: пользователи loaduser<N> с одним паролем и по cardsPerUser карт на каждого.
+// Номер карты: 4 + номер прогона (3 цифры) + порядковый номер (12 цифр), чтобы повторные прогоны
+// на одной базе не пересекались
+class LoadTestDataSeeder {
+
+    static final String PASSWORD = "loadtest-password";
+    static final BigDecimal INITIAL_BALANCE = new BigDecimal("10000.00");
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final EncryptionService encryptionService;
+    private final PasswordEncoder passwordEncoder;
+
+    LoadTestDataSeeder(ApplicationContext context) {
+        this.entityManager = SharedEntityManagerCreator.createSharedEntityManager(
+                context.getBean(EntityManagerFactory.class));
+        this.transactionTemplate = context.getBean(TransactionTemplate.class);
+        this.encryptionService = context.getBean(EncryptionService.class);
+        this.passwordEncoder = context.getBean(PasswordEncoder.class);
+    }
+
+    // Пользователь и оригинальные номера его карт
+    static class SeededUser {
+        final String username;
+        final List<String> cardNumbers = new ArrayList<>();
+
+        SeededUser(String username) {
+            this.username = username;
+        }
+    }
+
+    static class SeededData {
+        final List<SeededUser> users = new ArrayList<>();
+    }
+
+    SeededData seed(LoadTestSettings settings) {
+        long startTime = System.currentTimeMillis();
+        // BCrypt дорогой - один хэш на всех
+        String encodedPassword = passwordEncoder.encode(PASSWORD);
+        long runId = System.currentTimeMillis() / 1000 % 1000;
+        String prefix = "loaduser" + runId + "_";
+
+        SeededData data = new SeededData();
+        for (int from = 0; from < settings.users; from += CHUNK_SIZE) {
+            int to = Math.min(from + CHUNK_SIZE, settings.users);
+            int chunkFrom = from;
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = chunkFrom; i < to; i++) {
+                    User user = new User(prefix + i, prefix + i + "@load.test", encodedPassword, Role.ROLE_USER);
+                    entityManager.persist(user);
+
+                    SeededUser seededUser = new SeededUser(user.getUsername());
+                    for (int c = 0; c < settings.cardsPerUser; c++) {
+                        String cardNumber = String.format("4%03d%012d", runId, (long) i * settings.cardsPerUser + c);
+                        entityManager.persist(new Card(encryptionService.encrypt(cardNumber), "LOAD USER " + i,
+                                LocalDate.now().plusYears(3), CardStatus.ACTIVE, INITIAL_BALANCE, user));
+                        seededUser.cardNumbers.add(cardNumber);
+                    }
+                    data.users.add(seededUser);
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+        }
+
+        System.out.printf("Seeded %d users and %d cards in %d ms%n", settings.users,
+                settings.users * settings.cardsPerUser, System.currentTimeMillis() - startTime);
+        return data;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.bankcards.loadtest;
+
+import com.example.bankcards.BankCardsApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.context.support.StandardServletEnvironment;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Нагрузочный прогон REST API: поднимает приложение (по умолчанию H2 в режиме PostgreSQL),
+// создает пользователей и карты, гоняет смесь запросов login/transfer/history/cards
+// из клиентов на виртуальных потоках (Java 21+, иначе обычный пул) и печатает
+// пропускную способность, перцентили задержек, долю ошибок и проверку сохранения суммы балансов.
+//
+//   mvn -Ploadtest test-compile exec:java -Dexec.args="--loadtest.users=200 --loadtest.duration-seconds=60"
+//
+// Параметры (все необязательные):
+//   loadtest.users=100               пользователей
+//   loadtest.cards-per-user=3        карт у каждого (переводы идут между картами одного пользователя)
+//   loadtest.clients=200             одновременных клиентов
+//   loadtest.warmup-seconds=10       прогрев, в статистику не входит
+//   loadtest.duration-seconds=30     измеряемый интервал
+//   loadtest.mix=login:2,transfer:40,history:33,cards:25   веса операций
+//   loadtest.compare-threads=false   два прогона подряд (платформенные и виртуальные потоки сервера)
+//                                    и сравнение req/s и p99; имеет смысл на Java 21 (-Pjava21), например
+//                                    --loadtest.compare-threads=true --loadtest.clients=10000
+// Любые свойства Spring тоже можно переопределить, например локальный Postgres:
+//   --spring.datasource.url=jdbc:postgresql://localhost:5432/bank_cards_load --spring.liquibase.enabled=true
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Object> properties = defaultProperties();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                properties.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+
+        if (!Boolean.parseBoolean(String.valueOf(properties.get("loadtest.compare-threads")))) {
+            System.exit(runApplication(properties).exitCode);
+        }
+
+        // Одинаковая нагрузка на сервер с пулом платформенных потоков Tomcat и на виртуальных потоках
+        Map<String, Object> platform = new LinkedHashMap<>(properties);
+        platform.put("spring.threads.virtual.enabled", "false");
+        platform.put("spring.datasource.url", properties.get("spring.datasource.url").toString()
+                .replace("mem:loadtest", "mem:loadtest_platform"));
+        Map<String, Object> virtual = new LinkedHashMap<>(properties);
+        virtual.put("spring.threads.virtual.enabled", "true");
+        virtual.put("spring.datasource.url", properties.get("spring.datasource.url").toString()
+                .replace("mem:loadtest", "mem:loadtest_virtual"));
+
+        RunResult platformResult = runApplication(platform);
+        RunResult virtualResult = runApplication(virtual);
+
+        System.out.println();
+        System.out.println("-- PLATFORM vs VIRTUAL THREADS --");
+        System.out.printf("%-10s %10s %9s %8s%n", "server", "req/s", "p99 ms", "err %");
+        printSummary("platform", platformResult.summary);
+        printSummary("virtual", virtualResult.summary);
+        System.exit(Math.max(platformResult.exitCode, virtualResult.exitCode));
+    }
+
+    private static void printSummary(String name, double[] summary) {
+        System.out.printf("%-10s %10.1f %9.2f %8.2f%n", name, summary[0], summary[1], summary[2]);
+    }
+
+    private static class RunResult {
+        private int exitCode;
+        private double[] summary;
+    }
+
+    private static RunResult runApplication(Map<String, Object> properties) throws Exception {
+        // Источник свойств выше application.yml (в том числе тестового на classpath) и доступен
+        // уже при настройке логирования
+        StandardServletEnvironment environment = new StandardServletEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("loadtest", properties));
+
+        SpringApplication application = new SpringApplication(BankCardsApplication.class);
+        application.setWebApplicationType(WebApplicationType.SERVLET);
+        application.setEnvironment(environment);
+
+        RunResult result = new RunResult();
+        try (ConfigurableApplicationContext context = application.run()) {
+            System.out.println("Server on virtual threads: " + environment.getProperty("spring.threads.virtual.enabled")
+                    + " (Java " + Runtime.version().feature() + ")");
+            run(context, result);
+        }
+        return result;
+    }
+
+    private static void run(ConfigurableApplicationContext context, RunResult result) throws Exception {
+        Environment environment = context.getEnvironment();
+        LoadTestSettings settings = LoadTestSettings.from(environment);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        System.out.println("=== LOAD TEST ===");
+        System.out.println(settings);
+
+        LoadTestDataSeeder.SeededData data = new LoadTestDataSeeder(context).seed(settings);
+        BigDecimal balanceBefore = totalBalance(jdbcTemplate);
+        long transactionsBefore = countTransactions(jdbcTemplate);
+
+        String baseUrl = "http://localhost:" + environment.getProperty("local.server.port");
+        LoadTestStats stats = new LoadTestClients(baseUrl, settings, data).run();
+
+        BigDecimal balanceAfter = totalBalance(jdbcTemplate);
+        long transactionsCreated = countTransactions(jdbcTemplate) - transactionsBefore;
+        Long negativeBalances = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cards WHERE balance < 0", Long.class);
+
+        stats.print(System.out);
+        result.summary = stats.summary();
+
+        // Переводы не создают и не уничтожают деньги; каждый успешный перевод - ровно одна транзакция
+        boolean balanceConserved = balanceBefore.compareTo(balanceAfter) == 0;
+        boolean transactionsMatch = transactionsCreated == stats.getSuccessfulTransfers();
+        System.out.println();
+        System.out.println("-- CONSISTENCY --");
+        System.out.printf("Total balance before/after: %s / %s -> %s%n",
+                balanceBefore, balanceAfter, balanceConserved ? "OK" : "VIOLATED");
+        System.out.printf("Transactions created / successful transfers: %d / %d -> %s%n",
+                transactionsCreated, stats.getSuccessfulTransfers(), transactionsMatch ? "OK" : "MISMATCH");
+        System.out.printf("Cards with negative balance: %d -> %s%n",
+                negativeBalances, negativeBalances == 0 ? "OK" : "VIOLATED");
+
+        result.exitCode = balanceConserved && transactionsMatch && negativeBalances == 0 ? 0 : 1;
+    }
+
+    private static BigDecimal totalBalance(JdbcTemplate jdbcTemplate) {
+        BigDecimal total = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(balance), 0) FROM cards", BigDecimal.class);
+        return total.setScale(2);
+    }
+
+    private static long countTransactions(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Long.class);
+    }
+
+    private static Map<String, Object> defaultProperties() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url",
+                "jdbc:h2:mem:loadtest;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.datasource.hikari.maximum-pool-size", "32");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.jpa.properties.hibernate.format_sql", "false");
+        properties.put("spring.jpa.properties.hibernate.generate_statistics", "false");
+        properties.put("spring.liquibase.enabled", "false");
+        // На Java 21+ Tomcat обрабатывает запросы в виртуальных потоках
+        properties.put("spring.threads.virtual.enabled", "true");
+        properties.put("server.port", "0");
+        properties.put("server.tomcat.threads.max", "400");
+        properties.put("server.tomcat.max-connections", "20000");
+        properties.put("server.tomcat.accept-count", "1000");
+        properties.put("cards.expiry-sweeper.enabled", "false");
+        properties.put("jwt.secret", "loadTestJwtSecretThatIsLongEnoughForHmacSha256");
+        properties.put("jwt.expiration", "3600000");
+        properties.put("encryption.secret-key", "my16bytekey12345");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.example.bankcards", "WARN");
+        properties.put("logging.level.org.springframework.security", "WARN");
+        return properties;
+    }
+}
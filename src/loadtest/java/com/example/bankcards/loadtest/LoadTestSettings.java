@@ -0,0 +1,78 @@
+package com.example.bankcards.loadtest;
+
+import org.springframework.core.env.Environment;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// Параметры прогона (свойства loadtest.*, см. LoadTestRunner)
+class LoadTestSettings {
+
+    enum Operation { LOGIN, TRANSFER, HISTORY, CARDS }
+
+    final int users;
+    final int cardsPerUser;
+    final int clients;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final Map<Operation, Integer> mix;
+    final int totalWeight;
+
+    private LoadTestSettings(int users, int cardsPerUser, int clients, int warmupSeconds, int durationSeconds,
+                             Map<Operation, Integer> mix) {
+        if (users < 1 || cardsPerUser < 2 || clients < 1 || durationSeconds < 1) {
+            throw new IllegalArgumentException("Need at least 1 user, 2 cards per user, 1 client and 1 second");
+        }
+        this.users = users;
+        this.cardsPerUser = cardsPerUser;
+        this.clients = clients;
+        this.warmupSeconds = warmupSeconds;
+        this.durationSeconds = durationSeconds;
+        this.mix = mix;
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("Operation mix must have a positive weight");
+        }
+    }
+
+    static LoadTestSettings from(Environment environment) {
+        return new LoadTestSettings(
+                environment.getProperty("loadtest.users", Integer.class, 100),
+                environment.getProperty("loadtest.cards-per-user", Integer.class, 3),
+                environment.getProperty("loadtest.clients", Integer.class, 200),
+                environment.getProperty("loadtest.warmup-seconds", Integer.class, 10),
+                environment.getProperty("loadtest.duration-seconds", Integer.class, 30),
+                parseMix(environment.getProperty("loadtest.mix", "login:2,transfer:40,history:33,cards:25")));
+    }
+
+    // "login:2,transfer:40,..." -> веса операций
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            if (nameAndWeight.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            weights.put(Operation.valueOf(nameAndWeight[0].trim().toUpperCase()),
+                    Integer.parseInt(nameAndWeight[1].trim()));
+        }
+        return weights;
+    }
+
+    // Операция по случайному числу из [0, totalWeight)
+    Operation pick(int random) {
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            random -= entry.getValue();
+            if (random < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Random value out of range");
+    }
+
+    @Override
+    public String toString() {
+        return "users=" + users + ", cardsPerUser=" + cardsPerUser + ", clients=" + clients
+                + ", warmup=" + warmupSeconds + "s, duration=" + durationSeconds + "s, mix=" + mix;
+    }
+}
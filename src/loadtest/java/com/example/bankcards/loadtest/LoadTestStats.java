@@ -0,0 +1,131 @@
+package com.example.bankcards.loadtest;
+
+import com.example.bankcards.loadtest.LoadTestSettings.Operation;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Статистика по операциям: гистограмма задержек (мкс), ответы 2xx/4xx и ошибки (5xx, сеть)
+class LoadTestStats {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<Operation, OperationStats> operations = new EnumMap<>(Operation.class);
+    private final LongAdder successfulTransfers = new LongAdder();
+    private volatile boolean measuring;
+    private volatile long measureStartNanos;
+    private volatile long measureEndNanos;
+
+    LoadTestStats() {
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new OperationStats());
+        }
+    }
+
+    void startMeasuring() {
+        measureStartNanos = System.nanoTime();
+        measuring = true;
+    }
+
+    void stopMeasuring() {
+        measuring = false;
+        measureEndNanos = System.nanoTime();
+    }
+
+    // statusCode = -1 - исключение (таймаут, обрыв соединения)
+    void record(Operation operation, long latencyNanos, int statusCode) {
+        // Успешные переводы считаются и во время прогрева - для сверки с таблицей transactions
+        if (operation == Operation.TRANSFER && statusCode == 200) {
+            successfulTransfers.increment();
+        }
+        if (!measuring) {
+            return;
+        }
+
+        OperationStats stats = operations.get(operation);
+        stats.latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_LATENCY_MICROS));
+        if (statusCode >= 400 && statusCode < 500) {
+            stats.rejected.increment();
+        } else if (statusCode < 200 || statusCode >= 300) {
+            stats.errors.increment();
+        }
+    }
+
+    long getSuccessfulTransfers() {
+        return successfulTransfers.sum();
+    }
+
+    // Итог по всем операциям для сравнения прогонов: {req/s, p99 ms, доля ошибок %}
+    double[] summary() {
+        Histogram total = new Histogram(MAX_LATENCY_MICROS, 3);
+        long errors = 0;
+        for (OperationStats stats : operations.values()) {
+            total.add(stats.latency.copy());
+            errors += stats.errors.sum();
+        }
+        long requests = total.getTotalCount();
+        double seconds = (measureEndNanos - measureStartNanos) / 1e9;
+        return new double[]{
+                requests / seconds,
+                millis(total.getValueAtPercentile(99)),
+                requests == 0 ? 0 : 100.0 * errors / requests};
+    }
+
+    void print(PrintStream out) {
+        double seconds = (measureEndNanos - measureStartNanos) / 1e9;
+        Histogram total = new Histogram(MAX_LATENCY_MICROS, 3);
+        long totalRequests = 0;
+        long totalErrors = 0;
+
+        out.println();
+        out.println("-- RESULTS --");
+        out.printf("%-10s %9s %10s %9s %9s %9s %9s %9s %8s %8s%n",
+                "operation", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "4xx %", "err %");
+        for (Map.Entry<Operation, OperationStats> entry : operations.entrySet()) {
+            OperationStats stats = entry.getValue();
+            Histogram histogram = stats.latency.copy();
+            long requests = histogram.getTotalCount();
+            if (requests == 0) {
+                continue;
+            }
+            total.add(histogram);
+            totalRequests += requests;
+            totalErrors += stats.errors.sum();
+            printRow(out, entry.getKey().name().toLowerCase(), histogram, seconds,
+                    stats.rejected.sum(), stats.errors.sum());
+        }
+        if (totalRequests > 0) {
+            long totalRejected = operations.values().stream().mapToLong(stats -> stats.rejected.sum()).sum();
+            printRow(out, "total", total, seconds, totalRejected, totalErrors);
+        }
+    }
+
+    private void printRow(PrintStream out, String name, Histogram histogram, double seconds,
+                          long rejected, long errors) {
+        long requests = histogram.getTotalCount();
+        out.printf("%-10s %9d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %8.2f %8.2f%n",
+                name, requests, requests / seconds,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()),
+                100.0 * rejected / requests,
+                100.0 * errors / requests);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static class OperationStats {
+        private final ConcurrentHistogram latency = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+    }
+}
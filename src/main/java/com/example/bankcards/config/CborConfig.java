@@ -0,0 +1,31 @@
+package com.example.bankcards.config;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// Бинарный формат CBOR для внутренних сервисов с большим потоком запросов:
+// клиент с Accept: application/cbor получает любой DTO в CBOR (и может так же отправлять тело запроса).
+// Без заголовка и при Accept: */* ответ, как и раньше, JSON - конвертер стоит после JSON.
+// Маппер строится из того же Jackson2ObjectMapperBuilder, что и JSON (настройки spring.jackson.*,
+// JavaTimeModule), поля упорядочены по алфавиту - порядок не зависит от объявления в классах DTO
+@Configuration
+public class CborConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(
+            Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        // Билдер - prototype-бин Spring Boot, изменения не затрагивают JSON-маппер
+        ObjectMapper cborMapper = objectMapperBuilder
+                .factory(new CBORFactory())
+                .featuresToEnable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY,
+                        SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                .build();
+        return new MappingJackson2CborHttpMessageConverter(cborMapper);
+    }
+}
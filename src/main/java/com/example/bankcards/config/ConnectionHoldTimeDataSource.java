@@ -0,0 +1,93 @@
+package com.example.bankcards.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Обертка над пулом соединений: засекает, сколько текущий HTTP-запрос держит JDBC-соединения
+// (от getConnection до close, сумма по всем соединениям запроса). Учет включает
+// ConnectionHoldTimeFilter; соединения фоновых заданий и планировщика не учитываются
+public class ConnectionHoldTimeDataSource extends DelegatingDataSource {
+
+    private static final ThreadLocal<Usage> CURRENT_USAGE = new ThreadLocal<>();
+
+    public ConnectionHoldTimeDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return track(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return track(super.getConnection(username, password));
+    }
+
+    // Начать учет соединений в текущем потоке
+    static Usage begin() {
+        Usage usage = new Usage();
+        CURRENT_USAGE.set(usage);
+        return usage;
+    }
+
+    static void end() {
+        CURRENT_USAGE.remove();
+    }
+
+    private Connection track(Connection connection) {
+        Usage usage = CURRENT_USAGE.get();
+        if (usage == null) {
+            return connection;
+        }
+        usage.connections++;
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new TrackedConnection(connection, usage));
+    }
+
+    // Соединения, взятые запросом, и суммарное время удержания
+    static final class Usage {
+        private int connections;
+        private long heldNanos;
+
+        int getConnections() {
+            return connections;
+        }
+
+        long getHeldNanos() {
+            return heldNanos;
+        }
+    }
+
+    private static final class TrackedConnection implements InvocationHandler {
+        private final Connection target;
+        private final Usage usage;
+        private final long acquiredAt = System.nanoTime();
+        private boolean closed;
+
+        private TrackedConnection(Connection target, Usage usage) {
+            this.target = target;
+            this.usage = usage;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("close") && !closed) {
+                closed = true;
+                usage.heldNanos += System.nanoTime() - acquiredAt;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Сколько каждый HTTP-запрос держал JDBC-соединения (см. ConnectionHoldTimeDataSource).
+// Нужный размер пула HikariCP ~ запросов в секунду * среднее время удержания, а не длительность запроса:
+//   bank.http.connection.hold   - суммарное время удержания за запрос, теги method и uri (шаблон пути)
+//   bank.http.connection.count  - сколько раз запрос брал соединение
+// Фильтр первый в цепочке, чтобы учесть и загрузку пользователя при проверке JWT
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConnectionHoldTimeFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain)
+            throws ServletException, IOException {
+
+        ConnectionHoldTimeDataSource.Usage usage = ConnectionHoldTimeDataSource.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ConnectionHoldTimeDataSource.end();
+            record(request, usage);
+        }
+    }
+
+    private void record(HttpServletRequest request, ConnectionHoldTimeDataSource.Usage usage) {
+        // Шаблон пути, а не сам путь - иначе теги размножатся по id и номерам
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+
+        Timer.builder("bank.http.connection.hold")
+                .description("Time a request held JDBC connections")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(usage.getHeldNanos(), TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("bank.http.connection.count")
+                .description("JDBC connections taken by a request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(usage.getConnections());
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+// Метрики горячих путей (/actuator/prometheus):
+//   bank.encryption             - шифрование/расшифровка номеров (@Timed в EncryptionService)
+//   bank.transfer               - переводы, тег exception = исход (@Timed в TransactionService)
+//   bank.jwt.authentication     - разбор и проверка JWT, тег outcome (JwtAuthenticationFilter)
+//   spring.data.repository.invocations - каждый метод репозиториев (автоматически)
+//   hikaricp.connections.*      - загрузка пула соединений (автоматически)
+//   bank.http.connection.*      - удержание соединений каждым HTTP-запросом (ConnectionHoldTimeFilter)
+// Гистограммы для перцентилей включаются в management.metrics.distribution
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    // Пул соединений оборачивается для учета удержания соединений запросами.
+    // Метрики hikaricp.* и health-check находят HikariDataSource внутри обертки (DelegatingDataSource)
+    @Bean
+    public static BeanPostProcessor connectionHoldTimeDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConnectionHoldTimeDataSource)) {
+                    return new ConnectionHoldTimeDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -2,25 +2,43 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.AdminCardResponse;
 import com.example.bankcards.dto.BlockRequestResponse;
+import com.example.bankcards.dto.BulkBlockRequestAction;
+import com.example.bankcards.dto.BulkBlockRequestResult;
+import com.example.bankcards.dto.PageResponse;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.entity.*;
-import com.example.bankcards.repository.BlockRequestRepository;
+import com.example.bankcards.event.BlockRequestEventBus;
+import com.example.bankcards.service.CacheStatisticsService;
+import com.example.bankcards.service.CardDeletionService;
+import com.example.bankcards.service.CardIssuanceService;
+import com.example.bankcards.service.CardKeyRotationService;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.service.EncryptionService;
+import com.example.bankcards.service.SpendingLimitService;
 import com.example.bankcards.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.DecimalMin;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -35,24 +53,42 @@ public class AdminController {
     private CardService cardService;
 
     @Autowired
-    private BlockRequestRepository blockRequestRepository;
+    private EncryptionService encryptionService;
 
     @Autowired
-    private EncryptionService encryptionService;
+    private CacheStatisticsService cacheStatisticsService;
+
+    @Autowired
+    private CardIssuanceService cardIssuanceService;
+
+    @Autowired
+    private CardKeyRotationService cardKeyRotationService;
+
+    @Autowired
+    private CardDeletionService cardDeletionService;
+
+    @Autowired
+    private BlockRequestEventBus blockRequestEventBus;
+
+    @Autowired
+    private SpendingLimitService spendingLimitService;
+
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv");
 
     // ========== USER MANAGEMENT ==========
 
     // Получить всех пользователей с пагинацией
     @GetMapping("/users")
-    public ResponseEntity<Page<UserResponse>> getAllUsers(
+    public ResponseEntity<PageResponse<UserResponse>> getAllUsers(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
             @RequestParam(defaultValue = "id") String sort) {
 
         Pageable pageable = PageRequest.of(page, size, Sort.by(sort));
-        Page<User> users = userService.getAllUsers(pageable);
+        Slice<User> users = userService.getAllUsers(pageable, includeTotal);
 
-        Page<UserResponse> response = users.map(this::convertToUserResponse);
+        PageResponse<UserResponse> response = PageResponse.of(users.map(this::convertToUserResponse));
         return ResponseEntity.ok(response);
     }
 
@@ -65,15 +101,16 @@ public class AdminController {
 
     // Поиск пользователей по username
     @GetMapping("/users/search")
-    public ResponseEntity<Page<UserResponse>> searchUsers(
+    public ResponseEntity<PageResponse<UserResponse>> searchUsers(
             @RequestParam String username,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         Pageable pageable = PageRequest.of(page, size);
-        Page<User> users = userService.searchUsersByUsername(username, pageable);
+        Slice<User> users = userService.searchUsersByUsername(username, pageable, includeTotal);
 
-        Page<UserResponse> response = users.map(this::convertToUserResponse);
+        PageResponse<UserResponse> response = PageResponse.of(users.map(this::convertToUserResponse));
         return ResponseEntity.ok(response);
     }
 
@@ -191,33 +228,93 @@ public class AdminController {
         return ResponseEntity.ok(stats);
     }
 
+    // ========== CACHE ==========
+
+    // Статистика кэша второго уровня Hibernate
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(cacheStatisticsService.getCacheStatistics());
+    }
+
+    // Сбросить счетчики статистики кэша
+    @DeleteMapping("/cache/stats")
+    public ResponseEntity<?> resetCacheStats() {
+        cacheStatisticsService.resetStatistics();
+
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Cache statistics reset");
+        return ResponseEntity.ok(response);
+    }
+
+    // ========== ENCRYPTION KEYS ==========
+
+    // Запустить ротацию ключа шифрования номеров карт (перешифровка на encryption.current-key-version)
+    @PostMapping("/encryption/rotation")
+    public ResponseEntity<Map<String, Object>> startKeyRotation() {
+        return ResponseEntity.accepted().body(convertToRotationStatus(cardKeyRotationService.startAsync()));
+    }
+
+    // Состояние ротации ключа
+    @GetMapping("/encryption/rotation")
+    public ResponseEntity<Map<String, Object>> getKeyRotationStatus() {
+        return cardKeyRotationService.getStatus()
+                .map(checkpoint -> ResponseEntity.ok(convertToRotationStatus(checkpoint)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Остановить ротацию после текущей пачки (продолжится с контрольной точки при следующем запуске)
+    @DeleteMapping("/encryption/rotation")
+    public ResponseEntity<?> stopKeyRotation() {
+        cardKeyRotationService.stop();
+
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Key rotation stop requested");
+        return ResponseEntity.ok(response);
+    }
+
     // ========== CARD MANAGEMENT ==========
 
     // Получить все карты (для администратора) с маскированными номерами
     @GetMapping("/cards")
-    public ResponseEntity<Page<AdminCardResponse>> getAllCards(
+    public ResponseEntity<PageResponse<AdminCardResponse>> getAllCards(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         Pageable pageable = PageRequest.of(page, size);
-        Page<Card> cards = cardService.getAllCards(pageable);
+        Slice<Card> cards = cardService.getAllCards(pageable, includeTotal);
 
-        Page<AdminCardResponse> response = cards.map(this::convertToAdminCardResponse);
+        PageResponse<AdminCardResponse> response = PageResponse.of(cards.map(this::convertToAdminCardResponse));
         return ResponseEntity.ok(response);
     }
 
+    // Массовый выпуск карт: тело запроса - CSV (text/csv) или NDJSON (application/x-ndjson),
+    // колонки/поля: cardNumber, owner, expiryDate, balance, userId.
+    // Ответ - NDJSON: ошибки по строкам по мере обработки и итоговая строка summary
+    @PostMapping(value = "/cards/bulk", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<StreamingResponseBody> issueCardsBulk(HttpServletRequest request) throws IOException {
+        boolean csv = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(TEXT_CSV);
+        InputStream input = request.getInputStream();
+
+        StreamingResponseBody body = output -> cardIssuanceService.issueCards(input, csv, output);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     // Получить все карты пользователя (админская версия)
     @GetMapping("/users/{userId}/cards")
-    public ResponseEntity<Page<AdminCardResponse>> getUserCards(
+    public ResponseEntity<PageResponse<AdminCardResponse>> getUserCards(
             @PathVariable Long userId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         User user = userService.getUserById(userId);
         Pageable pageable = PageRequest.of(page, size);
-        Page<Card> cards = cardService.getUserCards(user, pageable);
+        Slice<Card> cards = cardService.getUserCards(user, pageable, includeTotal);
 
-        Page<AdminCardResponse> response = cards.map(this::convertToAdminCardResponse);
+        PageResponse<AdminCardResponse> response = PageResponse.of(cards.map(this::convertToAdminCardResponse));
         return ResponseEntity.ok(response);
     }
 
@@ -267,54 +364,75 @@ public class AdminController {
         return ResponseEntity.ok(convertToAdminCardResponse(card));
     }
 
-    // Удалить карту по оригинальному номеру (админ)
+    // Удалить карту по оригинальному номеру (админ): карта сразу недоступна,
+    // история переносится в архив в фоне - прогресс в GET /cards/deletion
     @DeleteMapping("/cards")
-    public ResponseEntity<?> deleteCardAsAdmin(@RequestParam String cardNumber) {
+    public ResponseEntity<Map<String, Object>> deleteCardAsAdmin(@RequestParam String cardNumber) {
         // Шифруем номер для поиска в БД
         String encryptedCardNumber = encryptionService.encrypt(cardNumber);
 
         Card card = cardService.getByCardNumber(encryptedCardNumber);
-        cardService.deleteCard(encryptedCardNumber, card.getUser());
+        CardDeletionJob job = cardService.deleteCard(encryptedCardNumber, card.getUser());
 
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Card deleted successfully");
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("message", "Card deletion started");
         response.put("cardNumber", cardService.getMaskedCardNumber(card));
+        response.putAll(convertToDeletionStatus(job));
+        return ResponseEntity.accepted().body(response);
+    }
 
-        return ResponseEntity.ok(response);
+    // Состояние удаления карты по оригинальному номеру (админ)
+    @GetMapping("/cards/deletion")
+    public ResponseEntity<Map<String, Object>> getCardDeletionStatus(@RequestParam String cardNumber) {
+        return cardDeletionService.getStatus(encryptionService.encrypt(cardNumber))
+                .map(job -> ResponseEntity.ok(convertToDeletionStatus(job)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     // Получить карты по статусу (админ)
     @GetMapping("/cards/by-status")
-    public ResponseEntity<Page<AdminCardResponse>> getCardsByStatus(
+    public ResponseEntity<PageResponse<AdminCardResponse>> getCardsByStatus(
             @RequestParam CardStatus status,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         Pageable pageable = PageRequest.of(page, size);
-        // Нужно добавить метод в CardService для поиска по статусу
-        // Page<Card> cards = cardService.getCardsByStatus(status, pageable);
+        Slice<Card> cards = cardService.getCardsByStatus(status, pageable, includeTotal);
 
-        // Временно используем все карты с фильтрацией на стороне Java
-        Page<Card> allCards = cardService.getAllCards(pageable);
-        Page<Card> filteredCards = (Page<Card>) allCards.filter(card -> card.getStatus() == status);
-
-        Page<AdminCardResponse> response = filteredCards.map(this::convertToAdminCardResponse);
+        PageResponse<AdminCardResponse> response = PageResponse.of(cards.map(this::convertToAdminCardResponse));
         return ResponseEntity.ok(response);
     }
 
     // Получить все pending запросы на блокировку
     @GetMapping("/block-requests/pending")
-    public ResponseEntity<Page<BlockRequestResponse>> getPendingBlockRequests(
+    public ResponseEntity<PageResponse<BlockRequestResponse>> getPendingBlockRequests(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         Pageable pageable = PageRequest.of(page, size, Sort.by("requestDate").ascending());
-        Page<BlockRequest> requests = cardService.getPendingBlockRequests(pageable);
+        Slice<BlockRequest> requests = cardService.getPendingBlockRequests(pageable, includeTotal);
 
-        Page<BlockRequestResponse> response = requests.map(this::convertToBlockRequestResponse);
+        PageResponse<BlockRequestResponse> response = PageResponse.of(requests.map(this::convertToBlockRequestResponse));
         return ResponseEntity.ok(response);
     }
 
+    // Поток событий по запросам на блокировку (SSE): created, approved, rejected, bulk-processed.
+    // Вместо опроса /pending: загрузить список один раз и дальше применять события.
+    // При переподключении браузер сам передает Last-Event-ID; событие reset - список нужно перечитать
+    @GetMapping(value = "/block-requests/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBlockRequests(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return blockRequestEventBus.subscribe(lastEventId);
+    }
+
+    // Состояние потока событий (подписчики, последний id, размер буфера)
+    @GetMapping("/block-requests/stream/stats")
+    public ResponseEntity<Map<String, Object>> getBlockRequestStreamStats() {
+        return ResponseEntity.ok(blockRequestEventBus.getStats());
+    }
+
     // Одобрить блокировку
     @PutMapping("/block-requests/{requestId}/approve")
     public ResponseEntity<AdminCardResponse> approveBlockRequest(@PathVariable Long requestId) {
@@ -341,26 +459,131 @@ public class AdminController {
         return ResponseEntity.ok(convertToAdminCardResponse(card));
     }
 
+    // Массово одобрить запросы на блокировку: {"ids": [...]} и/или фильтр {"from", "to", "userId"}
+    @PutMapping("/block-requests/bulk/approve")
+    public ResponseEntity<BulkBlockRequestResult> approveBlockRequestsBulk(
+            @Valid @RequestBody BulkBlockRequestAction action) {
+        User admin = userService.findByUsername(
+                SecurityContextHolder.getContext().getAuthentication().getName()
+        );
+
+        return ResponseEntity.ok(cardService.approveBlockRequests(action, admin));
+    }
+
+    // Массово отклонить запросы на блокировку (причина - в поле reason)
+    @PutMapping("/block-requests/bulk/reject")
+    public ResponseEntity<BulkBlockRequestResult> rejectBlockRequestsBulk(
+            @Valid @RequestBody BulkBlockRequestAction action) {
+        User admin = userService.findByUsername(
+                SecurityContextHolder.getContext().getAuthentication().getName()
+        );
+
+        return ResponseEntity.ok(cardService.rejectBlockRequests(action, admin));
+    }
+
     // Получить все запросы на блокировку (история)
     @GetMapping("/block-requests")
-    public ResponseEntity<Page<BlockRequestResponse>> getAllBlockRequests(
+    public ResponseEntity<PageResponse<BlockRequestResponse>> getAllBlockRequests(
             @RequestParam(required = false) BlockRequestStatus status,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         Pageable pageable = PageRequest.of(page, size, Sort.by("requestDate").descending());
-        Page<BlockRequest> requests;
-
-        if (status != null) {
-            requests = blockRequestRepository.findByStatus(status, pageable);
-        } else {
-            requests = blockRequestRepository.findAll(pageable);
-        }
+        Slice<BlockRequest> requests = cardService.getBlockRequests(status, pageable, includeTotal);
 
-        Page<BlockRequestResponse> response = requests.map(this::convertToBlockRequestResponse);
+        PageResponse<BlockRequestResponse> response = PageResponse.of(requests.map(this::convertToBlockRequestResponse));
         return ResponseEntity.ok(response);
     }
 
+    // ========== SPENDING LIMITS ==========
+
+    // Лимиты списаний карты по оригинальному номеру; параметр не передан - без ограничения
+    @PutMapping("/cards/limits")
+    public ResponseEntity<Map<String, Object>> updateCardLimits(
+            @RequestParam String cardNumber,
+            @RequestParam(required = false) BigDecimal dailyLimit,
+            @RequestParam(required = false) BigDecimal monthlyLimit) {
+
+        Card card = spendingLimitService.updateCardLimits(encryptionService.encrypt(cardNumber), dailyLimit, monthlyLimit);
+        return ResponseEntity.ok(convertToCardLimits(card));
+    }
+
+    // Лимиты карты и списано за текущие день и месяц
+    @GetMapping("/cards/limits")
+    public ResponseEntity<Map<String, Object>> getCardLimits(@RequestParam String cardNumber) {
+        Card card = cardService.getByCardNumber(encryptionService.encrypt(cardNumber));
+        return ResponseEntity.ok(convertToCardLimits(card));
+    }
+
+    // Лимиты списаний пользователя (на все его карты вместе)
+    @PutMapping("/users/{userId}/limits")
+    public ResponseEntity<Map<String, Object>> updateUserLimits(
+            @PathVariable Long userId,
+            @RequestParam(required = false) BigDecimal dailyLimit,
+            @RequestParam(required = false) BigDecimal monthlyLimit) {
+
+        User user = spendingLimitService.updateUserLimits(userId, dailyLimit, monthlyLimit);
+        return ResponseEntity.ok(convertToUserLimits(user));
+    }
+
+    // Лимиты пользователя и списано за текущие день и месяц
+    @GetMapping("/users/{userId}/limits")
+    public ResponseEntity<Map<String, Object>> getUserLimits(@PathVariable Long userId) {
+        return ResponseEntity.ok(convertToUserLimits(userService.getUserById(userId)));
+    }
+
+    // Состояние ротации ключа для ответа API
+    private Map<String, Object> convertToRotationStatus(KeyRotationCheckpoint checkpoint) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("targetVersion", checkpoint.getTargetVersion());
+        status.put("status", checkpoint.getStatus());
+        status.put("running", cardKeyRotationService.isRunning());
+        status.put("processed", checkpoint.getProcessed());
+        status.put("failed", checkpoint.getFailed());
+        status.put("startedAt", checkpoint.getStartedAt());
+        status.put("updatedAt", checkpoint.getUpdatedAt());
+        status.put("finishedAt", checkpoint.getFinishedAt());
+        status.put("error", checkpoint.getError());
+        return status;
+    }
+
+    private Map<String, Object> convertToCardLimits(Card card) {
+        Map<String, Object> limits = new LinkedHashMap<>();
+        limits.put("cardNumber", cardService.getMaskedCardNumber(card));
+        putLimits(limits, SpendingScope.CARD, card.getCardNumber(), card.getDailyLimit(), card.getMonthlyLimit());
+        return limits;
+    }
+
+    private Map<String, Object> convertToUserLimits(User user) {
+        Map<String, Object> limits = new LinkedHashMap<>();
+        limits.put("userId", user.getId());
+        limits.put("username", user.getUsername());
+        putLimits(limits, SpendingScope.USER, user.getId().toString(), user.getDailyLimit(), user.getMonthlyLimit());
+        return limits;
+    }
+
+    private void putLimits(Map<String, Object> limits, SpendingScope scope, String ownerKey,
+                           BigDecimal dailyLimit, BigDecimal monthlyLimit) {
+        limits.put("dailyLimit", dailyLimit);
+        limits.put("monthlyLimit", monthlyLimit);
+        limits.put("spentToday", spendingLimitService.getSpent(scope, ownerKey, SpendingPeriod.DAY));
+        limits.put("spentThisMonth", spendingLimitService.getSpent(scope, ownerKey, SpendingPeriod.MONTH));
+    }
+
+    private Map<String, Object> convertToDeletionStatus(CardDeletionJob job) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("status", job.getStatus());
+        status.put("running", cardDeletionService.isRunning(job.getCardNumber()));
+        status.put("archivedTransactions", job.getArchivedTransactions());
+        status.put("deletedBlockRequests", job.getDeletedBlockRequests());
+        status.put("startedAt", job.getStartedAt());
+        status.put("updatedAt", job.getUpdatedAt());
+        status.put("finishedAt", job.getFinishedAt());
+        status.put("error", job.getError());
+        return status;
+    }
+
     // Преобразование User в UserResponse
     private UserResponse convertToUserResponse(User user) {
         return new UserResponse(
@@ -375,6 +598,11 @@ public class AdminController {
     // Преобразование Card в AdminCardResponse (ТОЛЬКО с маскированным номером)
     private AdminCardResponse convertToAdminCardResponse(Card card) {
         String maskedNumber = cardService.getMaskedCardNumber(card);
+        // Списки загружают владельца вместе с картой; у одиночной карты (из L2-кэша) он может
+        // остаться незагруженным прокси - сессия уже закрыта, берем пользователя по id из кэша
+        User owner = Hibernate.isInitialized(card.getUser())
+                ? card.getUser()
+                : userService.getUserById(card.getUser().getId());
 
         return new AdminCardResponse(
                 maskedNumber,        // ТОЛЬКО маскированный номер
@@ -382,27 +610,13 @@ public class AdminController {
                 card.getExpiryDate(),
                 card.getStatus(),
                 card.getBalance(),
-                card.getUser().getId(),
-                card.getUser().getUsername()
+                owner.getId(),
+                owner.getUsername()
         );
     }
 
     // Преобразование BlockRequest в BlockRequestResponse (для админа)
     private BlockRequestResponse convertToBlockRequestResponse(BlockRequest request) {
-        String cardMasked = cardService.getMaskedCardNumber(request.getCard());
-
-        return new BlockRequestResponse(
-                request.getId(),
-                request.getCard().getCardNumber(), // Зашифрованный номер
-                cardMasked,
-                request.getCard().getOwner(),
-                request.getUser().getId(),
-                request.getUser().getUsername(),
-                request.getRequestDate(),
-                request.getReason(),
-                request.getStatus(),
-                request.getProcessedDate(),
-                request.getProcessedBy() != null ? request.getProcessedBy().getUsername() : null
-        );
+        return cardService.toBlockRequestResponse(request);
     }
-}
\ No newline at end of file
+}
@@ -3,27 +3,37 @@ package com.example.bankcards.controller;
 import com.example.bankcards.dto.BlockRequestResponse;
 import com.example.bankcards.dto.CardRequest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.PageResponse;
 import com.example.bankcards.entity.BlockRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardSetVersionService;
 import com.example.bankcards.service.EncryptionService;
 import com.example.bankcards.service.UserService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.DecimalMin;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/cards")
@@ -38,23 +48,32 @@ public class CardController {
     @Autowired
     private EncryptionService encryptionService;
 
+    @Autowired
+    private CardSetVersionService cardSetVersionService;
+
     // ========== ПОЛЬЗОВАТЕЛЬСКИЕ ЭНДПОИНТЫ ==========
 
     // Получить все карты пользователя с пагинацией
     @GetMapping
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    public ResponseEntity<Page<CardResponse>> getUserCards(
+    public ResponseEntity<PageResponse<CardResponse>> getUserCards(
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "owner") String sort) {
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(defaultValue = "owner") String sort,
+            WebRequest webRequest) {
 
         User user = userService.findByUsername(userDetails.getUsername());
+        String eTag = cardSetETag(user, webRequest);
+        if (webRequest.checkNotModified(eTag)) {
+            return null; // 304 без загрузки карт
+        }
         Pageable pageable = PageRequest.of(page, size, Sort.by(sort));
-        Page<Card> cards = cardService.getUserCards(user, pageable);
+        Slice<Card> cards = cardService.getUserCards(user, pageable, includeTotal);
 
-        Page<CardResponse> response = cards.map(this::convertToCardResponse);
-        return ResponseEntity.ok(response);
+        PageResponse<CardResponse> response = PageResponse.of(cards.map(this::convertToCardResponse));
+        return conditionalOk(eTag, response);
     }
 
     // Получить карту по оригинальному номеру
@@ -78,15 +97,20 @@ public class CardController {
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<BigDecimal> getCardBalance(
             @AuthenticationPrincipal UserDetails userDetails,
-            @RequestParam String cardNumber) { // Оригинальный номер
+            @RequestParam String cardNumber, // Оригинальный номер
+            WebRequest webRequest) {
 
         User user = userService.findByUsername(userDetails.getUsername());
+        String eTag = cardSetETag(user, webRequest);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
 
         // Шифруем номер для поиска в БД
         String encryptedCardNumber = encryptionService.encrypt(cardNumber);
 
         Card card = cardService.getByCardNumberAndUser(encryptedCardNumber, user);
-        return ResponseEntity.ok(card.getBalance());
+        return conditionalOk(eTag, card.getBalance());
     }
 
     // Активировать карту по оригинальному номеру
@@ -108,18 +132,24 @@ public class CardController {
     // Поиск карт по владельцу (имя на карте)
     @GetMapping("/search")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    public ResponseEntity<Page<CardResponse>> searchCardsByOwner(
+    public ResponseEntity<PageResponse<CardResponse>> searchCardsByOwner(
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam String owner,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            WebRequest webRequest) {
 
         User user = userService.findByUsername(userDetails.getUsername());
+        String eTag = cardSetETag(user, webRequest);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         Pageable pageable = PageRequest.of(page, size);
-        Page<Card> cards = cardService.searchUserCardsByOwner(user, owner, pageable);
+        Slice<Card> cards = cardService.searchUserCardsByOwner(user, owner, pageable, includeTotal);
 
-        Page<CardResponse> response = cards.map(this::convertToCardResponse);
-        return ResponseEntity.ok(response);
+        PageResponse<CardResponse> response = PageResponse.of(cards.map(this::convertToCardResponse));
+        return conditionalOk(eTag, response);
     }
 
     // Запрос на блокировку карты (вместо мгновенной блокировки)
@@ -139,16 +169,17 @@ public class CardController {
     // Получить свои запросы на блокировку
     @GetMapping("/block-requests")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    public ResponseEntity<Page<BlockRequestResponse>> getUserBlockRequests(
+    public ResponseEntity<PageResponse<BlockRequestResponse>> getUserBlockRequests(
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         User user = userService.findByUsername(userDetails.getUsername());
         Pageable pageable = PageRequest.of(page, size, Sort.by("requestDate").descending());
-        Page<BlockRequest> requests = cardService.getUserBlockRequests(user, pageable);
+        Slice<BlockRequest> requests = cardService.getUserBlockRequests(user, pageable, includeTotal);
 
-        Page<BlockRequestResponse> response = requests.map(this::convertToBlockRequestResponse);
+        PageResponse<BlockRequestResponse> response = PageResponse.of(requests.map(this::convertToBlockRequestResponse));
         return ResponseEntity.ok(response);
     }
 
@@ -195,10 +226,52 @@ public class CardController {
         // Шифруем номер для поиска в БД
         String encryptedCardNumber = encryptionService.encrypt(cardNumber);
 
-        // Админ может удалить любую карту без проверки владения
+        // Админ может удалить любую карту без проверки владения.
+        // История переносится в архив в фоне (прогресс - GET /api/admin/cards/deletion)
         Card card = cardService.getByCardNumber(encryptedCardNumber);
         cardService.deleteCard(encryptedCardNumber, card.getUser());
-        return ResponseEntity.ok().build();
+        return ResponseEntity.accepted().build();
+    }
+
+    // ETag набора карт для типа ответа, который выберет согласование содержимого. Vary: Accept
+    // ставится и на 304: кэш клиента не должен отдавать JSON на запрос CBOR и наоборот
+    private String cardSetETag(User user, WebRequest webRequest) {
+        if (webRequest instanceof ServletWebRequest servletWebRequest && servletWebRequest.getResponse() != null) {
+            servletWebRequest.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return cardSetVersionService.getETag(user.getId(), negotiatedMediaType(webRequest));
+    }
+
+    // CBOR - только если он стоит в Accept раньше JSON; без заголовка и при */* ответ JSON (см. CborConfig)
+    private MediaType negotiatedMediaType(WebRequest webRequest) {
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(webRequest.getHeader(HttpHeaders.ACCEPT));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType mediaType : accepted) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            if (mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)) {
+                return MediaType.APPLICATION_CBOR;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    // Ответ с ETag версии набора карт; no-cache - клиент кэширует, но каждый раз перепроверяет
+    // через If-None-Match, private - ответ только для этого пользователя
+    private <T> ResponseEntity<T> conditionalOk(String eTag, T body) {
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(body);
     }
 
     // Преобразование Card в CardResponse
@@ -1,19 +1,28 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.PageResponse;
+import com.example.bankcards.dto.RecurringTransferRequest;
+import com.example.bankcards.dto.RecurringTransferResponse;
+import com.example.bankcards.dto.TransferIntentResponse;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.dto.TransferResponse;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.RecurringTransfer;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.TransferIntent;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.service.EncryptionService;
+import com.example.bankcards.service.PartitionedTransferExecutor;
+import com.example.bankcards.service.RecurringTransferService;
 import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.service.TransferIntentService;
 import com.example.bankcards.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -21,6 +30,9 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/transactions")
 @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
@@ -38,11 +50,23 @@ public class TransactionController {
     @Autowired
     private EncryptionService encryptionService;
 
+    @Autowired
+    private TransferIntentService transferIntentService;
+
+    @Autowired
+    private RecurringTransferService recurringTransferService;
+
+    // Есть только при transfers.partitioned.enabled=true
+    @Autowired(required = false)
+    private PartitionedTransferExecutor partitionedTransferExecutor;
+
     // Перевод между картами по оригинальным номерам
+    // async=true - перевод только принимается (202 и id), результат - GET /api/transactions/transfer/{id}
     @PostMapping("/transfer")
-    public ResponseEntity<TransferResponse> transferBetweenCards(
+    public ResponseEntity<?> transferBetweenCards(
             @AuthenticationPrincipal UserDetails userDetails,
-            @Valid @RequestBody TransferRequest transferRequest) {
+            @Valid @RequestBody TransferRequest transferRequest,
+            @RequestParam(defaultValue = "false") boolean async) {
 
         User user = userService.findByUsername(userDetails.getUsername());
 
@@ -54,21 +78,91 @@ public class TransactionController {
         Card fromCard = cardService.getByCardNumberAndUser(encryptedFromCard, user);
         Card toCard = cardService.getByCardNumberAndUser(encryptedToCard, user);
 
+        if (async) {
+            TransferIntent intent = transferIntentService.accept(
+                    fromCard, toCard, transferRequest.getAmount(), transferRequest.getDescription(), user);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/transactions/transfer/" + intent.getId()))
+                    .body(convertToTransferIntentResponse(intent));
+        }
+
         // Выполняем перевод
-        Transaction transaction = transactionService.transferBetweenCards(
-                fromCard, toCard, transferRequest.getAmount(), transferRequest.getDescription()
-        );
+        Transaction transaction = partitionedTransferExecutor != null
+                ? partitionedTransferExecutor.transfer(
+                        fromCard, toCard, transferRequest.getAmount(), transferRequest.getDescription())
+                : transactionService.transferBetweenCards(
+                        fromCard, toCard, transferRequest.getAmount(), transferRequest.getDescription());
 
         return ResponseEntity.ok(convertToTransferResponse(transaction));
     }
 
+    // Состояние асинхронного перевода
+    @GetMapping("/transfer/{id}")
+    public ResponseEntity<TransferIntentResponse> getTransferStatus(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long id) {
+
+        User user = userService.findByUsername(userDetails.getUsername());
+        return ResponseEntity.ok(convertToTransferIntentResponse(transferIntentService.getIntent(id, user)));
+    }
+
+    // Постоянное поручение: перевод между своими картами по расписанию (DAILY/WEEKLY/MONTHLY)
+    @PostMapping("/recurring")
+    public ResponseEntity<RecurringTransferResponse> createRecurringTransfer(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @Valid @RequestBody RecurringTransferRequest request) {
+
+        User user = userService.findByUsername(userDetails.getUsername());
+
+        // Обе карты должны принадлежать пользователю
+        Card fromCard = cardService.getByCardNumberAndUser(encryptionService.encrypt(request.getFromCardNumber()), user);
+        Card toCard = cardService.getByCardNumberAndUser(encryptionService.encrypt(request.getToCardNumber()), user);
+
+        RecurringTransfer transfer = recurringTransferService.create(fromCard, toCard, request.getAmount(),
+                request.getDescription(), request.getFrequency(), request.getFirstRunAt(), user);
+        return ResponseEntity.created(URI.create("/api/transactions/recurring/" + transfer.getId()))
+                .body(convertToRecurringTransferResponse(transfer));
+    }
+
+    // Поручения пользователя
+    @GetMapping("/recurring")
+    public ResponseEntity<List<RecurringTransferResponse>> getRecurringTransfers(
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        User user = userService.findByUsername(userDetails.getUsername());
+        return ResponseEntity.ok(recurringTransferService.getUserTransfers(user).stream()
+                .map(this::convertToRecurringTransferResponse)
+                .toList());
+    }
+
+    // Состояние поручения: следующий запуск и исход последнего
+    @GetMapping("/recurring/{id}")
+    public ResponseEntity<RecurringTransferResponse> getRecurringTransfer(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long id) {
+
+        User user = userService.findByUsername(userDetails.getUsername());
+        return ResponseEntity.ok(convertToRecurringTransferResponse(recurringTransferService.getTransfer(id, user)));
+    }
+
+    // Отменить поручение
+    @DeleteMapping("/recurring/{id}")
+    public ResponseEntity<RecurringTransferResponse> cancelRecurringTransfer(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long id) {
+
+        User user = userService.findByUsername(userDetails.getUsername());
+        return ResponseEntity.ok(convertToRecurringTransferResponse(recurringTransferService.cancel(id, user)));
+    }
+
     // Получить историю транзакций по оригинальному номеру карты
     @GetMapping("/history")
-    public ResponseEntity<Page<TransferResponse>> getCardTransactions(
+    public ResponseEntity<PageResponse<TransferResponse>> getCardTransactions(
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam String cardNumber, // Оригинальный номер
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         User user = userService.findByUsername(userDetails.getUsername());
 
@@ -76,85 +170,92 @@ public class TransactionController {
         String encryptedCardNumber = encryptionService.encrypt(cardNumber);
 
         // Проверяем, что карта принадлежит пользователю
-        cardService.getByCardNumberAndUser(encryptedCardNumber, user);
+        // Номер берем из найденной карты: она может быть зашифрована предыдущей версией ключа
+        encryptedCardNumber = cardService.getByCardNumberAndUser(encryptedCardNumber, user).getCardNumber();
 
         Pageable pageable = PageRequest.of(page, size, Sort.by("transactionDate").descending());
-        Page<Transaction> transactions = transactionService.getCardTransactions(encryptedCardNumber, pageable);
+        Slice<Transaction> transactions = transactionService.getCardTransactions(encryptedCardNumber, pageable, includeTotal);
 
-        Page<TransferResponse> response = transactions.map(this::convertToTransferResponse);
+        PageResponse<TransferResponse> response = PageResponse.of(transactions.map(this::convertToTransferResponse));
         return ResponseEntity.ok(response);
     }
 
     // Получить отправленные транзакции по оригинальному номеру карты
     @GetMapping("/sent")
-    public ResponseEntity<Page<TransferResponse>> getSentTransactions(
+    public ResponseEntity<PageResponse<TransferResponse>> getSentTransactions(
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam String cardNumber, // Оригинальный номер
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         User user = userService.findByUsername(userDetails.getUsername());
 
         // Шифруем номер для поиска в БД
         String encryptedCardNumber = encryptionService.encrypt(cardNumber);
 
-        cardService.getByCardNumberAndUser(encryptedCardNumber, user);
+        // Номер берем из найденной карты: она может быть зашифрована предыдущей версией ключа
+        encryptedCardNumber = cardService.getByCardNumberAndUser(encryptedCardNumber, user).getCardNumber();
 
         Pageable pageable = PageRequest.of(page, size, Sort.by("transactionDate").descending());
-        Page<Transaction> transactions = transactionService.getSentTransactions(encryptedCardNumber, pageable);
+        Slice<Transaction> transactions = transactionService.getSentTransactions(encryptedCardNumber, pageable, includeTotal);
 
-        Page<TransferResponse> response = transactions.map(this::convertToTransferResponse);
+        PageResponse<TransferResponse> response = PageResponse.of(transactions.map(this::convertToTransferResponse));
         return ResponseEntity.ok(response);
     }
 
     // Получить полученные транзакции по оригинальному номеру карты
     @GetMapping("/received")
-    public ResponseEntity<Page<TransferResponse>> getReceivedTransactions(
+    public ResponseEntity<PageResponse<TransferResponse>> getReceivedTransactions(
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam String cardNumber, // Оригинальный номер
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         User user = userService.findByUsername(userDetails.getUsername());
 
         // Шифруем номер для поиска в БД
         String encryptedCardNumber = encryptionService.encrypt(cardNumber);
 
-        cardService.getByCardNumberAndUser(encryptedCardNumber, user);
+        // Номер берем из найденной карты: она может быть зашифрована предыдущей версией ключа
+        encryptedCardNumber = cardService.getByCardNumberAndUser(encryptedCardNumber, user).getCardNumber();
 
         Pageable pageable = PageRequest.of(page, size, Sort.by("transactionDate").descending());
-        Page<Transaction> transactions = transactionService.getReceivedTransactions(encryptedCardNumber, pageable);
+        Slice<Transaction> transactions = transactionService.getReceivedTransactions(encryptedCardNumber, pageable, includeTotal);
 
-        Page<TransferResponse> response = transactions.map(this::convertToTransferResponse);
+        PageResponse<TransferResponse> response = PageResponse.of(transactions.map(this::convertToTransferResponse));
         return ResponseEntity.ok(response);
     }
 
     // Получить транзакции за период по оригинальному номеру карты
     @GetMapping("/period")
-    public ResponseEntity<Page<TransferResponse>> getTransactionsByPeriod(
+    public ResponseEntity<PageResponse<TransferResponse>> getTransactionsByPeriod(
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam String cardNumber, // Оригинальный номер
             @RequestParam String startDate,
             @RequestParam String endDate,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         User user = userService.findByUsername(userDetails.getUsername());
 
         // Шифруем номер для поиска в БД
         String encryptedCardNumber = encryptionService.encrypt(cardNumber);
 
-        cardService.getByCardNumberAndUser(encryptedCardNumber, user);
+        // Номер берем из найденной карты: она может быть зашифрована предыдущей версией ключа
+        encryptedCardNumber = cardService.getByCardNumberAndUser(encryptedCardNumber, user).getCardNumber();
 
         // Преобразуем строки в LocalDateTime (нужно добавить валидацию дат)
         java.time.LocalDateTime start = java.time.LocalDateTime.parse(startDate);
         java.time.LocalDateTime end = java.time.LocalDateTime.parse(endDate);
 
         Pageable pageable = PageRequest.of(page, size, Sort.by("transactionDate").descending());
-        Page<Transaction> transactions = transactionService.getTransactionsByPeriod(
-                encryptedCardNumber, start, end, pageable);
+        Slice<Transaction> transactions = transactionService.getTransactionsByPeriod(
+                encryptedCardNumber, start, end, pageable, includeTotal);
 
-        Page<TransferResponse> response = transactions.map(this::convertToTransferResponse);
+        PageResponse<TransferResponse> response = PageResponse.of(transactions.map(this::convertToTransferResponse));
         return ResponseEntity.ok(response);
     }
 
@@ -199,4 +300,36 @@ public class TransactionController {
                 transaction.getDescription()
         );
     }
+
+    private TransferIntentResponse convertToTransferIntentResponse(TransferIntent intent) {
+        TransferIntentResponse response = new TransferIntentResponse();
+        response.setId(intent.getId());
+        response.setStatus(intent.getStatus());
+        response.setFromCardMasked(cardService.getMaskedCardNumber(intent.getFromCardNumber()));
+        response.setToCardMasked(cardService.getMaskedCardNumber(intent.getToCardNumber()));
+        response.setAmount(intent.getAmount());
+        response.setDescription(intent.getDescription());
+        response.setTransactionId(intent.getTransactionId());
+        response.setError(intent.getError());
+        response.setCreatedAt(intent.getCreatedAt());
+        response.setProcessedAt(intent.getProcessedAt());
+        return response;
+    }
+
+    private RecurringTransferResponse convertToRecurringTransferResponse(RecurringTransfer transfer) {
+        RecurringTransferResponse response = new RecurringTransferResponse();
+        response.setId(transfer.getId());
+        response.setStatus(transfer.getStatus());
+        response.setFrequency(transfer.getFrequency());
+        response.setFromCardMasked(cardService.getMaskedCardNumber(transfer.getFromCardNumber()));
+        response.setToCardMasked(cardService.getMaskedCardNumber(transfer.getToCardNumber()));
+        response.setAmount(transfer.getAmount());
+        response.setDescription(transfer.getDescription());
+        response.setNextRunAt(transfer.getNextRunAt());
+        response.setLastRunAt(transfer.getLastRunAt());
+        response.setLastTransactionId(transfer.getLastTransactionId());
+        response.setLastError(transfer.getLastError());
+        response.setCreatedAt(transfer.getCreatedAt());
+        return response;
+    }
 }
\ No newline at end of file
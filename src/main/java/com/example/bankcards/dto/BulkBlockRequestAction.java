@@ -0,0 +1,25 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.BlockRequestStatus;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Выбор запросов на блокировку для массового одобрения/отклонения: список id и/или фильтр
+@Data
+public class BulkBlockRequestAction {
+    @Size(max = 50000, message = "No more than 50000 ids per call")
+    private List<Long> ids;
+
+    private BlockRequestStatus status;   // Обрабатываются только PENDING (по умолчанию)
+    private LocalDateTime from;          // request_date >= from
+    private LocalDateTime to;            // request_date < to
+    private Long userId;                 // Запросы конкретного пользователя
+
+    @Size(max = 200, message = "Reason must be at most 200 characters")
+    private String reason;               // Причина отклонения (для reject)
+
+    public BulkBlockRequestAction() {}
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.BlockRequestStatus;
+import lombok.Data;
+
+@Data
+public class BulkBlockRequestResult {
+    private BlockRequestStatus resultStatus;  // APPROVED или REJECTED
+    private int requestsUpdated;
+    private int cardsUpdated;
+    private long durationMs;
+
+    public BulkBlockRequestResult() {}
+
+    public BulkBlockRequestResult(BlockRequestStatus resultStatus, int requestsUpdated, int cardsUpdated, long durationMs) {
+        this.resultStatus = resultStatus;
+        this.requestsUpdated = requestsUpdated;
+        this.cardsUpdated = cardsUpdated;
+        this.durationMs = durationMs;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.dto;
+
+import lombok.Data;
+
+@Data
+public class BulkCardIssueSummary {
+    private String type = "summary";
+    private long total;
+    private long created;
+    private long failed;
+    private long durationMs;
+
+    public BulkCardIssueSummary() {}
+
+    public BulkCardIssueSummary(long total, long created, long failed, long durationMs) {
+        this.total = total;
+        this.created = created;
+        this.failed = failed;
+        this.durationMs = durationMs;
+    }
+}
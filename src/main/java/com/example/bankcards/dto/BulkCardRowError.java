@@ -0,0 +1,19 @@
+package com.example.bankcards.dto;
+
+import lombok.Data;
+
+@Data
+public class BulkCardRowError {
+    private String type = "error";
+    private long line;           // Номер строки во входном файле (с 1)
+    private String cardNumber;   // ТОЛЬКО маскированный номер
+    private String error;
+
+    public BulkCardRowError() {}
+
+    public BulkCardRowError(long line, String cardNumber, String error) {
+        this.line = line;
+        this.cardNumber = cardNumber;
+        this.error = error;
+    }
+}
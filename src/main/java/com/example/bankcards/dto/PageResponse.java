@@ -0,0 +1,40 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+// Страница списка вместо PageImpl (без pageable/sort).
+// totalElements/totalPages есть только при includeTotal=true - иначе COUNT(*) не выполняется,
+// а о следующей странице говорит hasNext (запрашивается size + 1 строка)
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PageResponse<T> {
+    private List<T> content;
+    private int page;
+    private int size;
+    private boolean hasNext;
+    private Long totalElements;
+    private Integer totalPages;
+
+    public PageResponse() {}
+
+    public PageResponse(List<T> content, int page, int size, boolean hasNext) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.hasNext = hasNext;
+    }
+
+    public static <T> PageResponse<T> of(Slice<T> slice) {
+        PageResponse<T> response = new PageResponse<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext());
+        if (slice instanceof Page<T> page) {
+            response.setTotalElements(page.getTotalElements());
+            response.setTotalPages(page.getTotalPages());
+        }
+        return response;
+    }
+}
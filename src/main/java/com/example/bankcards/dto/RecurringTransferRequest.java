@@ -0,0 +1,32 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.RecurringFrequency;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+public class RecurringTransferRequest {
+    @NotNull(message = "From card number is required")
+    @Pattern(regexp = "^[0-9]{16}$", message = "From card number must be 16 digits")
+    private String fromCardNumber; // Оригинальный номер
+
+    @NotNull(message = "To card number is required")
+    @Pattern(regexp = "^[0-9]{16}$", message = "To card number must be 16 digits")
+    private String toCardNumber; // Оригинальный номер
+
+    @NotNull(message = "Amount is required")
+    @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
+    private BigDecimal amount;
+
+    private String description;
+
+    @NotNull(message = "Frequency is required")
+    private RecurringFrequency frequency;
+
+    private LocalDateTime firstRunAt; // null - первый перевод сразу
+}
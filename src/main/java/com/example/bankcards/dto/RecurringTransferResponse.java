@@ -0,0 +1,24 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.RecurringFrequency;
+import com.example.bankcards.entity.RecurringTransferStatus;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+public class RecurringTransferResponse {
+    private Long id;
+    private RecurringTransferStatus status;
+    private RecurringFrequency frequency;
+    private String fromCardMasked;
+    private String toCardMasked;
+    private BigDecimal amount;
+    private String description;
+    private LocalDateTime nextRunAt;
+    private LocalDateTime lastRunAt;
+    private Long lastTransactionId;  // последний выполненный перевод
+    private String lastError;        // причина отказа последнего запуска
+    private LocalDateTime createdAt;
+}
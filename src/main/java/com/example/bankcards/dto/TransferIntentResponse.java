@@ -0,0 +1,21 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.TransferIntentStatus;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+public class TransferIntentResponse {
+    private Long id;
+    private TransferIntentStatus status;
+    private String fromCardMasked;
+    private String toCardMasked;
+    private BigDecimal amount;
+    private String description;
+    private Long transactionId;     // после COMPLETED
+    private String error;           // после FAILED
+    private LocalDateTime createdAt;
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,43 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Перевод удаленной карты в архиве. Номера карт - просто колонки без внешних ключей:
+// вторая карта перевода может быть еще жива, а может быть удалена позже.
+// Строки пишет только CardDeletionService (INSERT ... SELECT из transactions)
+@Entity
+@Getter
+@Setter
+@Table(name = "transactions_archive", indexes = {
+        @Index(name = "idx_transactions_archive_from_card", columnList = "from_card_number"),
+        @Index(name = "idx_transactions_archive_to_card", columnList = "to_card_number")
+})
+public class ArchivedTransaction {
+
+    // id исходной строки transactions
+    @Id
+    private Long id;
+
+    @Column(name = "from_card_number", nullable = false, length = 255)
+    private String fromCardNumber;
+
+    @Column(name = "to_card_number", nullable = false, length = 255)
+    private String toCardNumber;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "transaction_date", nullable = false)
+    private LocalDateTime transactionDate;
+
+    @Column(length = 500)
+    private String description;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
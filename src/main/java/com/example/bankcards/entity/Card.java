@@ -1,19 +1,34 @@
 package com.example.bankcards.entity;
 
+import com.example.bankcards.service.CardSetVersionListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
-import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
+// Без @DynamicUpdate: для сущности без @Version Hibernate тогда не обновляет запись в L2-кэше
+// при изменении, а удаляет ее - каждый перевод выбрасывал бы обе карты из региона cards
 @Entity
-@Data
-@Table(name = "cards")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "cards")
+@Getter
+@Setter
+@ToString
+@EntityListeners(CardSetVersionListener.class)
+@Table(name = "cards", indexes = {
+        @Index(name = "idx_cards_status_expiry_date", columnList = "status, expiry_date")
+})
 public class Card {
 
     @Id
@@ -37,17 +52,29 @@ public class Card {
     @Column(nullable = false, precision = 15, scale = 2)
     private BigDecimal balance;
 
+    // Лимиты списаний (null - без ограничения), см. SpendingLimitService
+    @Column(name = "daily_limit", precision = 15, scale = 2)
+    private BigDecimal dailyLimit;
+
+    @Column(name = "monthly_limit", precision = 15, scale = 2)
+    private BigDecimal monthlyLimit;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     @JsonIgnore
+    @ToString.Exclude
     private User user;
 
-    @OneToMany(mappedBy = "fromCard", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    // Без REFRESH: lockForBalanceUpdate обновляет карту через refresh, и каскад загружал бы всю историю.
+    // Без REMOVE: историю удаляемой карты пачками переносит в архив CardDeletionService
+    @OneToMany(mappedBy = "fromCard", cascade = {CascadeType.PERSIST, CascadeType.MERGE}, fetch = FetchType.LAZY)
     @JsonIgnore
+    @ToString.Exclude
     private List<Transaction> sentTransactions;
 
-    @OneToMany(mappedBy = "toCard", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "toCard", cascade = {CascadeType.PERSIST, CascadeType.MERGE}, fetch = FetchType.LAZY)
     @JsonIgnore
+    @ToString.Exclude
     private List<Transaction> receivedTransactions;
 
     @Column(name = "created_at", updatable = false)
@@ -78,4 +105,23 @@ public class Card {
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
     }
+
+    // Равенство по идентификатору (у новой сущности без id - только сама с собой), без обхода связей.
+    // hashCode постоянен для класса: id может появиться или измениться после помещения в HashSet
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) {
+            return false;
+        }
+        Card other = (Card) o;
+        return cardNumber != null && cardNumber.equals(other.getCardNumber());
+    }
+
+    @Override
+    public int hashCode() {
+        return Hibernate.getClass(this).hashCode();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Задание на удаление карты (одна запись на номер карты): прогресс переноса истории в архив
+@Entity
+@Data
+@Table(name = "card_deletion_jobs")
+public class CardDeletionJob {
+
+    @Id
+    @Column(name = "card_number", length = 255)
+    private String cardNumber;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "archived_transactions", nullable = false)
+    private long archivedTransactions;
+
+    @Column(name = "deleted_block_requests", nullable = false)
+    private long deletedBlockRequests;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private CardDeletionStatus status;
+
+    @Column(length = 1000)
+    private String error;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public CardDeletionJob() {}
+
+    public CardDeletionJob(String cardNumber, Long userId) {
+        this.cardNumber = cardNumber;
+        this.userId = userId;
+        this.status = CardDeletionStatus.RUNNING;
+        this.startedAt = LocalDateTime.now();
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
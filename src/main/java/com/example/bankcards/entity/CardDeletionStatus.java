@@ -0,0 +1,7 @@
+package com.example.bankcards.entity;
+
+public enum CardDeletionStatus {
+    RUNNING,          // Выполняется (или прервана перезапуском - продолжится автоматически)
+    COMPLETED,        // История в архиве, карта удалена
+    FAILED            // Остановлена из-за ошибки, продолжится при повторном удалении карты
+}
@@ -4,5 +4,6 @@ public enum CardStatus {
     ACTIVE,           // Активна
     BLOCKED,          // Заблокирована
     EXPIRED,          // Истек срок
-    PENDING_BLOCK     // Ожидает блокировки (новый статус)
+    PENDING_BLOCK,    // Ожидает блокировки (новый статус)
+    DELETED           // Удалена, история переносится в архив (CardDeletionService)
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Контрольная точка ротации ключа шифрования номеров карт (одна запись на целевую версию ключа)
+@Entity
+@Data
+@Table(name = "key_rotation_checkpoints")
+public class KeyRotationCheckpoint {
+
+    @Id
+    @Column(name = "target_version")
+    private Integer targetVersion;
+
+    // Последний обработанный (старый) номер карты - с него продолжается обход
+    @Column(name = "last_card_number", length = 255)
+    private String lastCardNumber;
+
+    @Column(nullable = false)
+    private long processed;
+
+    @Column(nullable = false)
+    private long failed;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private KeyRotationStatus status;
+
+    @Column(length = 1000)
+    private String error;
+
+    // Экземпляр, который ведет ротацию (RUNNING); updated_at служит его арендой
+    @Column(name = "claimed_by", length = 100)
+    private String claimedBy;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public KeyRotationCheckpoint() {}
+
+    public KeyRotationCheckpoint(Integer targetVersion) {
+        this.targetVersion = targetVersion;
+        this.status = KeyRotationStatus.RUNNING;
+        this.startedAt = LocalDateTime.now();
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.entity;
+
+public enum KeyRotationStatus {
+    RUNNING,          // Выполняется
+    PAUSED,           // Остановлена, можно продолжить с контрольной точки
+    COMPLETED,        // Все карты перешифрованы
+    FAILED            // Остановлена из-за ошибки, можно продолжить с контрольной точки
+}
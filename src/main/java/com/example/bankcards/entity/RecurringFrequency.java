@@ -0,0 +1,19 @@
+package com.example.bankcards.entity;
+
+import java.time.LocalDateTime;
+
+public enum RecurringFrequency {
+    DAILY,
+    WEEKLY,
+    MONTHLY;
+
+    // Время запуска с номером number (0 - первый). Считается от первого запуска, а не от предыдущего:
+    // поручение на 31-е после февраля снова выполняется 31-го (или в последний день месяца)
+    public LocalDateTime runAt(LocalDateTime firstRunAt, int number) {
+        return switch (this) {
+            case DAILY -> firstRunAt.plusDays(number);
+            case WEEKLY -> firstRunAt.plusWeeks(number);
+            case MONTHLY -> firstRunAt.plusMonths(number);
+        };
+    }
+}
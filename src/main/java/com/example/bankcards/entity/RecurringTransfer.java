@@ -0,0 +1,109 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Постоянное поручение: перевод между своими картами по расписанию (POST /api/transactions/recurring)
+@Entity
+@Data
+@Table(name = "recurring_transfers", indexes = {
+        @Index(name = "idx_recurring_transfers_status_next_run", columnList = "status, next_run_at"),
+        @Index(name = "idx_recurring_transfers_user", columnList = "user_id")
+})
+public class RecurringTransfer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recurring_transfers_seq")
+    @SequenceGenerator(name = "recurring_transfers_seq", sequenceName = "recurring_transfers_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "from_card_number", nullable = false, length = 255)
+    private String fromCardNumber;
+
+    @Column(name = "to_card_number", nullable = false, length = 255)
+    private String toCardNumber;
+
+    // Связи только ради внешних ключей: по ним ротация ключа шифрования переносит номера карт
+    // (CardKeyRotationService.getCardReferences). В коде используются колонки выше
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(name = "fk_recurring_transfers_user_id"))
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "from_card_number", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(name = "fk_recurring_transfers_from_card_number"))
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Card fromCard;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "to_card_number", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(name = "fk_recurring_transfers_to_card_number"))
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Card toCard;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal amount;
+
+    @Column(length = 500)
+    private String description;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private RecurringFrequency frequency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private RecurringTransferStatus status;
+
+    @Column(name = "first_run_at", nullable = false)
+    private LocalDateTime firstRunAt;
+
+    // Номер ближайшего запуска в расписании от firstRunAt (0 - первый)
+    @Column(name = "next_run_number", nullable = false)
+    private int nextRunNumber;
+
+    @Column(name = "next_run_at", nullable = false)
+    private LocalDateTime nextRunAt;
+
+    @Column(name = "last_run_at")
+    private LocalDateTime lastRunAt;
+
+    @Column(name = "last_transaction_id")
+    private Long lastTransactionId;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public RecurringTransfer() {}
+
+    public RecurringTransfer(Long userId, String fromCardNumber, String toCardNumber, BigDecimal amount,
+                             String description, RecurringFrequency frequency, LocalDateTime firstRunAt) {
+        this.userId = userId;
+        this.fromCardNumber = fromCardNumber;
+        this.toCardNumber = toCardNumber;
+        this.amount = amount;
+        this.description = description;
+        this.frequency = frequency;
+        this.status = RecurringTransferStatus.ACTIVE;
+        this.firstRunAt = firstRunAt;
+        this.nextRunNumber = 0;
+        this.nextRunAt = firstRunAt;
+        this.createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.bankcards.entity;
+
+public enum RecurringTransferStatus {
+    ACTIVE,           // Выполняется по расписанию, ближайший запуск - nextRunAt
+    CANCELLED         // Отменено пользователем или карта удалена
+}
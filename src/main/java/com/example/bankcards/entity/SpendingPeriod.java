@@ -0,0 +1,14 @@
+package com.example.bankcards.entity;
+
+import java.time.LocalDate;
+
+// Период лимита списаний
+public enum SpendingPeriod {
+    DAY,
+    MONTH;
+
+    // Первый день периода, в который попадает дата
+    public LocalDate startOf(LocalDate date) {
+        return this == DAY ? date : date.withDayOfMonth(1);
+    }
+}
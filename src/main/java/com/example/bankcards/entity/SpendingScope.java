@@ -0,0 +1,7 @@
+package com.example.bankcards.entity;
+
+// Чьи списания считаются: одной карты или всех карт пользователя
+public enum SpendingScope {
+    CARD,
+    USER
+}
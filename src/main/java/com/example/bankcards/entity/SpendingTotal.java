@@ -0,0 +1,87 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Сумма списаний карты или пользователя за период. Ключ собран из области, владельца и начала периода,
+// поэтому перевод находит строку по первичному ключу (из L2-кэша) без запроса
+@Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "spending-totals")
+@Getter
+@Setter
+@ToString
+@Table(name = "spending_totals", indexes = {
+        @Index(name = "idx_spending_totals_owner", columnList = "scope, owner_key")
+})
+public class SpendingTotal {
+
+    @Id
+    @Column(length = 400)
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private SpendingScope scope;
+
+    // Зашифрованный номер карты или id пользователя
+    @Column(name = "owner_key", nullable = false)
+    private String ownerKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private SpendingPeriod period;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public SpendingTotal() {}
+
+    public SpendingTotal(SpendingScope scope, String ownerKey, SpendingPeriod period,
+                         LocalDate periodStart, BigDecimal amount) {
+        this.id = idOf(scope, ownerKey, period, periodStart);
+        this.scope = scope;
+        this.ownerKey = ownerKey;
+        this.period = period;
+        this.periodStart = periodStart;
+        this.amount = amount;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public static String idOf(SpendingScope scope, String ownerKey, SpendingPeriod period, LocalDate periodStart) {
+        return scope + ":" + ownerKey + ":" + period + ":" + periodStart;
+    }
+
+    // Равенство по id, как в Card
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) {
+            return false;
+        }
+        SpendingTotal other = (SpendingTotal) o;
+        return id != null && id.equals(other.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Hibernate.getClass(this).hashCode();
+    }
+}
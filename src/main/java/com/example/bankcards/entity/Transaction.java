@@ -2,27 +2,37 @@ package com.example.bankcards.entity;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
-import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Data
-@Table(name = "transactions")
+@Getter
+@Setter
+@ToString
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_from_card_date", columnList = "from_card_number, transaction_date")
+})
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     @NotNull
     @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
     @JoinColumn(name = "from_card_number", nullable = false) // Теперь ссылается на card_number
     private Card fromCard;
 
     @NotNull
     @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
     @JoinColumn(name = "to_card_number", nullable = false) // Теперь ссылается на card_number
     private Card toCard;
 
@@ -46,4 +56,22 @@ public class Transaction {
         this.transactionDate = LocalDateTime.now();
         this.description = description;
     }
+
+    // Равенство по id, как в Card
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) {
+            return false;
+        }
+        Transaction other = (Transaction) o;
+        return id != null && id.equals(other.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Hibernate.getClass(this).hashCode();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Принятый к асинхронному выполнению перевод (POST /api/transactions/transfer?async=true)
+@Entity
+@Data
+@Table(name = "transfer_intents")
+public class TransferIntent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfer_intents_seq")
+    @SequenceGenerator(name = "transfer_intents_seq", sequenceName = "transfer_intents_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "from_card_number", nullable = false, length = 255)
+    private String fromCardNumber;
+
+    @Column(name = "to_card_number", nullable = false, length = 255)
+    private String toCardNumber;
+
+    // Только для внешних ключей на cards: ротация ключа шифрования переносит номера карт по ним,
+    // и принятый до ротации перевод находит карты под новыми номерами
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "from_card_number", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(name = "fk_transfer_intents_from_card_number"))
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Card fromCard;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "to_card_number", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(name = "fk_transfer_intents_to_card_number"))
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Card toCard;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal amount;
+
+    @Column(length = 500)
+    private String description;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private TransferIntentStatus status;
+
+    @Column(name = "transaction_id")
+    private Long transactionId;
+
+    @Column(length = 500)
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    public TransferIntent() {}
+
+    public TransferIntent(Long userId, String fromCardNumber, String toCardNumber,
+                          BigDecimal amount, String description) {
+        this.userId = userId;
+        this.fromCardNumber = fromCardNumber;
+        this.toCardNumber = toCardNumber;
+        this.amount = amount;
+        this.description = description;
+        this.status = TransferIntentStatus.PENDING;
+        this.createdAt = LocalDateTime.now();
+    }
+}
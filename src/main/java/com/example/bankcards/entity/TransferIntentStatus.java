@@ -0,0 +1,7 @@
+package com.example.bankcards.entity;
+
+public enum TransferIntentStatus {
+    PENDING,          // Принят, ждет обработки в очереди карты отправителя
+    COMPLETED,        // Перевод выполнен, transactionId заполнен
+    FAILED            // Отклонен, причина в error
+}
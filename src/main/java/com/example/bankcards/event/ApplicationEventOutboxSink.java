@@ -0,0 +1,29 @@
+package com.example.bankcards.event;
+
+import com.example.bankcards.entity.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// События outbox внутри процесса: каждое публикуется как событие Spring,
+// получатель - @EventListener с параметром OutboxEvent. Исключение слушателя - повтор пачки
+@Component
+@ConditionalOnProperty(name = "outbox.sinks.application-events.enabled", havingValue = "true", matchIfMissing = true)
+public class ApplicationEventOutboxSink implements OutboxSink {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public String getName() {
+        return "application-events";
+    }
+
+    @Override
+    public void deliver(List<OutboxEvent> events) {
+        events.forEach(eventPublisher::publishEvent);
+    }
+}
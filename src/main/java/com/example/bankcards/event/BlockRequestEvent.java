@@ -0,0 +1,34 @@
+package com.example.bankcards.event;
+
+import com.example.bankcards.dto.BlockRequestResponse;
+import com.example.bankcards.dto.BulkBlockRequestResult;
+import lombok.Data;
+
+// Событие по запросам на блокировку для админских консолей (SSE /api/admin/block-requests/stream).
+// Публикуется в CardService, рассылается BlockRequestEventBus после коммита транзакции
+@Data
+public class BlockRequestEvent {
+
+    public enum Type {
+        CREATED,          // Пользователь создал запрос
+        APPROVED,         // Админ одобрил запрос
+        REJECTED,         // Админ отклонил запрос
+        BULK_PROCESSED    // Массовое одобрение/отклонение (только итоги, список нужно перечитать)
+    }
+
+    private Type type;
+    private BlockRequestResponse request;
+    private BulkBlockRequestResult bulkResult;
+
+    public BlockRequestEvent() {}
+
+    public BlockRequestEvent(Type type, BlockRequestResponse request) {
+        this.type = type;
+        this.request = request;
+    }
+
+    public BlockRequestEvent(BulkBlockRequestResult bulkResult) {
+        this.type = Type.BULK_PROCESSED;
+        this.bulkResult = bulkResult;
+    }
+}
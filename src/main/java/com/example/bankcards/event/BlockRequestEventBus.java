@@ -0,0 +1,286 @@
+package com.example.bankcards.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Внутрипроцессная шина событий по запросам на блокировку для SSE-подписчиков (админские консоли).
+// События получают сквозной номер (id SSE-события) и хранятся в кольцевом буфере последних
+// admin.events.buffer-size событий: при переподключении с заголовком Last-Event-ID пропущенное
+// досылается из буфера, а если оно уже вытеснено - отправляется событие reset (перечитать /pending).
+// У каждого подписчика своя ограниченная очередь; отправка идет в небольшом пуле потоков,
+// медленный подписчик с переполненной очередью отключается и переподключается с Last-Event-ID.
+// При spring.threads.virtual.enabled отправка идет в виртуальных потоках
+@Slf4j
+@Component
+public class BlockRequestEventBus {
+
+    static final String RESET_EVENT = "reset";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${admin.events.buffer-size:1000}")
+    private int bufferSize;
+
+    @Value("${admin.events.subscriber-queue-size:256}")
+    private int subscriberQueueSize;
+
+    @Value("${admin.events.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${admin.events.sender-threads:2}")
+    private int senderThreads;
+
+    // Кольцевой буфер и счетчик id меняются только под этой блокировкой
+    // (ReentrantLock, а не synchronized - не закрепляет carrier-поток виртуального потока)
+    private final ReentrantLock bufferLock = new ReentrantLock();
+    private final ArrayDeque<StreamedEvent> buffer = new ArrayDeque<>();
+    private long lastEventId;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private Executor senderPool;
+
+    @PostConstruct
+    void init() {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            senderPool = new VirtualThreadTaskExecutor("block-request-sse-");
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        senderPool = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "block-request-sse-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.close(null));
+        if (senderPool instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    // Рассылается только после коммита транзакции, в которой событие опубликовано
+    // (вне транзакции - сразу)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBlockRequestEvent(BlockRequestEvent event) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize block request event {}", event.getType(), e);
+            return;
+        }
+
+        String name = event.getType().name().toLowerCase().replace('_', '-');
+        bufferLock.lock();
+        try {
+            StreamedEvent streamed = new StreamedEvent(++lastEventId, name, data);
+            buffer.addLast(streamed);
+            if (buffer.size() > bufferSize) {
+                buffer.removeFirst();
+            }
+            // Под блокировкой, чтобы у всех подписчиков события шли строго по возрастанию id
+            subscribers.forEach(subscriber -> subscriber.offer(streamed));
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    // Новый подписчик; lastSeenEventId - значение заголовка Last-Event-ID (null при первом подключении)
+    public SseEmitter subscribe(Long lastSeenEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscriber.close(null));
+        emitter.onError(error -> subscribers.remove(subscriber));
+
+        subscriber.offer(StreamedEvent.comment("connected"));
+        bufferLock.lock();
+        try {
+            if (lastSeenEventId != null) {
+                replay(subscriber, lastSeenEventId);
+            }
+            subscribers.add(subscriber);
+        } finally {
+            bufferLock.unlock();
+        }
+        // Первые события отправляются в потоке запроса: emitter еще не инициализирован и только
+        // копит их, а отправка из пула писала бы в ответ параллельно с фильтрами запроса
+        subscriber.drain();
+        return emitter;
+    }
+
+    // Дослать события после lastSeenEventId или reset, если их уже нет в буфере
+    private void replay(Subscriber subscriber, long lastSeenEventId) {
+        long oldestId = buffer.isEmpty() ? lastEventId + 1 : buffer.peekFirst().id;
+        long missed = lastEventId - lastSeenEventId;
+
+        // id из будущего - сервер перезапускался и нумерация началась заново
+        if (lastSeenEventId < oldestId - 1 || missed < 0 || missed >= subscriberQueueSize) {
+            subscriber.offer(new StreamedEvent(lastEventId, RESET_EVENT,
+                    "{\"lastEventId\":" + lastEventId + "}"));
+            return;
+        }
+        for (StreamedEvent event : buffer) {
+            if (event.id > lastSeenEventId) {
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    // Комментарий-пинг, чтобы прокси не закрывали простаивающее соединение
+    @Scheduled(fixedDelayString = "${admin.events.heartbeat-ms:15000}")
+    public void heartbeat() {
+        StreamedEvent ping = StreamedEvent.comment("ping");
+        subscribers.forEach(subscriber -> subscriber.offer(ping));
+    }
+
+    // Состояние шины для мониторинга
+    public Map<String, Object> getStats() {
+        bufferLock.lock();
+        try {
+            return Map.of(
+                    "subscribers", subscribers.size(),
+                    "lastEventId", lastEventId,
+                    "buffered", buffer.size());
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private static final class StreamedEvent {
+        private final long id;
+        private final String name;
+        private final String data;
+        private final String comment;
+
+        private StreamedEvent(long id, String name, String data) {
+            this(id, name, data, null);
+        }
+
+        private StreamedEvent(long id, String name, String data, String comment) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+            this.comment = comment;
+        }
+
+        private static StreamedEvent comment(String comment) {
+            return new StreamedEvent(0, null, null, comment);
+        }
+
+        private SseEmitter.SseEventBuilder toSse() {
+            if (comment != null) {
+                return SseEmitter.event().comment(comment);
+            }
+            return SseEmitter.event().id(String.valueOf(id)).name(name).data(data);
+        }
+    }
+
+    // Подписчик: очередь событий и флаг "отправка уже запланирована" (в пуле не больше одной задачи на подписчика)
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<StreamedEvent> queue;
+        // До конца subscribe события только копятся в очереди
+        private final AtomicBoolean draining = new AtomicBoolean(true);
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(subscriberQueueSize + 1);
+        }
+
+        private void offer(StreamedEvent event) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                // Не успевает читать - отключаем, клиент переподключится с Last-Event-ID
+                log.debug("SSE subscriber queue is full, disconnecting");
+                close(null);
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senderPool.execute(this::drain);
+                } catch (RuntimeException e) {
+                    draining.set(false);
+                    close(e);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                StreamedEvent event;
+                while (!closed && (event = queue.poll()) != null) {
+                    emitter.send(event.toSse());
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Клиент отключился
+                close(e);
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        private void close(Throwable error) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            try {
+                if (error != null) {
+                    emitter.completeWithError(error);
+                } else {
+                    emitter.complete();
+                }
+            } catch (RuntimeException ignored) {
+                // Соединение уже закрыто
+            }
+        }
+    }
+}
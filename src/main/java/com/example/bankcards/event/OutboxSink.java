@@ -0,0 +1,15 @@
+package com.example.bankcards.event;
+
+import com.example.bankcards.entity.OutboxEvent;
+
+import java.util.List;
+
+// Приемник событий outbox (бин Spring). Доставка не реже одного раза: если любой приемник
+// бросил исключение, пачка повторяется во все приемники, поэтому повторы отбрасываются по OutboxEvent.id
+public interface OutboxSink {
+
+    String getName();
+
+    // События пачки по возрастанию id
+    void deliver(List<OutboxEvent> events) throws Exception;
+}
@@ -1,7 +1,13 @@
 package com.example.bankcards.exception;
 
-public class CardBlockedException extends RuntimeException {
+import java.util.function.Supplier;
+
+public class CardBlockedException extends DomainException {
     public CardBlockedException(String message) {
         super(message);
     }
-}
\ No newline at end of file
+
+    public CardBlockedException(Supplier<String> messageSupplier) {
+        super(messageSupplier);
+    }
+}
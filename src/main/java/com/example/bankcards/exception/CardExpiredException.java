@@ -1,7 +1,13 @@
 package com.example.bankcards.exception;
 
-public class CardExpiredException extends RuntimeException {
+import java.util.function.Supplier;
+
+public class CardExpiredException extends DomainException {
     public CardExpiredException(String message) {
         super(message);
     }
+
+    public CardExpiredException(Supplier<String> messageSupplier) {
+        super(messageSupplier);
+    }
 }
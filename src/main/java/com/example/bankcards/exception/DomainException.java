@@ -0,0 +1,32 @@
+package com.example.bankcards.exception;
+
+import java.util.function.Supplier;
+
+// Легковесное доменное исключение: ожидаемый отказ бизнес-проверки (перевод с заблокированной карты,
+// нехватка средств), а не ошибка программы. Стек не заполняется - обработчик пишет в лог только сообщение.
+// Сообщение может строиться лениво: маскирование номера требует расшифровки, и она выполняется
+// только при первом getMessage()
+public abstract class DomainException extends RuntimeException {
+
+    private Supplier<String> messageSupplier;
+    private String message;
+
+    protected DomainException(String message) {
+        super(message, null, false, false);
+        this.message = message;
+    }
+
+    protected DomainException(Supplier<String> messageSupplier) {
+        super(null, null, false, false);
+        this.messageSupplier = messageSupplier;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null && messageSupplier != null) {
+            message = messageSupplier.get();
+            messageSupplier = null;
+        }
+        return message;
+    }
+}
@@ -28,7 +28,9 @@ public class GlobalExceptionHandler {
     // 1. Обработка кастомных исключений - 404 Not Found
     @ExceptionHandler({
             CardNotFoundException.class,
-            UserNotFoundException.class
+            UserNotFoundException.class,
+            TransferIntentNotFoundException.class,
+            RecurringTransferNotFoundException.class
     })
     public ResponseEntity<ErrorResponse> handleNotFoundException(RuntimeException ex, HttpServletRequest request) {
         log.warn("Not found: {}", ex.getMessage());
@@ -45,7 +47,9 @@ public class GlobalExceptionHandler {
     @ExceptionHandler({
             InsufficientFundsException.class,
             CardBlockedException.class,
-            CardExpiredException.class
+            CardExpiredException.class,
+            VelocityLimitExceededException.class,
+            SpendingLimitExceededException.class
     })
     public ResponseEntity<ErrorResponse> handleBusinessException(RuntimeException ex, HttpServletRequest request) {
         log.warn("Business error: {}", ex.getMessage());
@@ -171,7 +175,21 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
 
-    // 8. Обработка всех остальных исключений - 500 Internal Server Error
+    // 8. Обработка IllegalStateException (операция уже выполняется, не настроена и т.п.) - 409 Conflict
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<ErrorResponse> handleIllegalStateException(
+            IllegalStateException ex, HttpServletRequest request) {
+        log.warn("Illegal state: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.CONFLICT.value(),
+                "Conflict",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+        return new ResponseEntity<>(error, HttpStatus.CONFLICT);
+    }
+
+    // 9. Обработка всех остальных исключений - 500 Internal Server Error
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(
             Exception ex, HttpServletRequest request) {
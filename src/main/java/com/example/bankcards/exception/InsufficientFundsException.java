@@ -1,12 +1,18 @@
 package com.example.bankcards.exception;
 
-public class InsufficientFundsException extends RuntimeException {
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.function.Supplier;
+
+public class InsufficientFundsException extends DomainException {
     public InsufficientFundsException(String message) {
         super(message);
     }
 
-    public InsufficientFundsException(String maskedCardNumber, Double balance, Double amount) {
-        super(String.format("Insufficient funds on card %s: balance=%.2f, required=%.2f",
-                maskedCardNumber, balance, amount));
+    // Сообщение (и маскированный номер) строится только при обращении к нему
+    public InsufficientFundsException(Supplier<String> maskedCardNumber, BigDecimal balance, BigDecimal amount) {
+        super(() -> "Insufficient funds on card " + maskedCardNumber.get()
+                + ": balance=" + balance.setScale(2, RoundingMode.HALF_UP).toPlainString()
+                + ", required=" + amount.setScale(2, RoundingMode.HALF_UP).toPlainString());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class RecurringTransferNotFoundException extends RuntimeException {
+    public RecurringTransferNotFoundException(Long id) {
+        super("Recurring transfer not found with id: " + id);
+    }
+}
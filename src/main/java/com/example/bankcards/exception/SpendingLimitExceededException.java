@@ -0,0 +1,13 @@
+package com.example.bankcards.exception;
+
+import java.util.function.Supplier;
+
+public class SpendingLimitExceededException extends DomainException {
+    public SpendingLimitExceededException(String message) {
+        super(message);
+    }
+
+    public SpendingLimitExceededException(Supplier<String> messageSupplier) {
+        super(messageSupplier);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class TransferIntentNotFoundException extends RuntimeException {
+    public TransferIntentNotFoundException(Long id) {
+        super("Transfer not found with id: " + id);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.bankcards.exception;
+
+import java.util.function.Supplier;
+
+public class VelocityLimitExceededException extends DomainException {
+    public VelocityLimitExceededException(String message) {
+        super(message);
+    }
+
+    public VelocityLimitExceededException(Supplier<String> messageSupplier) {
+        super(messageSupplier);
+    }
+}
@@ -4,7 +4,12 @@ import com.example.bankcards.entity.BlockRequest;
 import com.example.bankcards.entity.BlockRequestStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,15 +17,35 @@ import java.util.List;
 @Repository
 public interface BlockRequestRepository extends JpaRepository<BlockRequest, Long> {
 
-    // Найти все pending запросы
+    // Списки преобразуются в BlockRequestResponse вне сессии: карта, автор и обработавший админ
+    // загружаются одним запросом (LEFT JOIN). Кэш запросов хранит строки целиком, вместе со связями
+
+    @EntityGraph(attributePaths = {"card", "user", "processedBy"})
+    Page<BlockRequest> findAll(Pageable pageable);
+
+    // Найти все pending запросы (список небольшой - результат и count кэшируются)
+    @EntityGraph(attributePaths = {"card", "user", "processedBy"})
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Page<BlockRequest> findByStatus(BlockRequestStatus status, Pageable pageable);
 
+    // Варианты Slice - без COUNT(*) (size + 1 строка)
+    @EntityGraph(attributePaths = {"card", "user", "processedBy"})
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Slice<BlockRequest> findSliceByStatus(BlockRequestStatus status, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"card", "user", "processedBy"})
+    Slice<BlockRequest> findSliceBy(Pageable pageable);
+
     // Найти запросы по карте
     List<BlockRequest> findByCardCardNumber(String cardNumber);
 
     // Найти запросы по пользователю
+    @EntityGraph(attributePaths = {"card", "user", "processedBy"})
     Page<BlockRequest> findByUserUsername(String username, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"card", "user", "processedBy"})
+    Slice<BlockRequest> findSliceByUserUsername(String username, Pageable pageable);
+
     // Проверить существование pending запроса для карты
     boolean existsByCardCardNumberAndStatus(String cardNumber, BlockRequestStatus status);
 }
\ No newline at end of file
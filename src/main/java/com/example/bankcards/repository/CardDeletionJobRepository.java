@@ -0,0 +1,14 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardDeletionJob;
+import com.example.bankcards.entity.CardDeletionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CardDeletionJobRepository extends JpaRepository<CardDeletionJob, String> {
+
+    List<CardDeletionJob> findByStatus(CardDeletionStatus status);
+}
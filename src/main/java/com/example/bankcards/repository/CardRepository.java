@@ -5,29 +5,49 @@ import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Repository
 public interface CardRepository extends JpaRepository<Card, String> { // ID теперь String!
 
+    // Списки карт отдаются в ответах после закрытия сессии (open-in-view выключен), поэтому
+    // владелец загружается тем же запросом: админские ответы показывают его username
+
     // Найти все карты пользователя с пагинацией
+    @EntityGraph(attributePaths = "user")
     Page<Card> findByUser(User user, Pageable pageable);
 
+    // То же без COUNT(*): выбирается size + 1 строка, чтобы узнать о следующей странице
+    @EntityGraph(attributePaths = "user")
+    Slice<Card> findSliceByUser(User user, Pageable pageable);
+
     // Найти все карты пользователя по статусу с пагинацией
     Page<Card> findByUserAndStatus(User user, CardStatus status, Pageable pageable);
 
-    // Найти карту по номеру и пользователю (проверка владения)
-    Optional<Card> findByCardNumberAndUser(String cardNumber, User user);
+    // Найти карту по номеру и пользователю (проверка владения).
+    // Поиск по первичному ключу обслуживается L2-кэшем, владелец сверяется по id без загрузки User
+    default Optional<Card> findByCardNumberAndUser(String cardNumber, User user) {
+        return findById(cardNumber)
+                .filter(card -> card.getUser() != null && Objects.equals(card.getUser().getId(), user.getId()));
+    }
 
     // Проверить существование карты по номеру
     boolean existsByCardNumber(String cardNumber);
 
+    // Какие из номеров (зашифрованных) уже есть в БД - одна выборка на пачку вместо запроса на каждую карту
+    @Query("SELECT c.cardNumber FROM Card c WHERE c.cardNumber IN :cardNumbers")
+    List<String> findExistingCardNumbers(@Param("cardNumbers") Collection<String> cardNumbers);
+
     // Найти все активные карты пользователя
     List<Card> findByUserAndStatus(User user, CardStatus status);
 
@@ -37,6 +57,22 @@ public interface CardRepository extends JpaRepository<Card, String> { // ID те
                                                       @Param("owner") String owner,
                                                       Pageable pageable);
 
+    @Query("SELECT c FROM Card c WHERE c.user = :user AND LOWER(c.owner) LIKE LOWER(CONCAT('%', :owner, '%'))")
+    Slice<Card> findSliceByUserAndOwnerContainingIgnoreCase(@Param("user") User user,
+                                                            @Param("owner") String owner,
+                                                            Pageable pageable);
+
     // Получить все карты (для админа)
+    @EntityGraph(attributePaths = "user")
     Page<Card> findAll(Pageable pageable);
+
+    @EntityGraph(attributePaths = "user")
+    Slice<Card> findSliceBy(Pageable pageable);
+
+    // Карты по статусу (для админа)
+    @EntityGraph(attributePaths = "user")
+    Page<Card> findByStatus(CardStatus status, Pageable pageable);
+
+    @EntityGraph(attributePaths = "user")
+    Slice<Card> findSliceByStatus(CardStatus status, Pageable pageable);
 }
\ No newline at end of file
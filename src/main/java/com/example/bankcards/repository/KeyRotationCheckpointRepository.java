@@ -0,0 +1,20 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.KeyRotationCheckpoint;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface KeyRotationCheckpointRepository extends JpaRepository<KeyRotationCheckpoint, Integer> {
+
+    // Контрольная точка под блокировкой строки (SELECT ... FOR UPDATE): захват ротации экземпляром
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM KeyRotationCheckpoint c WHERE c.targetVersion = :targetVersion")
+    Optional<KeyRotationCheckpoint> findForUpdate(@Param("targetVersion") Integer targetVersion);
+}
@@ -0,0 +1,16 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.RecurringTransfer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RecurringTransferRepository extends JpaRepository<RecurringTransfer, Long> {
+
+    Optional<RecurringTransfer> findByIdAndUserId(Long id, Long userId);
+
+    List<RecurringTransfer> findByUserIdOrderByIdAsc(Long userId);
+}
@@ -0,0 +1,27 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.SpendingPeriod;
+import com.example.bankcards.entity.SpendingScope;
+import com.example.bankcards.entity.SpendingTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+@Repository
+public interface SpendingTotalRepository extends JpaRepository<SpendingTotal, String> {
+
+    // Лимит снят: сумма больше не ведется и при новом лимите будет пересчитана
+    @Modifying
+    @Query("DELETE FROM SpendingTotal s WHERE s.scope = :scope AND s.ownerKey = :ownerKey AND s.period = :period")
+    int deleteByOwner(@Param("scope") SpendingScope scope, @Param("ownerKey") String ownerKey,
+                      @Param("period") SpendingPeriod period);
+
+    // Суммы закончившихся периодов
+    @Modifying
+    @Query("DELETE FROM SpendingTotal s WHERE s.period = :period AND s.periodStart < :before")
+    int deleteEndedBefore(@Param("period") SpendingPeriod period, @Param("before") LocalDate before);
+}
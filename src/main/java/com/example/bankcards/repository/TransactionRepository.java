@@ -4,11 +4,13 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -19,12 +21,20 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     @Query("SELECT t FROM Transaction t WHERE t.fromCard.cardNumber = :cardNumber OR t.toCard.cardNumber = :cardNumber ORDER BY t.transactionDate DESC")
     Page<Transaction> findByCardNumber(@Param("cardNumber") String cardNumber, Pageable pageable);
 
+    // Варианты Slice ниже - те же выборки без COUNT(*) (size + 1 строка)
+    @Query("SELECT t FROM Transaction t WHERE t.fromCard.cardNumber = :cardNumber OR t.toCard.cardNumber = :cardNumber ORDER BY t.transactionDate DESC")
+    Slice<Transaction> findSliceByCardNumber(@Param("cardNumber") String cardNumber, Pageable pageable);
+
     // Найти отправленные транзакции по карте
     Page<Transaction> findByFromCardCardNumberOrderByTransactionDateDesc(String fromCardNumber, Pageable pageable);
 
+    Slice<Transaction> findSliceByFromCardCardNumberOrderByTransactionDateDesc(String fromCardNumber, Pageable pageable);
+
     // Найти полученные транзакции по карте
     Page<Transaction> findByToCardCardNumberOrderByTransactionDateDesc(String toCardNumber, Pageable pageable);
 
+    Slice<Transaction> findSliceByToCardCardNumberOrderByTransactionDateDesc(String toCardNumber, Pageable pageable);
+
     // Найти транзакции за период
     @Query("SELECT t FROM Transaction t WHERE (t.fromCard.cardNumber = :cardNumber OR t.toCard.cardNumber = :cardNumber) " +
             "AND t.transactionDate BETWEEN :startDate AND :endDate ORDER BY t.transactionDate DESC")
@@ -33,6 +43,23 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
                                                 @Param("endDate") LocalDateTime endDate,
                                                 Pageable pageable);
 
+    @Query("SELECT t FROM Transaction t WHERE (t.fromCard.cardNumber = :cardNumber OR t.toCard.cardNumber = :cardNumber) " +
+            "AND t.transactionDate BETWEEN :startDate AND :endDate ORDER BY t.transactionDate DESC")
+    Slice<Transaction> findSliceByCardNumberAndPeriod(@Param("cardNumber") String cardNumber,
+                                                      @Param("startDate") LocalDateTime startDate,
+                                                      @Param("endDate") LocalDateTime endDate,
+                                                      Pageable pageable);
+
+    // Сумма списаний с карты с начала периода (индекс transactions(from_card_number, transaction_date))
+    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t " +
+            "WHERE t.fromCard.cardNumber = :cardNumber AND t.transactionDate >= :since")
+    BigDecimal sumSentSince(@Param("cardNumber") String cardNumber, @Param("since") LocalDateTime since);
+
+    // Сумма списаний со всех карт пользователя с начала периода
+    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t " +
+            "WHERE t.fromCard.user.id = :userId AND t.transactionDate >= :since")
+    BigDecimal sumSentByUserSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+
     // Проверить существование транзакций по карте
     boolean existsByFromCardCardNumberOrToCardCardNumber(String fromCardNumber, String toCardNumber);
 }
@@ -0,0 +1,17 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.TransferIntent;
+import com.example.bankcards.entity.TransferIntentStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TransferIntentRepository extends JpaRepository<TransferIntent, Long> {
+
+    Optional<TransferIntent> findByIdAndUserId(Long id, Long userId);
+
+    List<TransferIntent> findByStatusOrderByIdAsc(TransferIntentStatus status);
+}
@@ -4,15 +4,24 @@ import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
-    // Найти пользователя по username
+    // Найти пользователя по username (кэш запросов: id берется из кэша, сущность - из L2-региона users)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByUsername(String username);
 
     // Найти пользователя по email
@@ -30,6 +39,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Поиск по username (частичное совпадение)
     Page<User> findByUsernameContainingIgnoreCase(String username, Pageable pageable);
 
+    // То же без COUNT(*) (size + 1 строка)
+    Slice<User> findSliceByUsernameContainingIgnoreCase(String username, Pageable pageable);
+
+    // Все пользователи без COUNT(*)
+    Slice<User> findSliceBy(Pageable pageable);
+
     // Количество пользователей по роли
     long countByRole(Role role);
+
+    // Какие из id пользователей существуют
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
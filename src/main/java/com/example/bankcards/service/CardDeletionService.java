@@ -0,0 +1,281 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BlockRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardDeletionJob;
+import com.example.bankcards.entity.CardDeletionStatus;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.repository.CardDeletionJobRepository;
+import com.example.bankcards.repository.CardRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Удаление карты без каскада Hibernate по истории (он загружал и удалял каждый перевод по одному).
+// Карта сразу помечается DELETED - переводы по ней невозможны, - а история обрабатывается в фоне
+// пачками по cards.deletion.chunk-size строк: переводы переносятся в transactions_archive,
+// запросы на блокировку удаляются, последней удаляется сама карта (вместе с постоянными поручениями
+// и асинхронными переводами по ней).
+// Прогресс коммитится в card_deletion_jobs вместе с каждой пачкой: задание, прерванное перезапуском,
+// продолжается с места остановки (при старте и по расписанию), упавшее - при повторном удалении карты
+@Slf4j
+@Service
+public class CardDeletionService {
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardDeletionJobRepository jobRepository;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private CardSetVersionService cardSetVersionService;
+
+    @Autowired
+    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private AsyncTaskExecutor taskExecutor;
+
+    @Value("${cards.deletion.chunk-size:1000}")
+    private int chunkSize;
+
+    // Карты, задания по которым выполняются в этом процессе
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopRequested;
+
+    @PreDestroy
+    void shutdown() {
+        // Задания останутся RUNNING и продолжатся после старта
+        stopRequested = true;
+    }
+
+    // Пометить карту удаленной и запустить перенос истории в фоне
+    public CardDeletionJob requestDeletion(Card card) {
+        return transactionTemplate.execute(status -> {
+            card.setStatus(CardStatus.DELETED);
+            cardRepository.save(card);
+
+            CardDeletionJob existing = jobRepository.findById(card.getCardNumber())
+                    .orElseGet(() -> new CardDeletionJob(card.getCardNumber(), card.getUser().getId()));
+            // Карту с номером уже удаленной выпустили заново - считаем с нуля
+            if (existing.getStatus() == CardDeletionStatus.COMPLETED) {
+                existing.setArchivedTransactions(0);
+                existing.setDeletedBlockRequests(0);
+                existing.setUserId(card.getUser().getId());
+                existing.setStartedAt(LocalDateTime.now());
+                existing.setFinishedAt(null);
+            }
+            existing.setStatus(CardDeletionStatus.RUNNING);
+            existing.setError(null);
+            CardDeletionJob saved = jobRepository.save(existing);
+
+            // Фоновое задание должно увидеть статус DELETED - запускаем после коммита
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    start(saved.getCardNumber());
+                }
+            });
+            return saved;
+        });
+    }
+
+    // Состояние удаления по зашифрованному номеру (карта могла быть зашифрована предыдущей версией ключа)
+    public Optional<CardDeletionJob> getStatus(String cardNumber) {
+        Optional<CardDeletionJob> job = jobRepository.findById(cardNumber);
+        if (job.isPresent() || encryptionService.getCurrentKeyVersion() == 0) {
+            return job;
+        }
+        for (String candidate : encryptionService.getPreviousVersionCiphertexts(cardNumber)) {
+            job = jobRepository.findById(candidate);
+            if (job.isPresent()) {
+                return job;
+            }
+        }
+        return Optional.empty();
+    }
+
+    public boolean isRunning(String cardNumber) {
+        return running.contains(cardNumber);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        resume();
+    }
+
+    @Scheduled(fixedDelayString = "${cards.deletion.resume-ms:60000}", initialDelayString = "${cards.deletion.resume-ms:60000}")
+    public void scheduledResume() {
+        resume();
+    }
+
+    // Продолжить задания, прерванные остановкой приложения
+    public void resume() {
+        jobRepository.findByStatus(CardDeletionStatus.RUNNING)
+                .forEach(job -> start(job.getCardNumber()));
+    }
+
+    private void start(String cardNumber) {
+        if (stopRequested || !running.add(cardNumber)) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    run(cardNumber);
+                } finally {
+                    running.remove(cardNumber);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.remove(cardNumber);
+            throw e;
+        }
+    }
+
+    // Выполнить задание в текущем потоке: пачка за пачкой, каждая в своей транзакции
+    CardDeletionJob run(String cardNumber) {
+        CardDeletionJob job = jobRepository.findById(cardNumber).orElseThrow();
+        try {
+            while (job.getStatus() == CardDeletionStatus.RUNNING && !stopRequested) {
+                CardDeletionJob current = job;
+                long blockRequestsBefore = current.getDeletedBlockRequests();
+                job = transactionTemplate.execute(status -> processChunk(current));
+                evictFromCache(job.getDeletedBlockRequests() > blockRequestsBefore);
+            }
+        } catch (Exception e) {
+            log.error("Card deletion job failed: {}", e.getMessage(), e);
+            // Счетчики в памяти могли учесть откаченную пачку - берем сохраненные
+            job = jobRepository.findById(cardNumber).orElseThrow();
+            job.setStatus(CardDeletionStatus.FAILED);
+            job.setError(e.getMessage() != null && e.getMessage().length() > 1000
+                    ? e.getMessage().substring(0, 1000) : e.getMessage());
+            job = jobRepository.save(job);
+        }
+
+        if (job.getStatus() != CardDeletionStatus.RUNNING) {
+            log.info("Card deletion job: status={}, archivedTransactions={}, deletedBlockRequests={}",
+                    job.getStatus(), job.getArchivedTransactions(), job.getDeletedBlockRequests());
+        }
+        return job;
+    }
+
+    // Одна пачка: сначала переводы, затем запросы на блокировку, затем сама карта
+    private CardDeletionJob processChunk(CardDeletionJob job) {
+        String cardNumber = job.getCardNumber();
+
+        int archived = archiveTransactions(cardNumber);
+        if (archived > 0) {
+            job.setArchivedTransactions(job.getArchivedTransactions() + archived);
+            return jobRepository.save(job);
+        }
+
+        int deleted = deleteBlockRequests(cardNumber);
+        if (deleted > 0) {
+            job.setDeletedBlockRequests(job.getDeletedBlockRequests() + deleted);
+            return jobRepository.save(job);
+        }
+
+        // Постоянные поручения по удаленной карте выполнить уже нельзя; асинхронные переводы ссылаются
+        // на карту внешним ключом (еще не выполненные отклонит статус DELETED)
+        jdbcTemplate.update("DELETE FROM recurring_transfers WHERE from_card_number = ? OR to_card_number = ?",
+                cardNumber, cardNumber);
+        jdbcTemplate.update("DELETE FROM transfer_intents WHERE from_card_number = ? OR to_card_number = ?",
+                cardNumber, cardNumber);
+        // Карта - через Hibernate: READ_WRITE-регион блокирует запись в кэше до коммита, и читатель,
+        // загрузивший строку раньше, не вернет удаленную карту в кэш (каскадов по истории у Card нет)
+        Card card = entityManager.find(Card.class, cardNumber);
+        if (card != null) {
+            entityManager.remove(card);
+        }
+        if (job.getUserId() != null) {
+            cardSetVersionService.bump(job.getUserId());
+        }
+        job.setStatus(CardDeletionStatus.COMPLETED);
+        job.setFinishedAt(LocalDateTime.now());
+        return jobRepository.save(job);
+    }
+
+    // Перенести до chunkSize переводов карты (входящих и исходящих) в архив
+    private int archiveTransactions(String cardNumber) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM transactions WHERE from_card_number = ? " +
+                        "UNION SELECT id FROM transactions WHERE to_card_number = ? " +
+                        "ORDER BY id LIMIT ?",
+                Long.class, cardNumber, cardNumber, chunkSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("now", Timestamp.valueOf(LocalDateTime.now()));
+        namedJdbcTemplate.update("INSERT INTO transactions_archive " +
+                "(id, from_card_number, to_card_number, amount, transaction_date, description, archived_at) " +
+                "SELECT id, from_card_number, to_card_number, amount, transaction_date, description, :now " +
+                "FROM transactions WHERE id IN (:ids)", parameters);
+        namedJdbcTemplate.update("DELETE FROM transactions WHERE id IN (:ids)", parameters);
+        return ids.size();
+    }
+
+    // Удалить до chunkSize запросов на блокировку карты
+    private int deleteBlockRequests(String cardNumber) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM block_requests WHERE card_number = ? ORDER BY id LIMIT ?",
+                Long.class, cardNumber, chunkSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return new NamedParameterJdbcTemplate(jdbcTemplate).update(
+                "DELETE FROM block_requests WHERE id IN (:ids)", new MapSqlParameterSource("ids", ids));
+    }
+
+    // Запросы на блокировку удалены в обход Hibernate - убираем их из кэша второго уровня
+    // (и кэшированные списки запросов на блокировку, в которых могли остаться удаленные id)
+    private void evictFromCache(boolean blockRequestsDeleted) {
+        if (blockRequestsDeleted) {
+            entityManagerFactory.getCache().evict(BlockRequest.class);
+            entityManagerFactory.unwrap(SessionFactory.class).getCache().evictDefaultQueryRegion();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Переводит просроченные карты в статус EXPIRED пачками (индекс cards(status, expiry_date)).
+// Карта действует по expiry_date включительно (в БД хранится последний день месяца MM/YY),
+// поэтому истекает с наступлением следующего дня в зоне cards.expiry-sweeper.zone.
+// Запускается в полночь этой зоны и при старте приложения - пропущенные запуски догоняются.
+// Истекают и карты с запросом на блокировку (PENDING_BLOCK), чтобы статус отражал срок. Запрос остается
+// открытым: одобрение блокирует карту, отклонение оставляет ее EXPIRED (CardService.rejectBlockRequest)
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "cards.expiry-sweeper.enabled", havingValue = "true", matchIfMissing = true)
+public class CardExpirySweeper {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CardSetVersionService cardSetVersionService;
+
+    @Value("${cards.expiry-sweeper.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${cards.expiry-sweeper.zone:}")
+    private String zone;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private DistributionSummary expiredPerRun;
+    private Timer sweepTimer;
+
+    @PostConstruct
+    void init() {
+        expiredPerRun = DistributionSummary.builder("cards.expiry.sweep.expired")
+                .description("Cards moved to EXPIRED per sweeper run")
+                .baseUnit("cards")
+                .register(meterRegistry);
+        sweepTimer = Timer.builder("cards.expiry.sweep.duration")
+                .description("Expiry sweeper run duration")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void sweepOnStartup() {
+        sweep();
+    }
+
+    @Scheduled(cron = "${cards.expiry-sweeper.cron:0 0 0 * * *}", zone = "${cards.expiry-sweeper.zone:}")
+    public void scheduledSweep() {
+        sweep();
+    }
+
+    // Один проход: пачки UPDATE, пока есть действующие карты с истекшим сроком. Возвращает число карт
+    public int sweep() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            LocalDate today = zone.isBlank() ? LocalDate.now() : LocalDate.now(ZoneId.of(zone));
+            return sweepTimer.record(() -> sweepBefore(today));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // Перевести в EXPIRED действующие (ACTIVE, PENDING_BLOCK) карты со сроком раньше cutoff
+    int sweepBefore(LocalDate cutoff) {
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        int total = 0;
+        int[] updated = new int[1];
+
+        while (true) {
+            List<String> expired = transactionTemplate.execute(status -> {
+                // Выборка идет по индексу (status, expiry_date), обновление - по первичному ключу
+                List<String> cardNumbers = jdbcTemplate.queryForList(
+                        "SELECT card_number FROM cards WHERE status IN (?, ?) AND expiry_date < ? " +
+                                "ORDER BY expiry_date LIMIT ?",
+                        String.class, CardStatus.ACTIVE.name(), CardStatus.PENDING_BLOCK.name(), cutoff, chunkSize);
+                if (cardNumbers.isEmpty()) {
+                    return cardNumbers;
+                }
+
+                // Условие повторяется: карту могли заблокировать между выборкой и обновлением
+                updated[0] = namedJdbcTemplate.update(
+                        "UPDATE cards SET status = :expired, updated_at = :now " +
+                                "WHERE card_number IN (:cardNumbers) AND status IN (:statuses) AND expiry_date < :cutoff",
+                        new MapSqlParameterSource()
+                                .addValue("expired", CardStatus.EXPIRED.name())
+                                .addValue("statuses", List.of(CardStatus.ACTIVE.name(), CardStatus.PENDING_BLOCK.name()))
+                                .addValue("now", Timestamp.valueOf(LocalDateTime.now()))
+                                .addValue("cutoff", cutoff)
+                                .addValue("cardNumbers", cardNumbers));
+                cardSetVersionService.bumpOwners(cardNumbers);
+                return cardNumbers;
+            });
+
+            if (expired == null || expired.isEmpty()) {
+                break;
+            }
+            // UPDATE прошел мимо Hibernate - убираем устаревшие карты из кэша второго уровня
+            jakarta.persistence.Cache cache = entityManagerFactory.getCache();
+            expired.forEach(cardNumber -> cache.evict(Card.class, cardNumber));
+            total += updated[0];
+        }
+
+        expiredPerRun.record(total);
+        if (total > 0) {
+            log.info("Expiry sweeper: {} cards expired before {}", total, cutoff);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,346 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BulkCardIssueSummary;
+import com.example.bankcards.dto.BulkCardRowError;
+import com.example.bankcards.dto.CardRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Массовый выпуск карт: вход читается построчно и обрабатывается пачками фиксированного размера,
+// поэтому память не зависит от размера файла. Номера шифруются параллельно на ограниченном пуле,
+// карты вставляются JDBC-батчами, ошибки по строкам сразу пишутся в ответ (NDJSON)
+@Slf4j
+@Service
+public class CardIssuanceService {
+
+    // Колонки CSV по умолчанию (если файл без заголовка)
+    private static final List<String> DEFAULT_COLUMNS = List.of("cardNumber", "owner", "expiryDate", "balance", "userId");
+
+    private static final BigDecimal DEFAULT_BALANCE = new BigDecimal("1000.00");
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${cards.bulk.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${cards.bulk.jdbc-batch-size:50}")
+    private int jdbcBatchSize;
+
+    @Value("${cards.bulk.encryption-threads:4}")
+    private int encryptionThreads;
+
+    private ExecutorService encryptionExecutor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger counter = new AtomicInteger();
+        // Ограниченная очередь: при переполнении задачу выполняет вызывающий поток
+        encryptionExecutor = new ThreadPoolExecutor(encryptionThreads, encryptionThreads,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(encryptionThreads * 2),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "card-encryption-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        encryptionExecutor.shutdown();
+    }
+
+    // Выпустить карты из потока CSV или NDJSON, результат пишется в output построчно (NDJSON)
+    public BulkCardIssueSummary issueCards(InputStream input, boolean csv, OutputStream output) throws IOException {
+        long startTime = System.currentTimeMillis();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        List<String> columns = DEFAULT_COLUMNS;
+        List<BulkRow> chunk = new ArrayList<>(chunkSize);
+        long lineNumber = 0;
+        long total = 0;
+        long failed = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            // Заголовок CSV задает порядок колонок
+            if (csv && total == 0 && line.toLowerCase().contains("cardnumber")) {
+                columns = splitCsvLine(line).stream().map(String::trim).toList();
+                continue;
+            }
+
+            chunk.add(new BulkRow(lineNumber, line));
+            total++;
+            if (chunk.size() >= chunkSize) {
+                failed += processChunk(chunk, csv, columns, output);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            failed += processChunk(chunk, csv, columns, output);
+        }
+
+        BulkCardIssueSummary summary = new BulkCardIssueSummary(total, total - failed, failed,
+                System.currentTimeMillis() - startTime);
+        writeLine(output, summary);
+        log.info("Bulk card issuance finished: total={}, created={}, failed={}, {} ms",
+                summary.getTotal(), summary.getCreated(), summary.getFailed(), summary.getDurationMs());
+        return summary;
+    }
+
+    // Обработать пачку строк, вернуть количество ошибок
+    private int processChunk(List<BulkRow> chunk, boolean csv, List<String> columns, OutputStream output)
+            throws IOException {
+        // 1. Разбор и валидация
+        for (BulkRow row : chunk) {
+            parseRow(row, csv, columns);
+        }
+
+        // 2. Параллельное шифрование номеров
+        encryptRows(chunk.stream().filter(BulkRow::isValid).toList());
+
+        // 3. Дубликаты в файле, уже существующие карты и несуществующие пользователи - одним запросом на пачку
+        Set<String> seen = new HashSet<>();
+        for (BulkRow row : chunk) {
+            if (row.isValid() && !seen.add(row.encryptedCardNumber)) {
+                row.error = "Duplicate card number in file";
+            }
+        }
+
+        List<BulkRow> candidates = chunk.stream().filter(BulkRow::isValid).toList();
+        if (!candidates.isEmpty()) {
+            Set<String> existingCards = new HashSet<>(cardRepository.findExistingCardNumbers(
+                    candidates.stream().flatMap(row -> row.allCardNumbers().stream()).toList()));
+            Set<Long> existingUsers = new HashSet<>(userRepository.findExistingIds(
+                    candidates.stream().map(row -> row.userId).collect(Collectors.toSet())));
+
+            for (BulkRow row : candidates) {
+                if (row.allCardNumbers().stream().anyMatch(existingCards::contains)) {
+                    row.error = "Card already exists";
+                } else if (!existingUsers.contains(row.userId)) {
+                    row.error = "User not found with id: " + row.userId;
+                }
+            }
+        }
+
+        // 4. Вставка JDBC-батчами
+        insertRows(chunk.stream().filter(BulkRow::isValid).toList());
+
+        // 5. Ошибки по строкам - сразу в ответ
+        int failed = 0;
+        for (BulkRow row : chunk) {
+            if (!row.isValid()) {
+                writeLine(output, new BulkCardRowError(row.lineNumber,
+                        CardService.maskCardNumber(row.request != null ? row.request.getCardNumber() : null), row.error));
+                failed++;
+            }
+        }
+        output.flush();
+        return failed;
+    }
+
+    private void parseRow(BulkRow row, boolean csv, List<String> columns) {
+        try {
+            Map<String, String> values = new HashMap<>();
+            if (csv) {
+                List<String> cells = splitCsvLine(row.line);
+                for (int i = 0; i < columns.size() && i < cells.size(); i++) {
+                    values.put(columns.get(i), cells.get(i).trim());
+                }
+            } else {
+                JsonNode node = objectMapper.readTree(row.line);
+                node.fields().forEachRemaining(field ->
+                        values.put(field.getKey(), field.getValue().isNull() ? null : field.getValue().asText()));
+            }
+
+            CardRequest request = new CardRequest(
+                    values.get("cardNumber"),
+                    values.get("owner"),
+                    isEmpty(values.get("expiryDate")) ? null : LocalDate.parse(values.get("expiryDate")),
+                    isEmpty(values.get("balance")) ? null : new BigDecimal(values.get("balance")));
+            row.request = request;
+
+            Set<ConstraintViolation<CardRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                row.error = violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; "));
+                return;
+            }
+            if (isEmpty(values.get("userId"))) {
+                row.error = "User id is required";
+                return;
+            }
+            row.userId = Long.valueOf(values.get("userId"));
+        } catch (Exception e) {
+            row.error = "Invalid row: " + e.getMessage();
+        }
+    }
+
+    private void encryptRows(List<BulkRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int sliceSize = Math.max(1, (rows.size() + encryptionThreads - 1) / encryptionThreads);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += sliceSize) {
+            List<BulkRow> slice = rows.subList(from, Math.min(from + sliceSize, rows.size()));
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (BulkRow row : slice) {
+                    try {
+                        row.encryptedCardNumber = encryptionService.encrypt(row.request.getCardNumber());
+                        // Во время ротации ключей карта может существовать под предыдущим ключом
+                        row.previousCardNumbers = encryptionService.getPreviousVersionCiphertexts(row.encryptedCardNumber);
+                    } catch (Exception e) {
+                        row.error = "Encryption failed";
+                    }
+                }
+            }, encryptionExecutor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    private void insertRows(List<BulkRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // persist вместо save: id задан заранее, save сделал бы лишний SELECT (merge) на каждую карту
+                entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+                for (BulkRow row : rows) {
+                    Card card = new Card(row.encryptedCardNumber, row.request.getOwner(),
+                            row.request.getExpiryDate(), CardStatus.ACTIVE,
+                            row.request.getBalance() != null ? row.request.getBalance() : DEFAULT_BALANCE,
+                            entityManager.getReference(User.class, row.userId));
+                    entityManager.persist(card);
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+        } catch (Exception e) {
+            // Пачка откатывается целиком (например, карту добавили параллельно)
+            log.warn("Bulk card insert failed for {} rows: {}", rows.size(), e.getMessage());
+            for (BulkRow row : rows) {
+                row.error = "Batch insert failed, rows of this chunk were not saved";
+            }
+        }
+    }
+
+    private void writeLine(OutputStream output, Object value) throws IOException {
+        output.write(objectMapper.writeValueAsBytes(value));
+        output.write('\n');
+    }
+
+    // Разбор строки CSV с поддержкой кавычек ("Ivanov, Ivan")
+    private static List<String> splitCsvLine(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                cells.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        cells.add(current.toString());
+        return cells;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // Строка входного файла и результат ее обработки
+    private static class BulkRow {
+        private final long lineNumber;
+        private final String line;
+        private CardRequest request;
+        private Long userId;
+        private volatile String encryptedCardNumber;
+        private volatile List<String> previousCardNumbers = List.of();
+        private volatile String error;
+
+        BulkRow(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+
+        boolean isValid() {
+            return error == null;
+        }
+
+        List<String> allCardNumbers() {
+            if (previousCardNumbers.isEmpty()) {
+                return List.of(encryptedCardNumber);
+            }
+            List<String> all = new ArrayList<>(previousCardNumbers);
+            all.add(encryptedCardNumber);
+            return all;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BlockRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.KeyRotationCheckpoint;
+import com.example.bankcards.entity.KeyRotationStatus;
+import com.example.bankcards.repository.KeyRotationCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Онлайн-ротация ключа шифрования номеров карт.
+// Номер карты - первичный ключ, поэтому перешифровка = перенос строки под новый ключ:
+// копия строки с новым номером, перевод ссылок (transactions, block_requests) и удаление старой строки.
+// Карты обходятся пачками по возрастанию номера (keyset), шифрование идет параллельно вне транзакции,
+// каждая пачка коммитится вместе с контрольной точкой, скорость ограничена encryption.rotation.rows-per-second.
+// Ротацию ведет один экземпляр: он захватывает строку контрольной точки (SELECT ... FOR UPDATE) и
+// проверяет захват в каждой пачке; аренда продлевается коммитом пачки, истекшую можно перехватить
+@Slf4j
+@Service
+public class CardKeyRotationService {
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private KeyRotationCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CardSetVersionService cardSetVersionService;
+
+    // Фоновая ротация из API (виртуальные потоки при spring.threads.virtual.enabled)
+    @Autowired
+    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private AsyncTaskExecutor taskExecutor;
+
+    @Value("${encryption.rotation.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${encryption.rotation.rows-per-second:2000}")
+    private int rowsPerSecond;
+
+    @Value("${encryption.rotation.threads:4}")
+    private int threads;
+
+    // Через сколько секунд без коммита пачки ротацию упавшего экземпляра можно перехватить
+    @Value("${encryption.rotation.lease-seconds:300}")
+    private long leaseSeconds;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    // Остановка при завершении приложения (stop() останавливает ротацию на любом экземпляре через БД)
+    private volatile boolean stopRequested;
+
+    private ExecutorService encryptionExecutor;
+
+    // Шифрование - работа процессора, поэтому ограниченный пул обычных потоков и при виртуальных потоках
+    @PostConstruct
+    void init() {
+        AtomicInteger counter = new AtomicInteger();
+        encryptionExecutor = new ThreadPoolExecutor(threads, threads,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads * 2),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "card-key-rotation-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        stopRequested = true;
+        encryptionExecutor.shutdown();
+    }
+
+    // Запустить ротацию в фоне (для админского API)
+    public KeyRotationCheckpoint startAsync() {
+        int targetVersion = checkTargetVersion();
+        KeyRotationCheckpoint checkpoint = claimCheckpoint(targetVersion);
+        try {
+            taskExecutor.execute(() -> runRotation(targetVersion));
+        } catch (RuntimeException e) {
+            finishCheckpoint(targetVersion, KeyRotationStatus.PAUSED, null);
+            throw e;
+        }
+        return checkpoint;
+    }
+
+    // Выполнить ротацию в текущем потоке (для запуска из командной строки)
+    public KeyRotationCheckpoint rotate() {
+        int targetVersion = checkTargetVersion();
+        claimCheckpoint(targetVersion);
+        return runRotation(targetVersion);
+    }
+
+    // Остановить ротацию после текущей пачки (продолжится с контрольной точки при следующем запуске).
+    // Экземпляр, который ее ведет, увидит PAUSED при захвате строки в следующей пачке
+    public void stop() {
+        transactionTemplate.executeWithoutResult(status ->
+                checkpointRepository.findForUpdate(encryptionService.getCurrentKeyVersion())
+                        .filter(checkpoint -> checkpoint.getStatus() == KeyRotationStatus.RUNNING)
+                        .ifPresent(checkpoint -> {
+                            checkpoint.setStatus(KeyRotationStatus.PAUSED);
+                            checkpoint.setClaimedBy(null);
+                        }));
+    }
+
+    // Ротацию ведет какой-либо экземпляр (аренда не истекла)
+    public boolean isRunning() {
+        return getStatus().map(this::isClaimed).orElse(false);
+    }
+
+    // Состояние ротации на текущую версию ключа
+    public Optional<KeyRotationCheckpoint> getStatus() {
+        return checkpointRepository.findById(encryptionService.getCurrentKeyVersion());
+    }
+
+    private int checkTargetVersion() {
+        int targetVersion = encryptionService.getCurrentKeyVersion();
+        if (targetVersion == 0) {
+            throw new IllegalStateException(
+                    "Key rotation requires encryption.current-key-version > 0 and encryption.keys.v<N>");
+        }
+        return targetVersion;
+    }
+
+    // Захватить контрольную точку для этого экземпляра; занятую другим экземпляром - отказ
+    private KeyRotationCheckpoint claimCheckpoint(int targetVersion) {
+        stopRequested = false;
+        try {
+            return transactionTemplate.execute(status -> {
+                KeyRotationCheckpoint checkpoint = checkpointRepository.findForUpdate(targetVersion)
+                        .orElseGet(() -> new KeyRotationCheckpoint(targetVersion));
+                if (isClaimed(checkpoint)) {
+                    throw new IllegalStateException("Key rotation is already running");
+                }
+
+                // Завершенную ротацию проходим заново с начала (могли появиться карты со старым ключом)
+                if (checkpoint.getStatus() == KeyRotationStatus.COMPLETED) {
+                    checkpoint.setLastCardNumber(null);
+                    checkpoint.setStartedAt(LocalDateTime.now());
+                }
+                checkpoint.setStatus(KeyRotationStatus.RUNNING);
+                checkpoint.setClaimedBy(instanceId);
+                checkpoint.setError(null);
+                checkpoint.setFinishedAt(null);
+                return checkpointRepository.save(checkpoint);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Первую контрольную точку одновременно создал другой экземпляр
+            throw new IllegalStateException("Key rotation is already running");
+        }
+    }
+
+    private boolean isClaimed(KeyRotationCheckpoint checkpoint) {
+        return checkpoint.getStatus() == KeyRotationStatus.RUNNING && checkpoint.getClaimedBy() != null
+                && checkpoint.getUpdatedAt() != null
+                && checkpoint.getUpdatedAt().isAfter(LocalDateTime.now().minusSeconds(leaseSeconds));
+    }
+
+    // Контрольная точка под блокировкой, если ротацию все еще ведет этот экземпляр (иначе остановлена
+    // через stop() или перехвачена после истечения аренды)
+    private Optional<KeyRotationCheckpoint> lockClaimedCheckpoint(int targetVersion) {
+        return checkpointRepository.findForUpdate(targetVersion)
+                .filter(checkpoint -> checkpoint.getStatus() == KeyRotationStatus.RUNNING
+                        && instanceId.equals(checkpoint.getClaimedBy()));
+    }
+
+    // Записать итог запуска и освободить захват; без захвата возвращается текущее состояние
+    private KeyRotationCheckpoint finishCheckpoint(int targetVersion, KeyRotationStatus result, String error) {
+        return transactionTemplate.execute(status -> {
+            Optional<KeyRotationCheckpoint> claimed = lockClaimedCheckpoint(targetVersion);
+            if (claimed.isEmpty()) {
+                return checkpointRepository.findById(targetVersion).orElseThrow();
+            }
+            KeyRotationCheckpoint checkpoint = claimed.get();
+            checkpoint.setStatus(result);
+            checkpoint.setClaimedBy(null);
+            checkpoint.setError(error);
+            if (result == KeyRotationStatus.COMPLETED) {
+                checkpoint.setFinishedAt(LocalDateTime.now());
+            }
+            return checkpointRepository.save(checkpoint);
+        });
+    }
+
+    private KeyRotationCheckpoint runRotation(int targetVersion) {
+        KeyRotationCheckpoint checkpoint = checkpointRepository.findById(targetVersion).orElseThrow();
+        String targetPrefix = encryptionService.getCurrentVersionPrefix() + "%";
+        log.info("Card key rotation to version {} started from {}", targetVersion,
+                checkpoint.getLastCardNumber() == null ? "the beginning" : "checkpoint");
+
+        KeyRotationStatus result = KeyRotationStatus.PAUSED;
+        String error = null;
+        try {
+            List<String> copiedColumns = getCopiedColumns();
+            List<String[]> references = getCardReferences();
+
+            long throttleStart = System.nanoTime();
+            long throttledRows = 0;
+
+            while (!stopRequested) {
+                String cursor = checkpoint.getLastCardNumber();
+                // Удаляемые карты не переносим: задание CardDeletionService ищет историю по старому номеру
+                List<String> cardNumbers = jdbcTemplate.queryForList(
+                        "SELECT card_number FROM cards WHERE card_number > ? AND card_number NOT LIKE ? " +
+                                "AND status <> ? ORDER BY card_number LIMIT ?",
+                        String.class, cursor == null ? "" : cursor, targetPrefix, CardStatus.DELETED.name(), chunkSize);
+                if (cardNumbers.isEmpty()) {
+                    result = KeyRotationStatus.COMPLETED;
+                    break;
+                }
+
+                // Старый номер -> новый (шифрование вне транзакции, строки еще не заблокированы)
+                Map<String, String> renames = reencrypt(cardNumbers);
+                long failed = cardNumbers.size() - renames.size();
+
+                String lastCardNumber = cardNumbers.get(cardNumbers.size() - 1);
+                KeyRotationCheckpoint saved = transactionTemplate.execute(status -> {
+                    // Пачка переносится, только пока строка контрольной точки захвачена этим экземпляром
+                    Optional<KeyRotationCheckpoint> claimed = lockClaimedCheckpoint(targetVersion);
+                    if (claimed.isEmpty()) {
+                        return null;
+                    }
+                    KeyRotationCheckpoint current = claimed.get();
+                    moveCards(renames, copiedColumns, references);
+                    current.setLastCardNumber(lastCardNumber);
+                    current.setProcessed(current.getProcessed() + renames.size());
+                    current.setFailed(current.getFailed() + failed);
+                    return checkpointRepository.save(current);
+                });
+                if (saved == null) {
+                    log.info("Card key rotation to version {} was stopped or taken over by another instance",
+                            targetVersion);
+                    break;
+                }
+                checkpoint = saved;
+                evictFromCache(renames.keySet());
+
+                throttledRows += cardNumbers.size();
+                throttle(throttleStart, throttledRows);
+            }
+        } catch (Exception e) {
+            log.error("Card key rotation to version {} failed: {}", targetVersion, e.getMessage(), e);
+            result = KeyRotationStatus.FAILED;
+            error = e.getMessage() != null && e.getMessage().length() > 1000
+                    ? e.getMessage().substring(0, 1000) : e.getMessage();
+        }
+
+        checkpoint = finishCheckpoint(targetVersion, result, error);
+        log.info("Card key rotation to version {}: status={}, processed={}, failed={}", targetVersion,
+                checkpoint.getStatus(), checkpoint.getProcessed(), checkpoint.getFailed());
+        return checkpoint;
+    }
+
+    // Параллельная перешифровка пачки номеров; номера, которые не удалось расшифровать, пропускаются
+    private Map<String, String> reencrypt(List<String> cardNumbers) {
+        Map<String, String> renames = new ConcurrentHashMap<>();
+        int sliceSize = Math.max(1, (cardNumbers.size() + threads - 1) / threads);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int from = 0; from < cardNumbers.size(); from += sliceSize) {
+            List<String> slice = cardNumbers.subList(from, Math.min(from + sliceSize, cardNumbers.size()));
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (String cardNumber : slice) {
+                    try {
+                        renames.put(cardNumber, encryptionService.reencrypt(cardNumber));
+                    } catch (Exception e) {
+                        log.warn("Cannot re-encrypt card {}: {}", cardNumber, e.getMessage());
+                    }
+                }
+            }, encryptionExecutor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        return new TreeMap<>(renames);
+    }
+
+    // Перенос строк карт под новые номера JDBC-батчами в одной транзакции
+    private void moveCards(Map<String, String> renames, List<String> copiedColumns, List<String[]> references) {
+        if (renames.isEmpty()) {
+            return;
+        }
+
+        // Блокируем строки, чтобы параллельный перевод не изменил баланс между копированием и удалением
+        new NamedParameterJdbcTemplate(jdbcTemplate).queryForList(
+                "SELECT card_number FROM cards WHERE card_number IN (:cardNumbers) ORDER BY card_number FOR UPDATE",
+                Map.of("cardNumbers", renames.keySet()), String.class);
+        // Номера карт (и порядок при сортировке по номеру) изменились
+        cardSetVersionService.bumpOwners(renames.keySet());
+
+        List<Object[]> newToOld = renames.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList();
+
+        String columns = String.join(", ", copiedColumns);
+        jdbcTemplate.batchUpdate("INSERT INTO cards (card_number, " + columns + ") " +
+                "SELECT ?, " + columns + " FROM cards WHERE card_number = ?", newToOld);
+
+        for (String[] reference : references) {
+            jdbcTemplate.batchUpdate("UPDATE " + reference[0] + " SET " + reference[1] + " = ? " +
+                    "WHERE " + reference[1] + " = ?", newToOld);
+        }
+
+        jdbcTemplate.batchUpdate("DELETE FROM cards WHERE card_number = ?",
+                renames.keySet().stream().map(cardNumber -> new Object[]{cardNumber}).toList());
+    }
+
+    // Старые номера больше не существуют - убираем их из кэша второго уровня
+    private void evictFromCache(Collection<String> oldCardNumbers) {
+        jakarta.persistence.Cache cache = entityManagerFactory.getCache();
+        for (String cardNumber : oldCardNumbers) {
+            cache.evict(Card.class, cardNumber);
+        }
+        cache.evict(BlockRequest.class);
+    }
+
+    // Ограничение скорости: не больше rowsPerSecond строк в секунду в среднем с начала запуска
+    private void throttle(long startNanos, long rows) {
+        if (rowsPerSecond <= 0) {
+            return;
+        }
+        long expectedNanos = rows * 1_000_000_000L / rowsPerSecond;
+        long sleepNanos = expectedNanos - (System.nanoTime() - startNanos);
+        if (sleepNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopRequested = true;
+            }
+        }
+    }
+
+    // Колонки cards, кроме номера (копируются как есть)
+    private List<String> getCopiedColumns() {
+        return jdbcTemplate.query("SELECT * FROM cards WHERE 1 = 0", resultSet -> {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            List<String> columns = new ArrayList<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String column = metaData.getColumnName(i).toLowerCase(Locale.ROOT);
+                if (!column.equals("card_number")) {
+                    columns.add(column);
+                }
+            }
+            return columns;
+        });
+    }
+
+    // Внешние ключи, ссылающиеся на cards.card_number: пары (таблица, колонка)
+    private List<String[]> getCardReferences() {
+        return jdbcTemplate.execute((ConnectionCallback<List<String[]>>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // PostgreSQL хранит имена в нижнем регистре, H2 - в верхнем
+            List<String[]> references = readExportedKeys(metaData, connection.getCatalog(), connection.getSchema(), "cards");
+            if (references.isEmpty()) {
+                references = readExportedKeys(metaData, connection.getCatalog(), connection.getSchema(), "CARDS");
+            }
+            return references;
+        });
+    }
+
+    private List<String[]> readExportedKeys(DatabaseMetaData metaData, String catalog, String schema, String table)
+            throws SQLException {
+        List<String[]> references = new ArrayList<>();
+        try (ResultSet keys = metaData.getExportedKeys(catalog, schema, table)) {
+            while (keys.next()) {
+                references.add(new String[]{
+                        keys.getString("FKTABLE_NAME").toLowerCase(Locale.ROOT),
+                        keys.getString("FKCOLUMN_NAME").toLowerCase(Locale.ROOT)
+                });
+            }
+        }
+        return references;
+    }
+}
@@ -1,21 +1,42 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BlockRequestResponse;
+import com.example.bankcards.dto.BulkBlockRequestAction;
+import com.example.bankcards.dto.BulkBlockRequestResult;
 import com.example.bankcards.entity.*;
+import com.example.bankcards.event.BlockRequestEvent;
 import com.example.bankcards.exception.CardBlockedException;
 import com.example.bankcards.exception.CardExpiredException;
 import com.example.bankcards.exception.CardNotFoundException;
 import com.example.bankcards.exception.InsufficientFundsException;
 import com.example.bankcards.repository.BlockRequestRepository;
 import com.example.bankcards.repository.CardRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class CardService {
@@ -29,6 +50,28 @@ public class CardService {
     @Autowired
     private EncryptionService encryptionService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CardSetVersionService cardSetVersionService;
+
+    @Autowired
+    private CardDeletionService cardDeletionService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Зона, в которой наступает новый день для срока действия (та же, что у CardExpirySweeper)
+    @Value("${cards.expiry-sweeper.zone:}")
+    private String expiryZone;
+
+    // Максимум id в одном IN (...) при массовой обработке запросов на блокировку
+    private static final int BULK_ID_CHUNK_SIZE = 1000;
+
     // Создать новую карту с шифрованием номера
     public Card createCard(Card card, User user) {
         String encryptedCardNumber = encryptionService.encrypt(card.getCardNumber());
@@ -44,12 +87,15 @@ public class CardService {
         return cardRepository.save(card);
     }
 
-    // Пользователь запрашивает блокировку
+    // Пользователь запрашивает блокировку (карта, запрос и событие outbox - одной транзакцией)
+    @Transactional
     public BlockRequest requestCardBlock(String cardNumber, User user, String reason) {
         // Шифруем номер для поиска в БД
         String encryptedCardNumber = encryptionService.encrypt(cardNumber);
 
         Card card = getByCardNumberAndUser(encryptedCardNumber, user);
+        // Карта может быть еще зашифрована предыдущей версией ключа
+        encryptedCardNumber = card.getCardNumber();
 
         // Проверяем, что карта активна
         if (card.getStatus() != CardStatus.ACTIVE) {
@@ -72,10 +118,13 @@ public class CardService {
         card.setStatus(CardStatus.PENDING_BLOCK);
         cardRepository.save(card);
 
-        return blockRequestRepository.save(request);
+        BlockRequest savedRequest = blockRequestRepository.save(request);
+        publishBlockRequestEvent(BlockRequestEvent.Type.CREATED, savedRequest);
+        return savedRequest;
     }
 
-    // Админ одобряет блокировку
+    // Админ одобряет блокировку (в транзакции: карта и автор запроса - ленивые связи)
+    @Transactional
     public Card approveBlockRequest(Long requestId, User admin) {
         BlockRequest request = blockRequestRepository.findById(requestId)
                 .orElseThrow(() -> new RuntimeException("Block request not found with id: " + requestId));
@@ -94,10 +143,12 @@ public class CardService {
         request.setProcessedBy(admin);
 
         blockRequestRepository.save(request);
+        publishBlockRequestEvent(BlockRequestEvent.Type.APPROVED, request);
         return cardRepository.save(card);
     }
 
     // Админ отклоняет блокировку
+    @Transactional
     public Card rejectBlockRequest(Long requestId, User admin, String rejectionReason) {
         BlockRequest request = blockRequestRepository.findById(requestId)
                 .orElseThrow(() -> new RuntimeException("Block request not found with id: " + requestId));
@@ -106,9 +157,12 @@ public class CardService {
             throw new IllegalArgumentException("Block request is not pending");
         }
 
-        // Возвращаем карту в активный статус
+        // Возвращаем в активный статус только ожидающую блокировки карту с действующим сроком:
+        // просроченная (в том числе уже переведенная в EXPIRED) активной не становится
         Card card = request.getCard();
-        card.setStatus(CardStatus.ACTIVE);
+        if (card.getStatus() == CardStatus.PENDING_BLOCK) {
+            card.setStatus(isPastExpiry(card) ? CardStatus.EXPIRED : CardStatus.ACTIVE);
+        }
 
         // Обновляем запрос
         request.setStatus(BlockRequestStatus.REJECTED);
@@ -119,38 +173,231 @@ public class CardService {
         }
 
         blockRequestRepository.save(request);
+        publishBlockRequestEvent(BlockRequestEvent.Type.REJECTED, request);
         return cardRepository.save(card);
     }
 
-    // Получить pending запросы (для админа)
-    public Page<BlockRequest> getPendingBlockRequests(Pageable pageable) {
-        return blockRequestRepository.findByStatus(BlockRequestStatus.PENDING, pageable);
+    // Массовое одобрение запросов на блокировку (по списку id и/или фильтру)
+    @Transactional
+    public BulkBlockRequestResult approveBlockRequests(BulkBlockRequestAction action, User admin) {
+        return processBlockRequests(action, admin, BlockRequestStatus.APPROVED);
+    }
+
+    // Массовое отклонение запросов на блокировку (по списку id и/или фильтру)
+    @Transactional
+    public BulkBlockRequestResult rejectBlockRequests(BulkBlockRequestAction action, User admin) {
+        return processBlockRequests(action, admin, BlockRequestStatus.REJECTED);
+    }
+
+    // Два set-based UPDATE на пачку id (или на весь фильтр): сначала карты, затем сами запросы.
+    // Верхняя граница request_date фиксируется в начале, чтобы запросы, созданные между
+    // двумя UPDATE, не оказались обработанными без изменения карты
+    private BulkBlockRequestResult processBlockRequests(BulkBlockRequestAction action, User admin,
+                                                        BlockRequestStatus resultStatus) {
+        long startTime = System.currentTimeMillis();
+
+        if (action.getStatus() != null && action.getStatus() != BlockRequestStatus.PENDING) {
+            throw new IllegalArgumentException("Only PENDING block requests can be processed");
+        }
+        boolean hasIds = action.getIds() != null && !action.getIds().isEmpty();
+        if (!hasIds && action.getFrom() == null && action.getTo() == null && action.getUserId() == null) {
+            throw new IllegalArgumentException("Specify ids or at least one filter: from, to, userId");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        boolean approve = resultStatus == BlockRequestStatus.APPROVED;
+        String reasonSuffix = !approve && action.getReason() != null && !action.getReason().isBlank()
+                ? " [REJECTED: " + action.getReason() + "]"
+                : null;
+
+        List<List<Long>> idChunks = new ArrayList<>();
+        if (hasIds) {
+            List<Long> ids = action.getIds().stream().distinct().toList();
+            for (int i = 0; i < ids.size(); i += BULK_ID_CHUNK_SIZE) {
+                idChunks.add(ids.subList(i, Math.min(i + BULK_ID_CHUNK_SIZE, ids.size())));
+            }
+        } else {
+            idChunks.add(null);
+        }
+
+        int requestsUpdated = 0;
+        int cardsUpdated = 0;
+        Set<Long> ownerIds = new HashSet<>();
+        for (List<Long> ids : idChunks) {
+            String filter = buildBlockRequestFilter(action, ids);
+
+            // Обрабатываемые запросы и владельцы их карт - до UPDATE, пока запросы еще в PENDING.
+            // По каждому запросу в outbox пишется то же событие, что при одиночной обработке
+            TypedQuery<Object[]> processedQuery = entityManager.createQuery(
+                    "SELECT r.id, c.cardNumber, c.owner, c.user.id, u.id, u.username, r.requestDate, r.reason " +
+                            "FROM BlockRequest r JOIN r.card c JOIN r.user u WHERE " + filter, Object[].class);
+            bindBlockRequestFilter(processedQuery, action, ids, now);
+            List<BlockRequestResponse> processed = new ArrayList<>();
+            for (Object[] row : processedQuery.getResultList()) {
+                String cardNumber = (String) row[1];
+                String reason = (String) row[7];
+                if (reasonSuffix != null) {
+                    reason = (reason != null ? reason : "") + reasonSuffix;
+                    reason = reason.length() > 500 ? reason.substring(0, 500) : reason;
+                }
+                ownerIds.add((Long) row[3]);
+                processed.add(new BlockRequestResponse((Long) row[0], cardNumber, getMaskedCardNumber(cardNumber),
+                        (String) row[2], (Long) row[4], (String) row[5], (LocalDateTime) row[6], reason,
+                        resultStatus, now, admin.getUsername()));
+            }
+            outboxService.recordBlockRequests(
+                    approve ? BlockRequestEvent.Type.APPROVED : BlockRequestEvent.Type.REJECTED, processed);
+
+            // Одобрение блокирует карту, отклонение возвращает в ACTIVE только карты, ожидающие блокировки,
+            // с действующим сроком (просроченные - в EXPIRED)
+            Query cardsUpdate = entityManager.createQuery(
+                    "UPDATE Card c SET c.status = " +
+                            (approve ? ":cardStatus" : "CASE WHEN c.expiryDate < :today THEN :expired ELSE :cardStatus END") +
+                            ", c.updatedAt = :now " +
+                            "WHERE c.cardNumber IN (SELECT r.card.cardNumber FROM BlockRequest r WHERE " + filter + ")" +
+                            (approve ? "" : " AND c.status = :pendingBlock"))
+                    .setParameter("cardStatus", approve ? CardStatus.BLOCKED : CardStatus.ACTIVE)
+                    .setParameter("now", now);
+            if (!approve) {
+                cardsUpdate.setParameter("pendingBlock", CardStatus.PENDING_BLOCK);
+                cardsUpdate.setParameter("expired", CardStatus.EXPIRED);
+                cardsUpdate.setParameter("today", today());
+            }
+            bindBlockRequestFilter(cardsUpdate, action, ids, now);
+            cardsUpdated += cardsUpdate.executeUpdate();
+
+            Query requestsUpdate = entityManager.createQuery(
+                    "UPDATE BlockRequest r SET r.status = :resultStatus, r.processedDate = :now, r.processedBy = :admin" +
+                            (reasonSuffix != null ? ", r.reason = SUBSTRING(CONCAT(COALESCE(r.reason, ''), :reasonSuffix), 1, 500)" : "") +
+                            " WHERE " + filter)
+                    .setParameter("resultStatus", resultStatus)
+                    .setParameter("now", now)
+                    .setParameter("admin", admin);
+            if (reasonSuffix != null) {
+                requestsUpdate.setParameter("reasonSuffix", reasonSuffix);
+            }
+            bindBlockRequestFilter(requestsUpdate, action, ids, now);
+            requestsUpdated += requestsUpdate.executeUpdate();
+        }
+
+        BulkBlockRequestResult result = new BulkBlockRequestResult(resultStatus, requestsUpdated, cardsUpdated,
+                System.currentTimeMillis() - startTime);
+        if (cardsUpdated > 0) {
+            // UPDATE мимо жизненного цикла сущностей - версии наборов карт владельцев увеличиваются явно
+            ownerIds.forEach(cardSetVersionService::bump);
+        }
+        if (requestsUpdated > 0) {
+            eventPublisher.publishEvent(new BlockRequestEvent(result));
+        }
+        return result;
+    }
+
+    private String buildBlockRequestFilter(BulkBlockRequestAction action, List<Long> ids) {
+        StringBuilder filter = new StringBuilder("r.status = :pending AND r.requestDate <= :cutoff");
+        if (ids != null) {
+            filter.append(" AND r.id IN :ids");
+        }
+        if (action.getFrom() != null) {
+            filter.append(" AND r.requestDate >= :from");
+        }
+        if (action.getTo() != null) {
+            filter.append(" AND r.requestDate < :to");
+        }
+        if (action.getUserId() != null) {
+            filter.append(" AND r.user.id = :userId");
+        }
+        return filter.toString();
+    }
+
+    private void bindBlockRequestFilter(Query query, BulkBlockRequestAction action, List<Long> ids, LocalDateTime cutoff) {
+        query.setParameter("pending", BlockRequestStatus.PENDING);
+        query.setParameter("cutoff", cutoff);
+        if (ids != null) {
+            query.setParameter("ids", ids);
+        }
+        if (action.getFrom() != null) {
+            query.setParameter("from", action.getFrom());
+        }
+        if (action.getTo() != null) {
+            query.setParameter("to", action.getTo());
+        }
+        if (action.getUserId() != null) {
+            query.setParameter("userId", action.getUserId());
+        }
+    }
+
+    // Событие для SSE-подписчиков (уходит после коммита, см. BlockRequestEventBus).
+    // DTO строится сразу, пока связи запроса доступны в текущей сессии
+    private void publishBlockRequestEvent(BlockRequestEvent.Type type, BlockRequest request) {
+        eventPublisher.publishEvent(new BlockRequestEvent(type, toBlockRequestResponse(request)));
+    }
+
+    // Преобразование BlockRequest в BlockRequestResponse (для админа)
+    public BlockRequestResponse toBlockRequestResponse(BlockRequest request) {
+        String cardMasked = getMaskedCardNumber(request.getCard());
+
+        return new BlockRequestResponse(
+                request.getId(),
+                request.getCard().getCardNumber(), // Зашифрованный номер
+                cardMasked,
+                request.getCard().getOwner(),
+                request.getUser().getId(),
+                request.getUser().getUsername(),
+                request.getRequestDate(),
+                request.getReason(),
+                request.getStatus(),
+                request.getProcessedDate(),
+                request.getProcessedBy() != null ? request.getProcessedBy().getUsername() : null
+        );
+    }
+
+    // Получить pending запросы (для админа).
+    // includeTotal - вернуть Page с общим количеством (лишний COUNT(*)), иначе Slice
+    public Slice<BlockRequest> getPendingBlockRequests(Pageable pageable, boolean includeTotal) {
+        return getBlockRequests(BlockRequestStatus.PENDING, pageable, includeTotal);
+    }
+
+    // Получить запросы на блокировку, все или с указанным статусом (для админа)
+    public Slice<BlockRequest> getBlockRequests(BlockRequestStatus status, Pageable pageable, boolean includeTotal) {
+        if (status == null) {
+            return includeTotal ? blockRequestRepository.findAll(pageable) : blockRequestRepository.findSliceBy(pageable);
+        }
+        return includeTotal
+                ? blockRequestRepository.findByStatus(status, pageable)
+                : blockRequestRepository.findSliceByStatus(status, pageable);
     }
 
     // Получить запросы пользователя
-    public Page<BlockRequest> getUserBlockRequests(User user, Pageable pageable) {
-        return blockRequestRepository.findByUserUsername(user.getUsername(), pageable);
+    public Slice<BlockRequest> getUserBlockRequests(User user, Pageable pageable, boolean includeTotal) {
+        return includeTotal
+                ? blockRequestRepository.findByUserUsername(user.getUsername(), pageable)
+                : blockRequestRepository.findSliceByUserUsername(user.getUsername(), pageable);
     }
 
     // Найти карту по номеру (зашифрованному)
     public Optional<Card> findByCardNumber(String cardNumber) {
-        return cardRepository.findById(cardNumber);
+        return findCard(cardNumber);
     }
 
     // Найти карту по номеру и пользователю (проверка владения)
     public Optional<Card> findByCardNumberAndUser(String cardNumber, User user) {
-        return cardRepository.findByCardNumberAndUser(cardNumber, user);
+        Optional<Card> card = cardRepository.findByCardNumberAndUser(cardNumber, user);
+        if (card.isPresent() || encryptionService.getCurrentKeyVersion() == 0) {
+            return card;
+        }
+        return findCard(cardNumber)
+                .filter(found -> found.getUser() != null && Objects.equals(found.getUser().getId(), user.getId()));
     }
 
     // Получить карту по номеру или выбросить исключение
     public Card getByCardNumber(String cardNumber) {
-        return cardRepository.findById(cardNumber)
+        return findCard(cardNumber)
                 .orElseThrow(() -> new CardNotFoundException("Card not found with number: " + cardNumber));
     }
 
     // Получить карту по номеру и пользователю или выбросить исключение
     public Card getByCardNumberAndUser(String cardNumber, User user) {
-        return cardRepository.findByCardNumberAndUser(cardNumber, user)
+        return findByCardNumberAndUser(cardNumber, user)
                 .orElseThrow(() -> {
                     String masked = getMaskedFallback(cardNumber);
                     return new CardNotFoundException("Card not found: " + masked + " - access denied");
@@ -162,19 +409,33 @@ public class CardService {
         return cardRepository.findByUser(user, pageable);
     }
 
+    // То же для списков API: общее количество (COUNT(*)) - только при includeTotal
+    public Slice<Card> getUserCards(User user, Pageable pageable, boolean includeTotal) {
+        return includeTotal ? getUserCards(user, pageable) : cardRepository.findSliceByUser(user, pageable);
+    }
+
     // Получить карты пользователя по статусу с пагинацией
     public Page<Card> getUserCardsByStatus(User user, CardStatus status, Pageable pageable) {
         return cardRepository.findByUserAndStatus(user, status, pageable);
     }
 
     // Поиск карт по владельцу (имя на карте)
-    public Page<Card> searchUserCardsByOwner(User user, String owner, Pageable pageable) {
-        return cardRepository.findByUserAndOwnerContainingIgnoreCase(user, owner, pageable);
+    public Slice<Card> searchUserCardsByOwner(User user, String owner, Pageable pageable, boolean includeTotal) {
+        return includeTotal
+                ? cardRepository.findByUserAndOwnerContainingIgnoreCase(user, owner, pageable)
+                : cardRepository.findSliceByUserAndOwnerContainingIgnoreCase(user, owner, pageable);
     }
 
     // Обновить статус карты
     public Card updateCardStatus(String cardNumber, CardStatus newStatus, User user) {
         Card card = getByCardNumberAndUser(cardNumber, user);
+        if (card.getStatus() == CardStatus.DELETED) {
+            throw new IllegalStateException("Card is being deleted: " + getMaskedCardNumber(card));
+        }
+        // Проверки переводов смотрят только на статус, поэтому просроченную карту не активируем
+        if (newStatus == CardStatus.ACTIVE && isPastExpiry(card)) {
+            throw new CardExpiredException(() -> "Card is expired: " + getMaskedCardNumber(card));
+        }
         card.setStatus(newStatus);
         return cardRepository.save(card);
     }
@@ -186,25 +447,37 @@ public class CardService {
         return cardRepository.save(card);
     }
 
-    // Проверить, активна ли карта (без исключений)
+    // Срок действия истек: карта действует по expiry_date включительно
+    private boolean isPastExpiry(Card card) {
+        return card.getExpiryDate() != null && card.getExpiryDate().isBefore(today());
+    }
+
+    private LocalDate today() {
+        return expiryZone.isBlank() ? LocalDate.now() : LocalDate.now(ZoneId.of(expiryZone));
+    }
+
+    // Проверить, активна ли карта (без исключений).
+    // Срок действия не проверяется: просроченные карты переводит в EXPIRED CardExpirySweeper
     public boolean isCardActive(Card card) {
-        return card.getStatus() == CardStatus.ACTIVE &&
-                !card.getExpiryDate().isBefore(LocalDate.now());
+        return card.getStatus() == CardStatus.ACTIVE;
     }
 
-    // Валидация карты для транзакции (с исключениями)
+    // Валидация карты для транзакции (с исключениями).
+    // Успешный путь - одно сравнение статуса: номер расшифровывается и маскируется
+    // только при формировании сообщения об ошибке
     public void validateCardForTransaction(Card card) {
-        String maskedNumber = getMaskedCardNumber(card);
-
-        if (card.getStatus() == CardStatus.BLOCKED) {
-            throw new CardBlockedException("Card is blocked: " + maskedNumber);
+        CardStatus status = card.getStatus();
+        if (status == CardStatus.ACTIVE) {
+            return;
         }
-        if (card.getExpiryDate().isBefore(LocalDate.now())) {
-            throw new CardExpiredException("Card is expired: " + maskedNumber);
+
+        if (status == CardStatus.BLOCKED) {
+            throw new CardBlockedException(() -> "Card is blocked: " + getMaskedCardNumber(card));
         }
-        if (card.getStatus() != CardStatus.ACTIVE) {
-            throw new CardBlockedException("Card is not active: " + maskedNumber);
+        if (status == CardStatus.EXPIRED) {
+            throw new CardExpiredException(() -> "Card is expired: " + getMaskedCardNumber(card));
         }
+        throw new CardBlockedException(() -> "Card is not active: " + getMaskedCardNumber(card));
     }
 
     // Fallback маскирование для случаев, когда карта не найдена
@@ -219,14 +492,6 @@ public class CardService {
         }
     }
 
-    // Проверить, не истек ли срок карты
-    public void checkCardExpiry(Card card) {
-        if (card.getExpiryDate().isBefore(LocalDate.now())) {
-            card.setStatus(CardStatus.EXPIRED);
-            cardRepository.save(card);
-        }
-    }
-
     // Получить замаскированный номер карты
     public String getMaskedCardNumber(Card card) {
         try {
@@ -239,6 +504,11 @@ public class CardService {
         }
     }
 
+    // Замаскировать зашифрованный номер, когда самой карты нет под рукой
+    public String getMaskedCardNumber(String cardNumber) {
+        return getMaskedFallback(cardNumber);
+    }
+
     // Получить оригинальный номер карты (для админа)
     public String getDecryptedCardNumber(Card card) {
         try {
@@ -263,7 +533,7 @@ public class CardService {
     }
 
     // Маскирование номера карты (**** **** **** 1234)
-    private String maskCardNumber(String cardNumber) {
+    static String maskCardNumber(String cardNumber) {
         if (cardNumber == null || cardNumber.length() < 4) {
             return "**** **** **** ****";
         }
@@ -281,13 +551,72 @@ public class CardService {
 
     // Проверка достаточности средств
     public void validateSufficientFunds(Card card, BigDecimal amount) {
-        if (card.getBalance().compareTo(amount) < 0) {
-            String maskedNumber = getMaskedCardNumber(card);
-            throw new InsufficientFundsException(
-                    String.format("Insufficient funds on card %s: balance=%.2f, required=%.2f",
-                            maskedNumber, card.getBalance().doubleValue(), amount.doubleValue())
-            );
+        BigDecimal balance = card.getBalance();
+        if (balance.compareTo(amount) < 0) {
+            throw new InsufficientFundsException(() -> getMaskedCardNumber(card), balance, amount);
+        }
+    }
+
+    // Заблокировать строки карт перед изменением баланса (SELECT ... FOR UPDATE в обход L2-кэша).
+    // Баланс и статус перечитываются из БД; карты блокируются в порядке номеров,
+    // чтобы встречные переводы не приводили к взаимоблокировкам.
+    // Возвращает заблокированные карты в порядке аргументов: если ротация ключа перенесла строку
+    // под новый номер, пока перевод держал карту со старым, вместо нее возвращается перенесенная
+    public Card[] lockForBalanceUpdate(Card... cards) {
+        Integer[] order = new Integer[cards.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(i -> cards[i].getCardNumber()));
+
+        Card[] locked = new Card[cards.length];
+        for (int i : order) {
+            locked[i] = lockCard(cards[i]);
+        }
+        return locked;
+    }
+
+    private Card lockCard(Card card) {
+        // Номер под старым ключом - строку могла перенести ротация. Сначала проверяем ее запросом:
+        // EntityNotFoundException из refresh пометила бы транзакцию на откат
+        if (isPendingRotation(card) && entityManager.createNativeQuery(
+                        "SELECT card_number FROM cards WHERE card_number = ? FOR UPDATE")
+                .setParameter(1, card.getCardNumber())
+                .getResultList().isEmpty()) {
+            return lockMovedCard(card);
+        }
+
+        if (entityManager.contains(card)) {
+            entityManager.refresh(card, LockModeType.PESSIMISTIC_WRITE);
+            return card;
         }
+
+        // Карта загружена вне текущей сессии - берем актуальное состояние из заблокированной строки
+        Card current = entityManager.find(Card.class, card.getCardNumber(), LockModeType.PESSIMISTIC_WRITE);
+        if (current == null) {
+            return lockMovedCard(card);
+        }
+        card.setBalance(current.getBalance());
+        card.setStatus(current.getStatus());
+        card.setDailyLimit(current.getDailyLimit());
+        card.setMonthlyLimit(current.getMonthlyLimit());
+        return card;
+    }
+
+    private boolean isPendingRotation(Card card) {
+        return encryptionService.getCurrentKeyVersion() != 0
+                && encryptionService.getKeyVersion(card.getCardNumber()) != encryptionService.getCurrentKeyVersion();
+    }
+
+    // Строки со старым номером нет - ротация ключа перенесла ее (или карта удалена)
+    private Card lockMovedCard(Card card) {
+        if (entityManager.contains(card)) {
+            entityManager.detach(card);
+        }
+        Card moved = findCard(card.getCardNumber())
+                .orElseThrow(() -> new CardNotFoundException("Card not found: " + getMaskedCardNumber(card)));
+        entityManager.refresh(moved, LockModeType.PESSIMISTIC_WRITE);
+        return moved;
     }
 
     // Сохранить карту
@@ -295,19 +624,53 @@ public class CardService {
         return cardRepository.save(card);
     }
 
-    // Удалить карту
-    public void deleteCard(String cardNumber, User user) {
+    // Удалить карту: сразу помечается DELETED, история переносится в архив в фоне
+    public CardDeletionJob deleteCard(String cardNumber, User user) {
         Card card = getByCardNumberAndUser(cardNumber, user);
-        cardRepository.delete(card);
+        return cardDeletionService.requestDeletion(card);
     }
 
     // Получить все карты (для админа)
-    public Page<Card> getAllCards(Pageable pageable) {
-        return cardRepository.findAll(pageable);
+    public Slice<Card> getAllCards(Pageable pageable, boolean includeTotal) {
+        return includeTotal ? cardRepository.findAll(pageable) : cardRepository.findSliceBy(pageable);
+    }
+
+    // Получить карты с указанным статусом (для админа)
+    public Slice<Card> getCardsByStatus(CardStatus status, Pageable pageable, boolean includeTotal) {
+        return includeTotal
+                ? cardRepository.findByStatus(status, pageable)
+                : cardRepository.findSliceByStatus(status, pageable);
     }
 
     // Проверить существование карты по номеру
     public boolean existsByCardNumber(String cardNumber) {
-        return cardRepository.existsByCardNumber(cardNumber);
+        return findCard(cardNumber).isPresent();
+    }
+
+    // Поиск по первичному ключу; если карта не найдена, а идет ротация ключей -
+    // пробуем тот же номер, зашифрованный другими версиями ключа
+    private Optional<Card> findCard(String cardNumber) {
+        Optional<Card> card = cardRepository.findById(cardNumber);
+        if (card.isPresent() || encryptionService.getCurrentKeyVersion() == 0) {
+            return card;
+        }
+
+        List<String> candidates;
+        try {
+            candidates = encryptionService.getPreviousVersionCiphertexts(cardNumber);
+            // Номер под старым ключом, а строку уже перенесла ротация - сначала текущий ключ
+            if (encryptionService.getKeyVersion(cardNumber) != encryptionService.getCurrentKeyVersion()) {
+                candidates.add(0, encryptionService.reencrypt(cardNumber));
+            }
+        } catch (Exception e) {
+            return card;
+        }
+        for (String candidate : candidates) {
+            card = cardRepository.findById(candidate);
+            if (card.isPresent()) {
+                return card;
+            }
+        }
+        return Optional.empty();
     }
 }
\ No newline at end of file
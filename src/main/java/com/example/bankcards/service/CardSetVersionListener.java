@@ -0,0 +1,24 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+// JPA-слушатель карт: создание, изменение и удаление увеличивают версию набора карт владельца.
+// Создается Hibernate через контейнер бинов Spring, поэтому зависимости внедряются
+public class CardSetVersionListener {
+
+    @Autowired
+    private CardSetVersionService cardSetVersionService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onCardChanged(Card card) {
+        if (cardSetVersionService != null && card.getUser() != null) {
+            cardSetVersionService.bump(card.getUser().getId());
+        }
+    }
+}
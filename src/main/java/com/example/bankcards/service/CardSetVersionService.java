@@ -0,0 +1,123 @@
+package com.example.bankcards.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Версия набора карт пользователя для ETag списка карт и балансов.
+// Любое изменение карты (JPA - через CardSetVersionListener, массовые UPDATE/JDBC - явным вызовом)
+// увеличивает версию владельца, поэтому If-None-Match проверяется без загрузки карт.
+// Версия хранится в users.card_set_version (общая для всех экземпляров). Внутри транзакции
+// увеличение откладывается до ее коммита и выполняется отдельной короткой транзакцией: перевод не
+// держит блокировку строки users, а параллельный GET до увеличения получает старую версию -
+// с ней закрепляется разве что лишний полный ответ, но не устаревшие данные
+@Slf4j
+@Service
+public class CardSetVersionService {
+
+    private static final String BUMP_USER_SQL =
+            "UPDATE users SET card_set_version = card_set_version + 1 WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Менеджер транзакций зависит от EntityManagerFactory, а она - от CardSetVersionListener с этим
+    // сервисом: без @Lazy Hibernate создал бы слушатель без зависимостей
+    @Lazy
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Сильный ETag текущего набора карт пользователя в представлении mediaType (JSON и CBOR - разные байты).
+    // Версия читается из БД, а не из сущности User: L2-кэш у каждого экземпляра свой
+    // и не видит увеличений, сделанных на других узлах
+    public String getETag(Long userId, MediaType mediaType) {
+        List<Long> versions = jdbcTemplate.queryForList(
+                "SELECT card_set_version FROM users WHERE id = ?", Long.class, userId);
+        long version = versions.isEmpty() ? 0L : versions.get(0);
+        return "\"cards-" + userId + "-" + version + "-" + mediaType.getSubtype() + "\"";
+    }
+
+    // Карты пользователя изменились
+    public void bump(Long userId) {
+        Set<Long> pending = getPendingBumps();
+        if (pending == null) {
+            jdbcTemplate.update(BUMP_USER_SQL, userId);
+        } else {
+            pending.add(userId);
+        }
+    }
+
+    // Изменились карты с указанными номерами (массовые UPDATE/JDBC): увеличиваются версии их владельцев
+    public void bumpOwners(Collection<String> cardNumbers) {
+        if (cardNumbers.isEmpty()) {
+            return;
+        }
+        new NamedParameterJdbcTemplate(jdbcTemplate).queryForList(
+                        "SELECT DISTINCT user_id FROM cards WHERE card_number IN (:cardNumbers)",
+                        Map.of("cardNumbers", cardNumbers), Long.class)
+                .forEach(this::bump);
+    }
+
+    // Пользователи, чьи версии увеличатся после коммита текущей транзакции (null вне транзакции)
+    private Set<Long> getPendingBumps() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        Set<Long> pending = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            // Строки users блокируются в порядке id - параллельные коммиты не блокируют друг друга по кругу
+            Set<Long> created = new TreeSet<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                // Вложенная REQUIRES_NEW-транзакция ведет свой набор
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CardSetVersionService.this);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(CardSetVersionService.this, created);
+                }
+
+                // Ресурсы завершенной транзакции еще привязаны к потоку - UPDATE идет в новой
+                @Override
+                public void afterCommit() {
+                    try {
+                        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+                        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                        requiresNew.executeWithoutResult(status -> jdbcTemplate.batchUpdate(BUMP_USER_SQL,
+                                created.stream().map(userId -> new Object[]{userId}).toList()));
+                    } catch (RuntimeException e) {
+                        // Изменение уже закоммичено - не превращаем его в ошибку запроса
+                        log.error("Could not bump card set versions of users {}: {}", created, e.getMessage());
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CardSetVersionService.this);
+                }
+            });
+            pending = created;
+        }
+        return pending;
+    }
+}
@@ -1,50 +1,141 @@
 package com.example.bankcards.service;
 
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Формат шифротекста:
+//   <base64>         - версия ключа 0 (encryption.secret-key), исторический формат без префикса
+//   v<N>:<base64>    - версия ключа N (encryption.keys.v<N>)
+// Новые значения шифруются ключом encryption.current-key-version
 @Service
 public class EncryptionService {
 
     @Value("${encryption.secret-key:my16bytekey12345!}")
     private String secretKey;
 
+    @Value("${encryption.current-key-version:0}")
+    private int currentKeyVersion;
+
+    @Autowired(required = false)
+    private Environment environment;
+
     private static final String ALGORITHM = "AES";
 
-    private byte[] getValidKey() {
-        byte[] keyBytes = secretKey.getBytes(StandardCharsets.UTF_8);
+    private static final String VERSION_PREFIX = "v";
+    private static final char VERSION_SEPARATOR = ':';
+
+    private final Map<Integer, SecretKeySpec> keys = new ConcurrentHashMap<>();
+
+    private byte[] getValidKey(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
         byte[] validKey = new byte[16];
         System.arraycopy(keyBytes, 0, validKey, 0, Math.min(keyBytes.length, 16));
         return validKey;
     }
 
+    // Ключ нужной версии (кэшируется, чтобы не пересоздавать SecretKeySpec на каждый вызов)
+    private SecretKeySpec getKey(int version) {
+        return keys.computeIfAbsent(version, v -> {
+            String key = v == 0 ? secretKey : getConfiguredKey(v);
+            if (key == null) {
+                throw new IllegalStateException("Encryption key version " + v + " is not configured");
+            }
+            return new SecretKeySpec(getValidKey(key), ALGORITHM);
+        });
+    }
+
+    private String getConfiguredKey(int version) {
+        String key = environment != null ? environment.getProperty("encryption.keys.v" + version) : null;
+        return key == null || key.isBlank() ? null : key;
+    }
+
+    @Timed(value = "bank.encryption", extraTags = {"operation", "encrypt"}, histogram = true)
     public String encrypt(String data) {
+        return encrypt(data, currentKeyVersion);
+    }
+
+    // Зашифровать ключом указанной версии
+    @Timed(value = "bank.encryption", extraTags = {"operation", "encrypt"}, histogram = true)
+    public String encrypt(String data, int version) {
         try {
-            SecretKeySpec keySpec = new SecretKeySpec(getValidKey(), ALGORITHM);
             Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec);
+            cipher.init(Cipher.ENCRYPT_MODE, getKey(version));
             byte[] encrypted = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(encrypted);
+            String encoded = Base64.getEncoder().encodeToString(encrypted);
+            return version == 0 ? encoded : VERSION_PREFIX + version + VERSION_SEPARATOR + encoded;
         } catch (Exception e) {
             throw new RuntimeException("Error encrypting data", e);
         }
     }
 
+    @Timed(value = "bank.encryption", extraTags = {"operation", "decrypt"}, histogram = true)
     public String decrypt(String encryptedData) {
         try {
-            SecretKeySpec keySpec = new SecretKeySpec(getValidKey(), ALGORITHM);
+            int version = getKeyVersion(encryptedData);
+            String encoded = version == 0
+                    ? encryptedData
+                    : encryptedData.substring(encryptedData.indexOf(VERSION_SEPARATOR) + 1);
+
             Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, keySpec);
-            byte[] decoded = Base64.getDecoder().decode(encryptedData);
+            cipher.init(Cipher.DECRYPT_MODE, getKey(version));
+            byte[] decoded = Base64.getDecoder().decode(encoded);
             byte[] decrypted = cipher.doFinal(decoded);
             return new String(decrypted, StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException("Error decrypting data", e);
         }
     }
-}
\ No newline at end of file
+
+    // Версия ключа, которым зашифровано значение (в Base64 нет ':', поэтому префикс однозначен)
+    public int getKeyVersion(String encryptedData) {
+        int separator = encryptedData.indexOf(VERSION_SEPARATOR);
+        if (!encryptedData.startsWith(VERSION_PREFIX) || separator < 0) {
+            return 0;
+        }
+        return Integer.parseInt(encryptedData.substring(VERSION_PREFIX.length(), separator));
+    }
+
+    public int getCurrentKeyVersion() {
+        return currentKeyVersion;
+    }
+
+    // Префикс шифротекстов текущей версии ("" для версии 0)
+    public String getCurrentVersionPrefix() {
+        return currentKeyVersion == 0 ? "" : VERSION_PREFIX + currentKeyVersion + VERSION_SEPARATOR;
+    }
+
+    // Перешифровать значение текущим ключом
+    public String reencrypt(String encryptedData) {
+        return encrypt(decrypt(encryptedData), currentKeyVersion);
+    }
+
+    // Тот же номер, зашифрованный предыдущими версиями ключа.
+    // Нужен для поиска карт, которые еще не перешифрованы во время ротации ключей
+    public List<String> getPreviousVersionCiphertexts(String encryptedData) {
+        List<String> result = new ArrayList<>();
+        if (currentKeyVersion == 0) {
+            return result;
+        }
+
+        int version = getKeyVersion(encryptedData);
+        String data = decrypt(encryptedData);
+        for (int v = currentKeyVersion - 1; v >= 0; v--) {
+            if (v != version && (v == 0 || getConfiguredKey(v) != null)) {
+                result.add(encrypt(data, v));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.event.OutboxSink;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Доставка outbox_events в приемники (OutboxSink) пачками по outbox.dispatcher.batch-size.
+// Пачка берется SELECT ... FOR UPDATE SKIP LOCKED: экземпляры приложения разбирают таблицу
+// параллельно, не ожидая друг друга, и одна строка не уходит в два экземпляра одновременно.
+// После доставки во все приемники пачка удаляется в той же транзакции; ошибка приемника
+// откатывает транзакцию, и пачка доставляется повторно при следующем опросе
+@Slf4j
+@Service
+public class OutboxDispatcher {
+
+    private static final RowMapper<OutboxEvent> EVENT_MAPPER = (rs, rowNum) -> {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(rs.getLong("id"));
+        event.setEventType(rs.getString("event_type"));
+        event.setAggregateId(rs.getString("aggregate_id"));
+        event.setPayload(rs.getString("payload"));
+        event.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        return event;
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private List<OutboxSink> sinks = List.of();
+
+    @Value("${outbox.dispatcher.enabled:true}")
+    private boolean enabled;
+
+    @Value("${outbox.dispatcher.batch-size:500}")
+    private int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private Counter delivered;
+    private Counter failures;
+    private Timer lag;
+
+    @PostConstruct
+    void init() {
+        delivered = Counter.builder("bank.outbox.delivered")
+                .description("Outbox events delivered to all sinks")
+                .register(meterRegistry);
+        failures = Counter.builder("bank.outbox.failures")
+                .description("Outbox batches rolled back because a sink failed")
+                .register(meterRegistry);
+        lag = Timer.builder("bank.outbox.lag")
+                .description("Time from writing an outbox event to its delivery")
+                .register(meterRegistry);
+        log.info("Outbox sinks: {}", sinks.stream().map(OutboxSink::getName).toList());
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.dispatcher.poll-ms:1000}")
+    public void scheduledDispatch() {
+        if (enabled) {
+            dispatch();
+        }
+    }
+
+    // Доставить все, что накопилось. Возвращает число доставленных событий
+    public int dispatch() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        int total = 0;
+        try {
+            int count;
+            do {
+                count = dispatchBatch();
+                total += count;
+            } while (count == batchSize);
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Outbox delivery failed, will retry: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+        return total;
+    }
+
+    int dispatchBatch() {
+        List<OutboxEvent> events = transactionTemplate.execute(status -> {
+            List<OutboxEvent> batch = jdbcTemplate.query(
+                    "SELECT id, event_type, aggregate_id, payload, created_at FROM outbox_events " +
+                            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED",
+                    EVENT_MAPPER, batchSize);
+            if (batch.isEmpty()) {
+                return batch;
+            }
+
+            for (OutboxSink sink : sinks) {
+                try {
+                    sink.deliver(batch);
+                } catch (Exception e) {
+                    throw new IllegalStateException("Outbox sink " + sink.getName() + " failed: " + e.getMessage(), e);
+                }
+            }
+
+            List<Long> ids = batch.stream().map(OutboxEvent::getId).toList();
+            new NamedParameterJdbcTemplate(jdbcTemplate).update(
+                    "DELETE FROM outbox_events WHERE id IN (:ids)", new MapSqlParameterSource("ids", ids));
+            return batch;
+        });
+
+        LocalDateTime now = LocalDateTime.now();
+        events.forEach(event -> lag.record(Duration.between(event.getCreatedAt(), now)));
+        delivered.increment(events.size());
+        return events.size();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BlockRequestResponse;
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.event.BlockRequestEvent;
+import com.example.bankcards.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Запись событий в outbox_events в текущей транзакции: перевод или изменение запроса на блокировку
+// коммитится вместе со своим событием, и внешним системам не нужно опрашивать transactions
+// и block_requests. Доставка - OutboxDispatcher
+@Service
+public class OutboxService {
+
+    public static final String TRANSFER_COMPLETED = "TRANSFER_COMPLETED";
+    public static final String BLOCK_REQUEST_PREFIX = "BLOCK_REQUEST_";
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Выполненный перевод; номера карт - зашифрованные, как в БД
+    public void recordTransfer(Transaction transaction) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("transactionId", transaction.getId());
+        payload.put("fromCardNumber", transaction.getFromCard().getCardNumber());
+        payload.put("toCardNumber", transaction.getToCard().getCardNumber());
+        payload.put("amount", transaction.getAmount());
+        payload.put("transactionDate", transaction.getTransactionDate());
+        payload.put("description", transaction.getDescription());
+        record(TRANSFER_COMPLETED, String.valueOf(transaction.getId()), payload);
+    }
+
+    // Те же события, что получают SSE-подписчики, но слушатель синхронный -
+    // строка пишется в транзакции CardService, а не после коммита.
+    // Итоги массовой обработки не пишутся: по ее запросам пишет recordBlockRequests
+    @EventListener
+    public void onBlockRequestEvent(BlockRequestEvent event) {
+        if (event.getRequest() == null) {
+            return;
+        }
+        record(BLOCK_REQUEST_PREFIX + event.getType().name(), String.valueOf(event.getRequest().getId()), event);
+    }
+
+    // Массовое одобрение/отклонение: строка на каждый запрос, как при одиночной обработке
+    public void recordBlockRequests(BlockRequestEvent.Type type, List<BlockRequestResponse> requests) {
+        for (BlockRequestResponse request : requests) {
+            record(BLOCK_REQUEST_PREFIX + type.name(), String.valueOf(request.getId()), new BlockRequestEvent(type, request));
+        }
+    }
+
+    private void record(String eventType, String aggregateId, Object payload) {
+        try {
+            outboxEventRepository.save(new OutboxEvent(eventType, aggregateId, objectMapper.writeValueAsString(payload)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize outbox event " + eventType, e);
+        }
+    }
+}
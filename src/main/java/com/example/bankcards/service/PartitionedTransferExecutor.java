@@ -0,0 +1,436 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Движок переводов без ожидания row-локов (transfers.partitioned.enabled=true).
+// Карты распределены по N однопоточным партициям по хэшу номера; списывать с карты может только
+// ее партиция. Баланс отправителя держится в памяти партиции, переводы проверяются по очереди,
+// а в БД все, что накопилось в очереди, уходит одной транзакцией (group commit).
+// Перевод в карту другой партиции - в два шага: партиция отправителя резервирует сумму (списывает
+// в памяти) и коммитит пачку, где зачисление - UPDATE balance = balance + ?; партиция получателя
+// добавляет сумму к своему балансу в памяти уже после коммита, поэтому память не опережает БД.
+// Изменения баланса в пачке идут одним UPDATE на карту в порядке номеров (как в lockForBalanceUpdate)
+// и только для активных карт, с условием, что баланс не уйдет в минус. Если карту изменили в обход
+// движка (администратор, блокировка, удаление), пачка откатывается, а ее переводы выполняются
+// по одному через TransactionService - с блокировками и точными ошибками
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "transfers.partitioned.enabled", havingValue = "true")
+public class PartitionedTransferExecutor {
+
+    private static final String UPDATE_BALANCE_SQL = "UPDATE cards SET balance = balance + ?, updated_at = ? " +
+            "WHERE card_number = ? AND status = ? AND balance + ? >= 0";
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardSetVersionService cardSetVersionService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private TransferVelocityService velocityService;
+
+    @Autowired
+    private SpendingLimitService spendingLimitService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${transfers.partitioned.partitions:0}")
+    private int partitionCount;
+
+    @Value("${transfers.partitioned.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${transfers.partitioned.max-in-flight:10000}")
+    private int maxInFlight;
+
+    @Value("${transfers.partitioned.cache-size:100000}")
+    private int cacheSize;
+
+    private Partition[] partitions;
+    private DistributionSummary batchSize;
+    private Counter fallbacks;
+    private volatile boolean stopRequested;
+
+    @PostConstruct
+    void start() {
+        int count = partitionCount > 0 ? partitionCount : Runtime.getRuntime().availableProcessors();
+        batchSize = DistributionSummary.builder("bank.transfer.partitioned.batch")
+                .description("Transfers committed in one group commit")
+                .register(meterRegistry);
+        fallbacks = Counter.builder("bank.transfer.partitioned.fallback")
+                .description("Group commits rolled back and replayed with row locks")
+                .register(meterRegistry);
+
+        partitions = new Partition[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new Partition(i);
+        }
+        for (Partition partition : partitions) {
+            partition.thread.start();
+        }
+        log.info("Partitioned transfer engine started: partitions={}, maxBatchSize={}", count, maxBatchSize);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        stopRequested = true;
+        for (Partition partition : partitions) {
+            partition.thread.interrupt();
+        }
+        for (Partition partition : partitions) {
+            partition.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    // Выполнить перевод в партиции отправителя и дождаться коммита пачки
+    public Transaction transfer(Card fromCard, Card toCard, BigDecimal amount, String description) {
+        if (fromCard.getCardNumber().equals(toCard.getCardNumber())) {
+            throw new IllegalArgumentException("Cannot transfer to the same card");
+        }
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            PendingTransfer transfer = new PendingTransfer(fromCard, toCard, amount, description);
+            partitionFor(fromCard.getCardNumber()).submit(transfer);
+            return transfer.result.join();
+        } catch (CompletionException e) {
+            exception = e.getCause().getClass().getSimpleName();
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("bank.transfer.partitioned")
+                    .description("Transfer latency in the partitioned engine, including queueing")
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+
+    private Partition partitionFor(String cardNumber) {
+        return partitions[Math.floorMod(cardNumber.hashCode(), partitions.length)];
+    }
+
+    // Перевод в очереди партиции
+    private static final class PendingTransfer {
+        private final Card fromCard;
+        private final Card toCard;
+        private final BigDecimal amount;
+        private final String description;
+        private final CompletableFuture<Transaction> result = new CompletableFuture<>();
+        private TransferVelocityService.Reservation velocity;
+
+        private PendingTransfer(Card fromCard, Card toCard, BigDecimal amount, String description) {
+            this.fromCard = fromCard;
+            this.toCard = toCard;
+            this.amount = amount;
+            this.description = description;
+        }
+    }
+
+    // Зачисление, закоммиченное партицией отправителя
+    private static final class Credit {
+        private final String cardNumber;
+        private final BigDecimal amount;
+        private final long committedAt;
+
+        private Credit(String cardNumber, BigDecimal amount, long committedAt) {
+            this.cardNumber = cardNumber;
+            this.amount = amount;
+            this.committedAt = committedAt;
+        }
+    }
+
+    // Баланс карты в памяти партиции
+    private static final class CachedBalance {
+        private BigDecimal balance;
+        private final long loadedAt;
+
+        private CachedBalance(BigDecimal balance, long loadedAt) {
+            this.balance = balance;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final class Partition implements Runnable {
+
+        private final Thread thread;
+        // Переводы и зачисления; число переводов ограничено inFlight, зачисления не блокируются,
+        // чтобы партиции не ждали друг друга
+        private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final Map<String, CachedBalance> balances = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedBalance> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+        private Partition(int index) {
+            thread = new Thread(this, "transfer-partition-" + index);
+            thread.setDaemon(true);
+        }
+
+        private void submit(PendingTransfer transfer) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for transfer queue");
+            }
+            transfer.result.whenComplete((transaction, error) -> inFlight.release());
+            queue.add(transfer);
+            if (stopRequested && queue.remove(transfer)) {
+                transfer.result.completeExceptionally(new IllegalStateException("Transfer engine is stopped"));
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Object> commands = new ArrayList<>();
+            while (!stopRequested) {
+                try {
+                    Object first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    commands.add(first);
+                    queue.drainTo(commands, maxBatchSize - 1);
+                    process(commands);
+                } catch (InterruptedException e) {
+                    break;
+                } catch (RuntimeException e) {
+                    log.error("Transfer partition {} failed: {}", thread.getName(), e.getMessage(), e);
+                    balances.clear();
+                    fail(commands, e);
+                } finally {
+                    commands.clear();
+                }
+            }
+            queue.drainTo(commands);
+            fail(commands, new IllegalStateException("Transfer engine is stopped"));
+        }
+
+        private void fail(List<Object> commands, RuntimeException error) {
+            for (Object command : commands) {
+                if (command instanceof PendingTransfer transfer
+                        && transfer.result.completeExceptionally(error) && transfer.velocity != null) {
+                    transfer.velocity.release();
+                }
+            }
+        }
+
+        // Применить команды в памяти и закоммитить переводы одной транзакцией
+        private void process(List<Object> commands) {
+            List<PendingTransfer> batch = new ArrayList<>();
+            // Карты, с которых в пачке уже списано
+            Set<String> debited = new HashSet<>();
+            for (Object command : commands) {
+                if (command instanceof Credit credit) {
+                    applyCredit(credit);
+                } else if (reserve((PendingTransfer) command, debited)) {
+                    batch.add((PendingTransfer) command);
+                }
+            }
+            if (!batch.isEmpty()) {
+                commit(batch, debited);
+            }
+        }
+
+        // Шаг 1: проверить перевод и списать сумму в памяти
+        private boolean reserve(PendingTransfer transfer, Set<String> debited) {
+            Card fromCard = transfer.fromCard;
+            try {
+                cardService.validateCardForTransaction(fromCard);
+                cardService.validateCardForTransaction(transfer.toCard);
+
+                String cardNumber = fromCard.getCardNumber();
+                CachedBalance cached = balances.get(cardNumber);
+                // Память может отставать от БД (зачисление еще в пути, правка администратором) -
+                // перед отказом перечитываем, если в пачке еще нет списаний с карты
+                if (cached == null || (cached.balance.compareTo(transfer.amount) < 0
+                        && !debited.contains(cardNumber))) {
+                    cached = load(cardNumber, fromCard);
+                }
+                fromCard.setBalance(cached.balance);
+                cardService.validateSufficientFunds(fromCard, transfer.amount);
+                // Вне транзакции: при откате пачки учет снимается в commit
+                transfer.velocity = velocityService.acquire(fromCard, transfer.amount);
+
+                debited.add(cardNumber);
+                cached.balance = cached.balance.subtract(transfer.amount);
+                fromCard.setBalance(cached.balance);
+                return true;
+            } catch (RuntimeException e) {
+                transfer.result.completeExceptionally(e);
+                return false;
+            }
+        }
+
+        private CachedBalance load(String cardNumber, Card card) {
+            long loadedAt = System.nanoTime();
+            try {
+                BigDecimal balance = jdbcTemplate.queryForObject(
+                        "SELECT balance FROM cards WHERE card_number = ?", BigDecimal.class, cardNumber);
+                CachedBalance cached = new CachedBalance(balance, loadedAt);
+                balances.put(cardNumber, cached);
+                return cached;
+            } catch (EmptyResultDataAccessException e) {
+                throw new CardNotFoundException("Card not found: " + cardService.getMaskedCardNumber(card));
+            }
+        }
+
+        // Шаг 2: зачисление уже в БД - учитываем его в памяти
+        private void applyCredit(Credit credit) {
+            CachedBalance cached = balances.get(credit.cardNumber);
+            // Загруженный после коммита баланс уже содержит зачисление
+            if (cached != null && cached.loadedAt < credit.committedAt) {
+                cached.balance = cached.balance.add(credit.amount);
+            }
+        }
+
+        private void commit(List<PendingTransfer> batch, Set<String> debited) {
+            List<Transaction> saved;
+            try {
+                saved = transactionTemplate.execute(status -> write(batch));
+            } catch (RuntimeException e) {
+                log.warn("Group commit of {} transfers rolled back, replaying with row locks: {}",
+                        batch.size(), e.getMessage());
+                fallbacks.increment();
+                debited.forEach(balances::remove);
+                evictFromCache(batch);
+                batch.forEach(transfer -> transfer.velocity.release());
+                replay(batch);
+                return;
+            }
+
+            long committedAt = System.nanoTime();
+            batchSize.record(batch.size());
+            evictFromCache(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                PendingTransfer transfer = batch.get(i);
+                Credit credit = new Credit(transfer.toCard.getCardNumber(), transfer.amount, committedAt);
+                Partition owner = partitionFor(credit.cardNumber);
+                if (owner == this) {
+                    applyCredit(credit);
+                } else {
+                    owner.queue.add(credit);
+                }
+                transfer.result.complete(saved.get(i));
+            }
+        }
+
+        private List<Transaction> write(List<PendingTransfer> batch) {
+            // Чистое изменение баланса по каждой карте, в порядке номеров
+            SortedMap<String, BigDecimal> deltas = new TreeMap<>();
+            Set<Long> userIds = new HashSet<>();
+            for (PendingTransfer transfer : batch) {
+                deltas.merge(transfer.fromCard.getCardNumber(), transfer.amount.negate(), BigDecimal::add);
+                deltas.merge(transfer.toCard.getCardNumber(), transfer.amount, BigDecimal::add);
+                userIds.add(transfer.fromCard.getUser().getId());
+                userIds.add(transfer.toCard.getUser().getId());
+            }
+
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> args = new ArrayList<>(deltas.size());
+            deltas.forEach((cardNumber, delta) -> args.add(new Object[]{
+                    delta, now, cardNumber, CardStatus.ACTIVE.name(), delta}));
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_BALANCE_SQL, args);
+            for (int count : updated) {
+                if (count != 1) {
+                    throw new IllegalStateException("Card changed outside the transfer engine");
+                }
+            }
+
+            List<Transaction> saved = new ArrayList<>(batch.size());
+            for (PendingTransfer transfer : batch) {
+                // Превышение лимита откатывает пачку, повтор через TransactionService вернет отказ этому переводу
+                spendingLimitService.checkAndRecord(transfer.fromCard, transfer.amount);
+                Transaction transaction = transactionRepository.save(new Transaction(
+                        transfer.fromCard, transfer.toCard, transfer.amount, transfer.description));
+                outboxService.recordTransfer(transaction);
+                saved.add(transaction);
+            }
+            // Версии наборов карт увеличатся после коммита пачки
+            userIds.forEach(cardSetVersionService::bump);
+            return saved;
+        }
+
+        // Балансы изменены в обход Hibernate
+        private void evictFromCache(List<PendingTransfer> batch) {
+            jakarta.persistence.Cache cache = entityManagerFactory.getCache();
+            for (PendingTransfer transfer : batch) {
+                cache.evict(Card.class, transfer.fromCard.getCardNumber());
+                cache.evict(Card.class, transfer.toCard.getCardNumber());
+            }
+        }
+
+        // Переводы откаченной пачки - по одному, с блокировкой строк
+        private void replay(List<PendingTransfer> batch) {
+            for (PendingTransfer transfer : batch) {
+                try {
+                    transfer.result.complete(transactionService.transferBetweenCards(
+                            transfer.fromCard, transfer.toCard, transfer.amount, transfer.description));
+                } catch (RuntimeException e) {
+                    transfer.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
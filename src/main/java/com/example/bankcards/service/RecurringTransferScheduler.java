@@ -0,0 +1,444 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.RecurringTransfer;
+import com.example.bankcards.entity.RecurringTransferStatus;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.DomainException;
+import com.example.bankcards.repository.RecurringTransferRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Выполнение постоянных поручений (recurring_transfers). Ближайшие запуски держатся в памяти
+// в иерархическом колесе таймеров (секунды / минуты / часы, горизонт - сутки); из БД раз в reload-ms
+// дочитываются только поручения, вошедшие в окно lookahead-minutes, и просроченные.
+// Запуск сдвигается от next_run_at на постоянную для поручения добавку до spread-seconds:
+// тысячи поручений "на полночь" расходятся по секундным слотам, а не уходят в БД одной волной.
+// Сработавший слот выполняет один из workers обработчиков пачками по batch-size через TransactionService.
+// На PostgreSQL слот захватывается pg_try_advisory_lock - узлы делят слоты, не ожидая друг друга.
+// Повторное выполнение исключает строка поручения: перевод и сдвиг next_run_at идут одной транзакцией
+// под SELECT ... FOR UPDATE SKIP LOCKED с проверкой, что запуск еще не выполнен
+@Slf4j
+@Service
+public class RecurringTransferScheduler {
+
+    // Секунды / минуты / часы
+    private static final int[] WHEEL_LEVELS = {60, 60, 24};
+
+    // Первый ключ pg_try_advisory_lock(int, int) - пространство ключей слотов поручений
+    private static final int ADVISORY_LOCK_CLASS = 0x52545246;
+
+    @Autowired
+    private RecurringTransferRepository recurringTransferRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${transfers.recurring.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transfers.recurring.workers:4}")
+    private int workerCount;
+
+    @Value("${transfers.recurring.batch-size:100}")
+    private int batchSize;
+
+    @Value("${transfers.recurring.spread-seconds:600}")
+    private int spreadSeconds;
+
+    @Value("${transfers.recurring.lookahead-minutes:60}")
+    private int lookaheadMinutes;
+
+    // Колесо и поручения в нем (id -> тик запуска); доступ под synchronized (wheel)
+    private TimingWheel<Long> wheel;
+    private final Map<Long, Long> scheduled = new HashMap<>();
+
+    // Поручения с next_run_at раньше этого времени уже загружены в колесо
+    private volatile LocalDateTime loadedUntil;
+
+    private final LinkedBlockingQueue<Slot> dueSlots = new LinkedBlockingQueue<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean stopRequested;
+    private boolean advisoryLocks;
+
+    private Counter completed;
+    private Counter failed;
+    private Counter skippedSlots;
+    private Timer delay;
+
+    @PostConstruct
+    void start() {
+        wheel = new TimingWheel<>(currentSecond(), WHEEL_LEVELS);
+        if (TimeUnit.MINUTES.toSeconds(lookaheadMinutes) + spreadSeconds >= wheel.getHorizon()) {
+            throw new IllegalStateException("transfers.recurring.lookahead-minutes + spread-seconds must be less than "
+                    + wheel.getHorizon() + " seconds");
+        }
+
+        completed = Counter.builder("bank.transfer.recurring")
+                .description("Recurring transfer runs")
+                .tag("outcome", "completed")
+                .register(meterRegistry);
+        failed = Counter.builder("bank.transfer.recurring")
+                .description("Recurring transfer runs")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+        skippedSlots = Counter.builder("bank.transfer.recurring.slots.skipped")
+                .description("Due slots already claimed by another instance")
+                .register(meterRegistry);
+        delay = Timer.builder("bank.transfer.recurring.delay")
+                .description("Time from the scheduled run to the transfer")
+                .register(meterRegistry);
+        Gauge.builder("bank.transfer.recurring.scheduled", this, RecurringTransferScheduler::scheduledCount)
+                .description("Recurring transfers waiting in the timing wheel")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+        advisoryLocks = isPostgreSql();
+        if (!advisoryLocks) {
+            log.info("Advisory locks are not available, recurring transfer slots are not shared between instances");
+        }
+
+        Thread ticker = new Thread(this::tick, "recurring-transfer-tick");
+        threads.add(ticker);
+        for (int i = 0; i < workerCount; i++) {
+            threads.add(new Thread(this::work, "recurring-transfer-" + i));
+        }
+        threads.forEach(thread -> {
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // Невыполненные запуски остаются в БД просроченными и подхватываются при старте
+        stopRequested = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${transfers.recurring.reload-ms:60000}")
+    public void scheduledReload() {
+        if (enabled) {
+            reload();
+        }
+    }
+
+    // Загрузить в колесо поручения до now + lookahead, которых там еще нет: при первом вызове все,
+    // затем - новое окно и просроченные дольше spread-seconds (не выполненные из-за сбоя или остановки).
+    // Возвращает число добавленных
+    public int reload() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plusMinutes(lookaheadMinutes);
+        LocalDateTime overdueBefore = now.minusSeconds(spreadSeconds).minusMinutes(1);
+        LocalDateTime from = loadedUntil != null ? loadedUntil : overdueBefore;
+        // Сначала сдвигаем границу: поручение, созданное во время запроса, добавит schedule()
+        loadedUntil = until;
+
+        List<Object[]> rows = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT id, next_run_at FROM recurring_transfers WHERE status = ? AND next_run_at < ? " +
+                        "AND (next_run_at >= ? OR next_run_at < ?)",
+                rs -> {
+                    rows.add(new Object[]{rs.getLong(1), rs.getTimestamp(2).toLocalDateTime()});
+                },
+                RecurringTransferStatus.ACTIVE.name(), Timestamp.valueOf(until),
+                Timestamp.valueOf(from), Timestamp.valueOf(overdueBefore));
+
+        int added = 0;
+        for (Object[] row : rows) {
+            if (add((Long) row[0], (LocalDateTime) row[1])) {
+                added++;
+            }
+        }
+        if (added > 0) {
+            log.debug("Scheduled {} recurring transfers until {}", added, until);
+        }
+        return added;
+    }
+
+    // Новое поручение или следующий запуск: в колесо, если попадает в уже загруженное окно
+    public void schedule(RecurringTransfer transfer) {
+        LocalDateTime until = loadedUntil;
+        if (until != null && transfer.getStatus() == RecurringTransferStatus.ACTIVE
+                && transfer.getNextRunAt().isBefore(until)) {
+            add(transfer.getId(), transfer.getNextRunAt());
+        }
+    }
+
+    private boolean add(Long id, LocalDateTime nextRunAt) {
+        long tick = toSecond(nextRunAt) + jitter(id);
+        synchronized (wheel) {
+            if (scheduled.containsKey(id) || !wheel.add(tick, id)) {
+                return false;
+            }
+            scheduled.put(id, tick);
+            return true;
+        }
+    }
+
+    // Постоянная для поручения добавка: разные поручения на одно время - в разные секунды
+    private long jitter(Long id) {
+        return spreadSeconds > 0 ? Math.floorMod(id * 0x9E3779B97F4A7C15L, (long) spreadSeconds) : 0;
+    }
+
+    private int scheduledCount() {
+        synchronized (wheel) {
+            return scheduled.size();
+        }
+    }
+
+    // Продвинуть колесо до момента nowMillis; сработавшие слоты
+    List<Slot> advance(long nowMillis) {
+        List<Slot> due = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advanceTo(nowMillis / 1000, (tick, ids) -> due.add(new Slot(tick, ids)));
+        }
+        return due;
+    }
+
+    private void tick() {
+        while (!stopRequested) {
+            try {
+                long now = System.currentTimeMillis();
+                Thread.sleep(1000 - now % 1000);
+                dueSlots.addAll(advance(System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                log.error("Recurring transfer tick failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void work() {
+        while (!stopRequested) {
+            try {
+                Slot slot = dueSlots.poll(100, TimeUnit.MILLISECONDS);
+                if (slot != null) {
+                    runSlot(slot);
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                log.error("Recurring transfer worker failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    // Выполнить слот, если его не выполняет другой экземпляр
+    void runSlot(Slot slot) {
+        try {
+            boolean owned = runExclusively(slot.tick, () -> {
+                for (int from = 0; from < slot.ids.size(); from += batchSize) {
+                    runBatch(slot.ids.subList(from, Math.min(from + batchSize, slot.ids.size())));
+                }
+            });
+            if (!owned) {
+                skippedSlots.increment();
+            }
+        } finally {
+            synchronized (wheel) {
+                // Следующие запуски уже добавлены со своими тиками - их не трогаем
+                slot.ids.forEach(id -> scheduled.remove(id, slot.tick));
+            }
+        }
+    }
+
+    private void runBatch(List<Long> ids) {
+        // Одним запросом отбрасываем отмененные и уже выполненные (другим экземпляром) поручения
+        List<Long> due = new NamedParameterJdbcTemplate(jdbcTemplate).queryForList(
+                "SELECT id FROM recurring_transfers WHERE id IN (:ids) AND status = :status AND next_run_at <= :now",
+                new MapSqlParameterSource("ids", ids)
+                        .addValue("status", RecurringTransferStatus.ACTIVE.name())
+                        .addValue("now", Timestamp.valueOf(LocalDateTime.now())),
+                Long.class);
+        due.forEach(this::execute);
+    }
+
+    // Перевод и следующий запуск - одна транзакция; отказ перевода - отдельная транзакция с ошибкой
+    private void execute(Long id) {
+        LocalDateTime now = LocalDateTime.now();
+        RecurringTransfer next;
+        Counter outcome = completed;
+        try {
+            next = transactionTemplate.execute(status -> {
+                RecurringTransfer transfer = claim(id, now);
+                if (transfer == null) {
+                    return null;
+                }
+                Card fromCard = cardService.getByCardNumber(transfer.getFromCardNumber());
+                Card toCard = cardService.getByCardNumber(transfer.getToCardNumber());
+                Transaction transaction = transactionService.transferBetweenCards(
+                        fromCard, toCard, transfer.getAmount(), transfer.getDescription());
+
+                delay.record(Duration.between(transfer.getNextRunAt(), now));
+                transfer.setLastTransactionId(transaction.getId());
+                transfer.setLastError(null);
+                advanceSchedule(transfer, now);
+                return transfer;
+            });
+        } catch (DomainException | CardNotFoundException e) {
+            outcome = failed;
+            next = transactionTemplate.execute(status -> {
+                RecurringTransfer transfer = claim(id, now);
+                if (transfer == null) {
+                    return null;
+                }
+                // Пропущенный запуск не повторяется - следующий по расписанию; удаленная карта - отмена
+                transfer.setLastError(truncate(e.getMessage()));
+                if (e instanceof CardNotFoundException) {
+                    transfer.setStatus(RecurringTransferStatus.CANCELLED);
+                }
+                advanceSchedule(transfer, now);
+                return transfer;
+            });
+            log.info("Recurring transfer {} failed: {}", id, e.getMessage());
+        } catch (RuntimeException e) {
+            // Останется просроченным и будет загружен повторно
+            log.error("Recurring transfer {} failed: {}", id, e.getMessage(), e);
+            return;
+        }
+        if (next != null) {
+            outcome.increment();
+            schedule(next);
+        }
+    }
+
+    // Строка поручения под блокировкой, если запуск еще не выполнен; занятую строку пропускаем -
+    // ее выполняет другой экземпляр
+    private RecurringTransfer claim(Long id, LocalDateTime now) {
+        List<Long> locked = jdbcTemplate.queryForList(
+                "SELECT id FROM recurring_transfers WHERE id = ? AND status = ? AND next_run_at <= ? " +
+                        "FOR UPDATE SKIP LOCKED",
+                Long.class, id, RecurringTransferStatus.ACTIVE.name(), Timestamp.valueOf(now));
+        return locked.isEmpty() ? null : recurringTransferRepository.findById(id).orElse(null);
+    }
+
+    // Следующий запуск - первый после now по расписанию от firstRunAt: после простоя пропущенные не догоняются
+    private void advanceSchedule(RecurringTransfer transfer, LocalDateTime now) {
+        int number = transfer.getNextRunNumber();
+        LocalDateTime next;
+        do {
+            number++;
+            next = transfer.getFrequency().runAt(transfer.getFirstRunAt(), number);
+        } while (!next.isAfter(now));
+        transfer.setNextRunNumber(number);
+        transfer.setNextRunAt(next);
+        transfer.setLastRunAt(now);
+    }
+
+    // Выполнить work под advisory-блокировкой слота (session-level, на отдельном соединении).
+    // false - слот выполняет другой экземпляр
+    private boolean runExclusively(long tick, Runnable work) {
+        if (!advisoryLocks) {
+            work.run();
+            return true;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            if (!advisoryLock(connection, "SELECT pg_try_advisory_lock(?, ?)", tick)) {
+                return false;
+            }
+            try {
+                work.run();
+            } finally {
+                advisoryLock(connection, "SELECT pg_advisory_unlock(?, ?)", tick);
+            }
+            return true;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not lock recurring transfer slot " + tick + ": " + e.getMessage(), e);
+        }
+    }
+
+    private boolean advisoryLock(Connection connection, String sql, long tick) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, ADVISORY_LOCK_CLASS);
+            statement.setInt(2, (int) tick);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private boolean isPostgreSql() {
+        try (Connection connection = dataSource.getConnection()) {
+            return "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not detect database: " + e.getMessage(), e);
+        }
+    }
+
+    private static long currentSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static long toSecond(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 500 ? message.substring(0, 500) : message;
+    }
+
+    // Сработавший секундный слот: тик (секунда от эпохи) и поручения
+    static final class Slot {
+        final long tick;
+        final List<Long> ids;
+
+        Slot(long tick, List<Long> ids) {
+            this.tick = tick;
+            this.ids = ids;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.RecurringFrequency;
+import com.example.bankcards.entity.RecurringTransfer;
+import com.example.bankcards.entity.RecurringTransferStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.RecurringTransferNotFoundException;
+import com.example.bankcards.repository.RecurringTransferRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Постоянные поручения пользователя; выполняет их RecurringTransferScheduler
+@Service
+public class RecurringTransferService {
+
+    @Autowired
+    private RecurringTransferRepository recurringTransferRepository;
+
+    @Autowired
+    private RecurringTransferScheduler scheduler;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Создать поручение. firstRunAt не указан - первый перевод сейчас
+    public RecurringTransfer create(Card fromCard, Card toCard, BigDecimal amount, String description,
+                                    RecurringFrequency frequency, LocalDateTime firstRunAt, User user) {
+        if (fromCard.getCardNumber().equals(toCard.getCardNumber())) {
+            throw new IllegalArgumentException("Cannot transfer to the same card");
+        }
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        cardService.validateCardForTransaction(fromCard);
+        cardService.validateCardForTransaction(toCard);
+
+        return transactionTemplate.execute(status -> {
+            RecurringTransfer saved = recurringTransferRepository.save(new RecurringTransfer(
+                    user.getId(), fromCard.getCardNumber(), toCard.getCardNumber(), amount, description,
+                    frequency, firstRunAt != null ? firstRunAt : LocalDateTime.now()));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    scheduler.schedule(saved);
+                }
+            });
+            return saved;
+        });
+    }
+
+    public List<RecurringTransfer> getUserTransfers(User user) {
+        return recurringTransferRepository.findByUserIdOrderByIdAsc(user.getId());
+    }
+
+    // Поручение пользователя; чужие не видны
+    public RecurringTransfer getTransfer(Long id, User user) {
+        return recurringTransferRepository.findByIdAndUserId(id, user.getId())
+                .orElseThrow(() -> new RecurringTransferNotFoundException(id));
+    }
+
+    // Отменить поручение. Запуск, уже стоящий в колесе, пропустит проверка статуса перед переводом
+    public RecurringTransfer cancel(Long id, User user) {
+        return transactionTemplate.execute(status -> {
+            RecurringTransfer transfer = getTransfer(id, user);
+            transfer.setStatus(RecurringTransferStatus.CANCELLED);
+            return recurringTransferRepository.save(transfer);
+        });
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.exception.SpendingLimitExceededException;
+import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.SpendingTotalRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Лимиты списаний за день и за месяц по карте и по всем картам пользователя (задает администратор,
+// null - без ограничения). Для каждого заданного лимита ведется сумма списаний текущего периода -
+// строка spending_totals в L2-кэше: перевод берет ее по первичному ключу, проверяет лимит и увеличивает
+// в своей транзакции, без SUM по transactions. Строки нет (первый перевод периода, лимит только что
+// задан) - сумма считается одним запросом по индексу transactions(from_card_number, transaction_date).
+// Суммы карты защищает блокировка карты в переводе; у пользователя с лимитом карты могут переводить
+// параллельно, поэтому его суммы ведутся под блокировкой строки пользователя
+@Slf4j
+@Service
+public class SpendingLimitService {
+
+    @Autowired
+    private SpendingTotalRepository totalRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Проверить лимиты и учесть списание. Вызывается в транзакции перевода после блокировки карты отправителя.
+    // Без @Transactional: исключение, прошедшее через прокси, пометило бы rollback-only всю транзакцию,
+    // а в пачке асинхронных переводов отказ должен отклонять только один перевод
+    public void checkAndRecord(Card fromCard, BigDecimal amount) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Spending limits must be checked inside the transfer transaction");
+        }
+        Long userId = fromCard.getUser().getId();
+        User user = userRepository.findById(userId).orElseThrow(() -> new UserNotFoundException(userId));
+        boolean userLimited = user.getDailyLimit() != null || user.getMonthlyLimit() != null;
+        if (fromCard.getDailyLimit() == null && fromCard.getMonthlyLimit() == null && !userLimited) {
+            return;
+        }
+        if (userLimited) {
+            entityManager.refresh(user, LockModeType.PESSIMISTIC_WRITE);
+        }
+
+        LocalDate today = LocalDate.now();
+        String cardNumber = fromCard.getCardNumber();
+        Supplier<String> card = () -> "card " + cardService.getMaskedCardNumber(fromCard);
+        Supplier<String> owner = () -> "user " + userId;
+
+        // Сначала все проверки, затем изменения: отказ не оставляет частично учтенного списания
+        List<SpendingTotal> totals = new ArrayList<>(4);
+        check(totals, SpendingScope.CARD, cardNumber, SpendingPeriod.DAY, fromCard.getDailyLimit(), today, amount, card);
+        check(totals, SpendingScope.CARD, cardNumber, SpendingPeriod.MONTH, fromCard.getMonthlyLimit(), today, amount, card);
+        check(totals, SpendingScope.USER, userId.toString(), SpendingPeriod.DAY, user.getDailyLimit(), today, amount, owner);
+        check(totals, SpendingScope.USER, userId.toString(), SpendingPeriod.MONTH, user.getMonthlyLimit(), today, amount, owner);
+
+        LocalDateTime now = LocalDateTime.now();
+        for (SpendingTotal total : totals) {
+            total.setAmount(total.getAmount().add(amount));
+            total.setUpdatedAt(now);
+        }
+    }
+
+    private void check(List<SpendingTotal> totals, SpendingScope scope, String ownerKey, SpendingPeriod period,
+                       BigDecimal limit, LocalDate today, BigDecimal amount, Supplier<String> subject) {
+        if (limit == null) {
+            return;
+        }
+        SpendingTotal total = getOrCreateTotal(scope, ownerKey, period, period.startOf(today));
+        BigDecimal spent = total.getAmount();
+        if (spent.add(amount).compareTo(limit) > 0) {
+            throw new SpendingLimitExceededException(() -> (period == SpendingPeriod.DAY ? "Daily" : "Monthly")
+                    + " spending limit exceeded for " + subject.get()
+                    + ": limit=" + format(limit) + ", spent=" + format(spent) + ", required=" + format(amount));
+        }
+        totals.add(total);
+    }
+
+    private SpendingTotal getOrCreateTotal(SpendingScope scope, String ownerKey, SpendingPeriod period,
+                                           LocalDate periodStart) {
+        SpendingTotal total = entityManager.find(SpendingTotal.class,
+                SpendingTotal.idOf(scope, ownerKey, period, periodStart));
+        if (total == null) {
+            total = new SpendingTotal(scope, ownerKey, period, periodStart, sumSpent(scope, ownerKey, periodStart));
+            entityManager.persist(total);
+        }
+        return total;
+    }
+
+    private BigDecimal sumSpent(SpendingScope scope, String ownerKey, LocalDate periodStart) {
+        LocalDateTime since = periodStart.atStartOfDay();
+        return scope == SpendingScope.CARD
+                ? transactionRepository.sumSentSince(ownerKey, since)
+                : transactionRepository.sumSentByUserSince(Long.valueOf(ownerKey), since);
+    }
+
+    // Списано за текущий период (для администратора; без записи суммы)
+    @Transactional(readOnly = true)
+    public BigDecimal getSpent(SpendingScope scope, String ownerKey, SpendingPeriod period) {
+        LocalDate periodStart = period.startOf(LocalDate.now());
+        SpendingTotal total = entityManager.find(SpendingTotal.class,
+                SpendingTotal.idOf(scope, ownerKey, period, periodStart));
+        return total != null ? total.getAmount() : sumSpent(scope, ownerKey, periodStart);
+    }
+
+    // Задать лимиты карты (null - без ограничения)
+    @Transactional
+    public Card updateCardLimits(String cardNumber, BigDecimal dailyLimit, BigDecimal monthlyLimit) {
+        validateLimit(dailyLimit);
+        validateLimit(monthlyLimit);
+        Card card = cardService.getByCardNumber(cardNumber);
+        card.setDailyLimit(dailyLimit);
+        card.setMonthlyLimit(monthlyLimit);
+        dropUnusedTotals(SpendingScope.CARD, cardNumber, dailyLimit, monthlyLimit);
+        return cardRepository.save(card);
+    }
+
+    // Задать лимиты пользователя на все его карты (null - без ограничения)
+    @Transactional
+    public User updateUserLimits(Long userId, BigDecimal dailyLimit, BigDecimal monthlyLimit) {
+        validateLimit(dailyLimit);
+        validateLimit(monthlyLimit);
+        User user = userRepository.findById(userId).orElseThrow(() -> new UserNotFoundException(userId));
+        user.setDailyLimit(dailyLimit);
+        user.setMonthlyLimit(monthlyLimit);
+        dropUnusedTotals(SpendingScope.USER, userId.toString(), dailyLimit, monthlyLimit);
+        return userRepository.save(user);
+    }
+
+    private void validateLimit(BigDecimal limit) {
+        if (limit != null && limit.signum() <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+    }
+
+    // Без лимита сумма не обновляется - устаревшую строку удаляем, при новом лимите она будет пересчитана
+    private void dropUnusedTotals(SpendingScope scope, String ownerKey, BigDecimal dailyLimit, BigDecimal monthlyLimit) {
+        if (dailyLimit == null) {
+            totalRepository.deleteByOwner(scope, ownerKey, SpendingPeriod.DAY);
+        }
+        if (monthlyLimit == null) {
+            totalRepository.deleteByOwner(scope, ownerKey, SpendingPeriod.MONTH);
+        }
+    }
+
+    // Суммы закончившихся периодов больше не читаются
+    @Scheduled(cron = "${transfers.spending-limits.cleanup-cron:0 20 0 * * *}")
+    public void deleteEndedPeriods() {
+        LocalDate today = LocalDate.now();
+        Integer deleted = transactionTemplate.execute(status ->
+                totalRepository.deleteEndedBefore(SpendingPeriod.DAY, SpendingPeriod.DAY.startOf(today))
+                        + totalRepository.deleteEndedBefore(SpendingPeriod.MONTH, SpendingPeriod.MONTH.startOf(today)));
+        log.info("Deleted {} spending totals of ended periods", deleted);
+    }
+
+    private static String format(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+}
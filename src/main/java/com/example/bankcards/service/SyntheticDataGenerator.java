@@ -0,0 +1,391 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Генератор синтетических данных для проверки планов запросов на объемах, близких к боевым:
+// пользователи, карты и переводы пишутся напрямую в БД (COPY для PostgreSQL, иначе JDBC-батчи)
+// пачками в несколько потоков, номера карт шифруются в тех же потоках.
+// Распределения:
+//   - карты по пользователям и переводы по картам - степенные (немного "горячих" карт и пользователей);
+//   - даты переводов - за последние history-days дней с сезонностью (пик в конце декабря),
+//     спадом в выходные и суточным профилем;
+//   - балансы и суммы - логнормальные.
+// Запуск: аргумент generate-data <users> <cards> <transactions> (CardDataMigrationUtil).
+// Рассчитан на работу без параллельной нагрузки: id берутся после MAX(id), затем сдвигаются последовательности
+@Slf4j
+@Service
+public class SyntheticDataGenerator {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${data-generator.threads:0}")
+    private int threads;
+
+    @Value("${data-generator.chunk-size:10000}")
+    private int chunkSize;
+
+    @Value("${data-generator.seed:42}")
+    private long seed;
+
+    @Value("${data-generator.history-days:365}")
+    private int historyDays;
+
+    // Степень для выбора карты перевода: чем больше, тем сильнее перекос к "горячим" картам
+    @Value("${data-generator.transfer-skew:2.5}")
+    private double transferSkew;
+
+    // Степень для распределения карт по пользователям
+    @Value("${data-generator.card-owner-skew:1.5}")
+    private double cardOwnerSkew;
+
+    // Кэш зашифрованных номеров самых частых карт (при степенном распределении на них приходится большинство переводов)
+    @Value("${data-generator.card-cache-size:200000}")
+    private int cardCacheSize;
+
+    // Синтетические номера: BIN 2200 + порядковый номер (11 цифр) + контрольная цифра Луна
+    private static final String PAN_PREFIX = "2200";
+    private static final String PASSWORD = "password";
+    private static final int PROGRESS_EVERY_CHUNKS = 100;
+
+    private static final String[] USER_COLUMNS =
+            {"id", "username", "email", "password", "role", "is_blocked", "created_at", "updated_at"};
+    private static final String[] CARD_COLUMNS =
+            {"card_number", "owner", "expiry_date", "status", "balance", "user_id", "created_at", "updated_at"};
+    private static final String[] TRANSACTION_COLUMNS =
+            {"id", "from_card_number", "to_card_number", "amount", "transaction_date", "description"};
+
+    private static final String[] FIRST_NAMES =
+            {"IVAN", "ANNA", "PETR", "OLGA", "SERGEY", "MARIA", "ALEXEY", "ELENA", "DMITRY", "NATALIA"};
+    private static final String[] LAST_NAMES =
+            {"IVANOV", "PETROVA", "SIDOROV", "SMIRNOVA", "KUZNETSOV", "POPOVA", "VASILIEV", "SOKOLOVA"};
+
+    // Итоги генерации
+    public static class Result {
+        public final long users;
+        public final long cards;
+        public final long transactions;
+        public final long durationMs;
+        public final boolean copyUsed;
+
+        Result(long users, long cards, long transactions, long durationMs, boolean copyUsed) {
+            this.users = users;
+            this.cards = cards;
+            this.transactions = transactions;
+            this.durationMs = durationMs;
+            this.copyUsed = copyUsed;
+        }
+    }
+
+    public Result generate(long users, long cards, long transactions) throws Exception {
+        if (users < 1 || cards < 2 && transactions > 0) {
+            throw new IllegalArgumentException("Need at least one user and two cards for transfers");
+        }
+
+        long startTime = System.currentTimeMillis();
+        int threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        boolean copy = isCopySupported();
+        log.info("Generating {} users, {} cards, {} transactions ({} threads, {})",
+                users, cards, transactions, threadCount, copy ? "COPY" : "JDBC batches");
+
+        long firstUserId = nextId("users");
+        long firstTransactionId = nextId("transactions");
+        // Синтетические карты нумеруются подряд: новые продолжают после уже существующих
+        long firstCardIndex = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cards", Long.class);
+        String password = passwordEncoder.encode(PASSWORD);
+        String[] cardCache = new String[(int) Math.min(cardCacheSize, cards)];
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            runChunks(executor, threadCount, "users", users, (from, to, random) -> {
+                List<Object[]> rows = new ArrayList<>((int) (to - from));
+                for (long i = from; i < to; i++) {
+                    long id = firstUserId + i;
+                    LocalDateTime createdAt = now.minusDays(random.nextInt(historyDays * 3 + 1));
+                    rows.add(new Object[]{id, "gen_user_" + id, "gen_user_" + id + "@example.com", password,
+                            Role.ROLE_USER.name(), random.nextInt(100) == 0, createdAt, createdAt});
+                }
+                write(copy, "users", USER_COLUMNS, rows);
+            });
+
+            runChunks(executor, threadCount, "cards", cards, (from, to, random) -> {
+                List<Object[]> rows = new ArrayList<>((int) (to - from));
+                for (long i = from; i < to; i++) {
+                    String encrypted = encryptionService.encrypt(pan(firstCardIndex + i));
+                    if (i < cardCache.length) {
+                        cardCache[(int) i] = encrypted;
+                    }
+                    long userId = firstUserId + powerLaw(random, users, cardOwnerSkew);
+                    rows.add(cardRow(random, encrypted, userId, now));
+                }
+                write(copy, "cards", CARD_COLUMNS, rows);
+            });
+
+            runChunks(executor, threadCount, "transactions", transactions, (from, to, random) -> {
+                List<Object[]> rows = new ArrayList<>((int) (to - from));
+                for (long i = from; i < to; i++) {
+                    long fromIndex = powerLaw(random, cards, transferSkew);
+                    long toIndex = powerLaw(random, cards, transferSkew);
+                    if (toIndex == fromIndex) {
+                        toIndex = (fromIndex + 1 + random.nextLong(cards - 1)) % cards;
+                    }
+                    rows.add(new Object[]{firstTransactionId + i,
+                            cachedCardNumber(cardCache, firstCardIndex, fromIndex),
+                            cachedCardNumber(cardCache, firstCardIndex, toIndex),
+                            logNormalAmount(random, 7.0, 1.3, new BigDecimal("500000.00")),
+                            seasonalDate(random, now),
+                            "Synthetic transfer"});
+                }
+                write(copy, "transactions", TRANSACTION_COLUMNS, rows);
+            });
+        } finally {
+            executor.shutdown();
+        }
+
+        restartSequence("users_seq", firstUserId + users);
+        restartSequence("transactions_seq", firstTransactionId + transactions);
+        // Строки записаны в обход Hibernate. Карты выпущены только новым пользователям,
+        // поэтому выданные ранее ETag наборов карт не устаревают
+        entityManagerFactory.getCache().evictAll();
+
+        Result result = new Result(users, cards, transactions, System.currentTimeMillis() - startTime, copy);
+        log.info("Data generation finished in {} ms", result.durationMs);
+        return result;
+    }
+
+    // Генерация одной пачки строк [from, to) со своим детерминированным генератором случайных чисел
+    private interface ChunkWriter {
+        void write(long from, long to, SplittableRandom random) throws Exception;
+    }
+
+    private void runChunks(ExecutorService executor, int threadCount, String table, long total, ChunkWriter writer)
+            throws Exception {
+        long startTime = System.currentTimeMillis();
+        long chunks = (total + chunkSize - 1) / chunkSize;
+        AtomicLong written = new AtomicLong();
+        long tableSeed = seed * 31 + table.hashCode();
+
+        // Не больше 2 * threads задач в очереди: пачки строк не копятся в памяти
+        List<Future<?>> inFlight = new ArrayList<>();
+        int maxInFlight = 2 * threadCount;
+        for (long chunk = 0; chunk < chunks; chunk++) {
+            long from = chunk * chunkSize;
+            long to = Math.min(from + chunkSize, total);
+            long chunkNumber = chunk;
+            inFlight.add(executor.submit(() -> {
+                writer.write(from, to, new SplittableRandom(tableSeed + chunkNumber));
+                long done = written.addAndGet(to - from);
+                if ((chunkNumber + 1) % PROGRESS_EVERY_CHUNKS == 0) {
+                    log.info("{}: {} / {} rows", table, done, total);
+                }
+                return null;
+            }));
+            if (inFlight.size() >= maxInFlight) {
+                inFlight.remove(0).get();
+            }
+        }
+        for (Future<?> future : inFlight) {
+            future.get();
+        }
+
+        long durationMs = Math.max(1, System.currentTimeMillis() - startTime);
+        log.info("{}: {} rows in {} ms ({} rows/s)", table, total, durationMs, total * 1000 / durationMs);
+    }
+
+    private Object[] cardRow(SplittableRandom random, String encryptedNumber, long userId, LocalDateTime now) {
+        // Срок действия - последний день месяца; часть карт уже просрочена
+        LocalDate expiry = now.toLocalDate().plusMonths(random.nextInt(-6, 61));
+        expiry = expiry.withDayOfMonth(expiry.lengthOfMonth());
+
+        CardStatus status;
+        if (expiry.isBefore(now.toLocalDate())) {
+            status = CardStatus.EXPIRED;
+        } else {
+            status = random.nextInt(100) < 5 ? CardStatus.BLOCKED : CardStatus.ACTIVE;
+        }
+
+        String owner = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        LocalDateTime createdAt = now.minusDays(random.nextInt(historyDays * 3 + 1));
+        return new Object[]{encryptedNumber, owner, expiry, status.name(),
+                logNormalAmount(random, 8.0, 1.2, new BigDecimal("10000000.00")), userId, createdAt, createdAt};
+    }
+
+    private String cachedCardNumber(String[] cache, long firstCardIndex, long index) {
+        if (index < cache.length) {
+            String cached = cache[(int) index];
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return encryptionService.encrypt(pan(firstCardIndex + index));
+    }
+
+    // Индекс в [0, n) со степенным перекосом к малым значениям
+    private static long powerLaw(SplittableRandom random, long n, double skew) {
+        return Math.min(n - 1, (long) (n * Math.pow(random.nextDouble(), skew)));
+    }
+
+    private static BigDecimal logNormalAmount(SplittableRandom random, double mu, double sigma, BigDecimal max) {
+        double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+        BigDecimal amount = BigDecimal.valueOf(Math.exp(mu + sigma * gaussian)).setScale(2, RoundingMode.HALF_UP);
+        return amount.max(BigDecimal.ONE).min(max);
+    }
+
+    // Дата перевода за последние historyDays дней: отбор с весом сезон * день недели * час
+    private LocalDateTime seasonalDate(SplittableRandom random, LocalDateTime now) {
+        while (true) {
+            LocalDateTime candidate = now.minusSeconds(random.nextLong((long) historyDays * 86400));
+            double dayOfYearAngle = 2 * Math.PI * (candidate.getDayOfYear() - 355) / 365.0;
+            double season = 1 + 0.25 * Math.cos(dayOfYearAngle);
+            DayOfWeek day = candidate.getDayOfWeek();
+            double weekday = day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY ? 0.7 : 1.0;
+            int hour = candidate.getHour();
+            double hourly = hour < 7 ? 0.15 : hour < 18 ? 1.0 : hour < 22 ? 1.3 : 0.5;
+            if (random.nextDouble() * 1.25 * 1.3 < season * weekday * hourly) {
+                return candidate;
+            }
+        }
+    }
+
+    // 16-значный номер с контрольной цифрой по алгоритму Луна
+    static String pan(long index) {
+        String body = PAN_PREFIX + String.format("%011d", index);
+        int sum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            int digit = body.charAt(body.length() - 1 - i) - '0';
+            if (i % 2 == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+
+    private long nextId(String table) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table, Long.class);
+    }
+
+    private void restartSequence(String sequence, long nextValue) {
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + nextValue);
+    }
+
+    // ========== ЗАПИСЬ ==========
+
+    private boolean isCopySupported() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isWrapperFor(Class.forName("org.postgresql.PGConnection"));
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private void write(boolean copy, String table, String[] columns, List<Object[]> rows) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            if (copy) {
+                copyIn(connection, table, columns, rows);
+            } else {
+                batchInsert(connection, table, columns, rows);
+            }
+            connection.commit();
+        }
+    }
+
+    // COPY ... FROM STDIN (CSV) через CopyManager драйвера PostgreSQL.
+    // Драйвер подключен со scope runtime, поэтому вызов через reflection
+    private void copyIn(Connection connection, String table, String[] columns, List<Object[]> rows) throws Exception {
+        StringBuilder csv = new StringBuilder(rows.size() * 128);
+        for (Object[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    csv.append(',');
+                }
+                if (row[i] != null) {
+                    csv.append(row[i]);
+                }
+            }
+            csv.append('\n');
+        }
+
+        Class<?> pgConnectionClass = Class.forName("org.postgresql.PGConnection");
+        Object pgConnection = connection.unwrap(pgConnectionClass);
+        Object copyManager = pgConnectionClass.getMethod("getCopyAPI").invoke(pgConnection);
+        Method copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+        copyIn.invoke(copyManager, "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN WITH (FORMAT csv)",
+                new StringReader(csv.toString()));
+    }
+
+    private void batchInsert(Connection connection, String table, String[] columns, List<Object[]> rows)
+            throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(columns.length, "?"));
+        String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + placeholders + ")";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    statement.setObject(i + 1, toJdbc(row[i]));
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private static Object toJdbc(Object value) {
+        if (value instanceof LocalDateTime dateTime) {
+            return Timestamp.valueOf(dateTime);
+        }
+        if (value instanceof LocalDate date) {
+            return Date.valueOf(date);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.bankcards.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// Иерархическое колесо таймеров: уровень 0 - слоты по одному тику, слот каждого следующего уровня
+// покрывает весь предыдущий уровень (например 60 секунд / 60 минут / 24 часа). Добавление и срабатывание
+// не зависят от числа записей; запись верхнего уровня при входе колеса в ее слот переносится ниже.
+// Время - номера тиков (например секунды от эпохи). Не потокобезопасно
+final class TimingWheel<T> {
+
+    private final int[] sizes;
+    private final long[] ticksPerSlot;
+    private final List<Entry<T>>[][] slots;
+    private final long horizon;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long currentTick, int... sizes) {
+        this.sizes = sizes.clone();
+        this.ticksPerSlot = new long[sizes.length];
+        this.slots = new List[sizes.length][];
+        long ticks = 1;
+        for (int level = 0; level < sizes.length; level++) {
+            ticksPerSlot[level] = ticks;
+            slots[level] = new List[sizes[level]];
+            ticks *= sizes[level];
+        }
+        this.horizon = ticks;
+        this.currentTick = currentTick;
+    }
+
+    // Добавить запись на тик dueTick; прошедший тик срабатывает на следующем.
+    // false - дальше горизонта колеса, запись не добавлена
+    boolean add(long dueTick, T value) {
+        long tick = Math.max(dueTick, currentTick + 1);
+        if (tick - currentTick >= horizon) {
+            return false;
+        }
+        place(new Entry<>(tick, value));
+        size++;
+        return true;
+    }
+
+    // Продвинуть колесо до тика tick включительно; сработавшие записи передаются по тикам
+    void advanceTo(long tick, BiConsumer<Long, List<T>> consumer) {
+        while (currentTick < tick) {
+            currentTick++;
+            // Сверху вниз: запись, спущенная с уровня 2, в тот же тик может спуститься и с уровня 1
+            for (int level = sizes.length - 1; level > 0; level--) {
+                if (currentTick % ticksPerSlot[level] == 0) {
+                    List<Entry<T>> cascaded = take(level, currentTick);
+                    if (cascaded != null) {
+                        cascaded.forEach(this::place);
+                    }
+                }
+            }
+
+            List<Entry<T>> due = take(0, currentTick);
+            if (due != null) {
+                size -= due.size();
+                List<T> values = new ArrayList<>(due.size());
+                due.forEach(entry -> values.add(entry.value));
+                consumer.accept(currentTick, values);
+            }
+        }
+    }
+
+    long getCurrentTick() {
+        return currentTick;
+    }
+
+    // На сколько тиков вперед можно добавлять записи
+    long getHorizon() {
+        return horizon;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Самый нижний уровень, в один оборот которого укладывается запись. Слот верхнего уровня
+    // всегда впереди текущего: запись попадает туда, только если дальше целого слота этого уровня
+    private void place(Entry<T> entry) {
+        long delta = entry.tick - currentTick;
+        int level = 0;
+        while (delta >= ticksPerSlot[level] * sizes[level]) {
+            level++;
+        }
+        int index = index(level, entry.tick);
+        if (slots[level][index] == null) {
+            slots[level][index] = new ArrayList<>();
+        }
+        slots[level][index].add(entry);
+    }
+
+    private List<Entry<T>> take(int level, long tick) {
+        int index = index(level, tick);
+        List<Entry<T>> entries = slots[level][index];
+        slots[level][index] = null;
+        return entries;
+    }
+
+    private int index(int level, long tick) {
+        return (int) ((tick / ticksPerSlot[level]) % sizes[level]);
+    }
+
+    private static final class Entry<T> {
+        private final long tick;
+        private final T value;
+
+        private Entry(long tick, T value) {
+            this.tick = tick;
+            this.value = value;
+        }
+    }
+}
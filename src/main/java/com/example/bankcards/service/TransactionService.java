@@ -4,9 +4,10 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.exception.InsufficientFundsException;
 import com.example.bankcards.repository.TransactionRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,25 +23,46 @@ public class TransactionService {
     @Autowired
     private CardService cardService;
 
-    // Выполнить перевод между картами
-    public Transaction transferBetweenCards(Card fromCard, Card toCard, BigDecimal amount, String description) {
-        // Валидируем карты для транзакции
-        cardService.validateCardForTransaction(fromCard);
-        cardService.validateCardForTransaction(toCard);
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private TransferVelocityService velocityService;
+
+    @Autowired
+    private SpendingLimitService spendingLimitService;
 
+    // Выполнить перевод между картами (метрика bank.transfer, исход - в теге exception)
+    @Timed(value = "bank.transfer", histogram = true)
+    public Transaction transferBetweenCards(Card fromCard, Card toCard, BigDecimal amount, String description) {
         // Проверяем, что это не перевод на ту же карту
         if (fromCard.getCardNumber().equals(toCard.getCardNumber())) {
             throw new IllegalArgumentException("Cannot transfer to the same card");
         }
 
-        // Проверяем достаточность средств
-        cardService.validateSufficientFunds(fromCard, amount);
-
         // Проверяем, что сумма положительная
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Amount must be positive");
         }
 
+        // Блокируем обе карты и перечитываем баланс из БД (L2-кэш не участвует в изменении баланса)
+        Card[] locked = cardService.lockForBalanceUpdate(fromCard, toCard);
+        fromCard = locked[0];
+        toCard = locked[1];
+
+        // Валидируем карты для транзакции
+        cardService.validateCardForTransaction(fromCard);
+        cardService.validateCardForTransaction(toCard);
+
+        // Проверяем достаточность средств
+        cardService.validateSufficientFunds(fromCard, amount);
+
+        // Лимиты частоты переводов (в памяти, снимаются при откате)
+        velocityService.acquire(fromCard, amount);
+
+        // Лимиты списаний за день и месяц (накопленные суммы, без SUM по истории)
+        spendingLimitService.checkAndRecord(fromCard, amount);
+
         // Обновляем балансы
         fromCard.setBalance(fromCard.getBalance().subtract(amount));
         toCard.setBalance(toCard.getBalance().add(amount));
@@ -49,30 +71,41 @@ public class TransactionService {
         cardService.save(fromCard);
         cardService.save(toCard);
 
-        // Создаем транзакцию
-        Transaction transaction = new Transaction(fromCard, toCard, amount, description);
-        return transactionRepository.save(transaction);
+        // Создаем транзакцию и событие для внешних систем (в той же транзакции БД)
+        Transaction transaction = transactionRepository.save(new Transaction(fromCard, toCard, amount, description));
+        outboxService.recordTransfer(transaction);
+        return transaction;
     }
 
-    // Получить историю транзакций по карте
-    public Page<Transaction> getCardTransactions(String cardNumber, Pageable pageable) {
-        return transactionRepository.findByCardNumber(cardNumber, pageable);
+    // Получить историю транзакций по карте.
+    // includeTotal - вернуть Page с общим количеством (лишний COUNT(*)), иначе Slice
+    public Slice<Transaction> getCardTransactions(String cardNumber, Pageable pageable, boolean includeTotal) {
+        return includeTotal
+                ? transactionRepository.findByCardNumber(cardNumber, pageable)
+                : transactionRepository.findSliceByCardNumber(cardNumber, pageable);
     }
 
     // Получить отправленные транзакции
-    public Page<Transaction> getSentTransactions(String cardNumber, Pageable pageable) {
-        return transactionRepository.findByFromCardCardNumberOrderByTransactionDateDesc(cardNumber, pageable);
+    public Slice<Transaction> getSentTransactions(String cardNumber, Pageable pageable, boolean includeTotal) {
+        return includeTotal
+                ? transactionRepository.findByFromCardCardNumberOrderByTransactionDateDesc(cardNumber, pageable)
+                : transactionRepository.findSliceByFromCardCardNumberOrderByTransactionDateDesc(cardNumber, pageable);
     }
 
     // Получить полученные транзакции
-    public Page<Transaction> getReceivedTransactions(String cardNumber, Pageable pageable) {
-        return transactionRepository.findByToCardCardNumberOrderByTransactionDateDesc(cardNumber, pageable);
+    public Slice<Transaction> getReceivedTransactions(String cardNumber, Pageable pageable, boolean includeTotal) {
+        return includeTotal
+                ? transactionRepository.findByToCardCardNumberOrderByTransactionDateDesc(cardNumber, pageable)
+                : transactionRepository.findSliceByToCardCardNumberOrderByTransactionDateDesc(cardNumber, pageable);
     }
 
     // Найти транзакции за период
-    public Page<Transaction> getTransactionsByPeriod(String cardNumber, java.time.LocalDateTime startDate,
-                                                     java.time.LocalDateTime endDate, Pageable pageable) {
-        return transactionRepository.findByCardNumberAndPeriod(cardNumber, startDate, endDate, pageable);
+    public Slice<Transaction> getTransactionsByPeriod(String cardNumber, java.time.LocalDateTime startDate,
+                                                      java.time.LocalDateTime endDate, Pageable pageable,
+                                                      boolean includeTotal) {
+        return includeTotal
+                ? transactionRepository.findByCardNumberAndPeriod(cardNumber, startDate, endDate, pageable)
+                : transactionRepository.findSliceByCardNumberAndPeriod(cardNumber, startDate, endDate, pageable);
     }
 
     // Найти транзакцию по ID
@@ -0,0 +1,284 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.TransferIntent;
+import com.example.bankcards.entity.TransferIntentStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.DomainException;
+import com.example.bankcards.exception.TransferIntentNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransferIntentRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Асинхронные переводы (POST /api/transactions/transfer?async=true): запрос сохраняется как PENDING,
+// ответ 202 уходит сразу, перевод выполняет пул из transfers.async.workers обработчиков.
+// Обработчик выбирается по хэшу карты отправителя - переводы с одной карты выполняются в порядке приема.
+// Все, что накопилось в очереди обработчика (до batch-size), выполняется одной транзакцией:
+// карты блокируются один раз в порядке номеров, переводы применяются по очереди,
+// отклоненный перевод получает FAILED и не мешает остальным
+@Slf4j
+@Service
+public class TransferIntentService {
+
+    @Autowired
+    private TransferIntentRepository intentRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private TransferVelocityService velocityService;
+
+    @Autowired
+    private SpendingLimitService spendingLimitService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${transfers.async.workers:4}")
+    private int workerCount;
+
+    @Value("${transfers.async.batch-size:100}")
+    private int batchSize;
+
+    private Worker[] workers;
+    private Timer queueDelay;
+    private DistributionSummary batchSizes;
+    private volatile boolean stopRequested;
+
+    @PostConstruct
+    void start() {
+        queueDelay = Timer.builder("bank.transfer.async.delay")
+                .description("Time from accepting an async transfer to its outcome")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("bank.transfer.async.batch")
+                .description("Async transfers processed in one transaction")
+                .register(meterRegistry);
+
+        workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(i);
+            workers[i].thread.start();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // Необработанные запросы остаются PENDING и подхватываются при старте
+        stopRequested = true;
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+        for (Worker worker : workers) {
+            worker.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    // Принять перевод. Сразу проверяется то, что не требует блокировок, остальное - в обработчике
+    public TransferIntent accept(Card fromCard, Card toCard, BigDecimal amount, String description, User user) {
+        if (fromCard.getCardNumber().equals(toCard.getCardNumber())) {
+            throw new IllegalArgumentException("Cannot transfer to the same card");
+        }
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        cardService.validateCardForTransaction(fromCard);
+        cardService.validateCardForTransaction(toCard);
+
+        return transactionTemplate.execute(status -> {
+            TransferIntent saved = intentRepository.save(new TransferIntent(
+                    user.getId(), fromCard.getCardNumber(), toCard.getCardNumber(), amount, description));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(saved);
+                }
+            });
+            return saved;
+        });
+    }
+
+    // Состояние перевода; чужие переводы не видны
+    public TransferIntent getIntent(Long id, User user) {
+        return intentRepository.findByIdAndUserId(id, user.getId())
+                .orElseThrow(() -> new TransferIntentNotFoundException(id));
+    }
+
+    // Запросы, принятые до остановки приложения
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        List<TransferIntent> pending = intentRepository.findByStatusOrderByIdAsc(TransferIntentStatus.PENDING);
+        if (!pending.isEmpty()) {
+            log.info("Resuming {} pending async transfers", pending.size());
+        }
+        pending.forEach(this::enqueue);
+    }
+
+    private void enqueue(TransferIntent intent) {
+        workers[Math.floorMod(intent.getFromCardNumber().hashCode(), workers.length)].queue.add(intent.getId());
+    }
+
+    // Выполнить пачку одной транзакцией; если она упала целиком - по одному
+    void process(List<Long> ids) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(ids));
+        } catch (RuntimeException e) {
+            if (ids.size() > 1) {
+                log.warn("Async transfer batch of {} failed, retrying one by one: {}", ids.size(), e.getMessage());
+                ids.forEach(id -> process(List.of(id)));
+                return;
+            }
+            log.error("Async transfer {} failed: {}", ids.get(0), e.getMessage(), e);
+            markFailed(ids.get(0), e);
+        }
+    }
+
+    private void apply(List<Long> ids) {
+        // Повторно поставленные в очередь (подхват при старте) уже могут быть обработаны
+        List<TransferIntent> intents = new ArrayList<>(intentRepository.findAllById(ids));
+        intents.removeIf(intent -> intent.getStatus() != TransferIntentStatus.PENDING);
+        if (intents.isEmpty()) {
+            return;
+        }
+        intents.sort(Comparator.comparing(TransferIntent::getId));
+
+        Set<String> cardNumbers = new HashSet<>();
+        for (TransferIntent intent : intents) {
+            cardNumbers.add(intent.getFromCardNumber());
+            cardNumbers.add(intent.getToCardNumber());
+        }
+        Card[] loaded = cardRepository.findAllById(cardNumbers).toArray(new Card[0]);
+        Card[] locked = cardService.lockForBalanceUpdate(loaded);
+        // По номерам из намерений: перенесенная ротацией карта возвращается под новым номером
+        Map<String, Card> cards = new HashMap<>();
+        for (int i = 0; i < loaded.length; i++) {
+            cards.put(loaded[i].getCardNumber(), locked[i]);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (TransferIntent intent : intents) {
+            TransferVelocityService.Reservation reservation = TransferVelocityService.Reservation.NONE;
+            try {
+                Card fromCard = getLockedCard(cards, intent.getFromCardNumber());
+                Card toCard = getLockedCard(cards, intent.getToCardNumber());
+                cardService.validateCardForTransaction(fromCard);
+                cardService.validateCardForTransaction(toCard);
+                cardService.validateSufficientFunds(fromCard, intent.getAmount());
+                reservation = velocityService.acquire(fromCard, intent.getAmount());
+                spendingLimitService.checkAndRecord(fromCard, intent.getAmount());
+
+                fromCard.setBalance(fromCard.getBalance().subtract(intent.getAmount()));
+                toCard.setBalance(toCard.getBalance().add(intent.getAmount()));
+                Transaction transaction = transactionRepository.save(
+                        new Transaction(fromCard, toCard, intent.getAmount(), intent.getDescription()));
+                outboxService.recordTransfer(transaction);
+
+                intent.setStatus(TransferIntentStatus.COMPLETED);
+                intent.setTransactionId(transaction.getId());
+            } catch (DomainException | CardNotFoundException e) {
+                // Пачка коммитится и с отклоненными намерениями - учет в счетчиках снимается сразу
+                reservation.release();
+                intent.setStatus(TransferIntentStatus.FAILED);
+                intent.setError(e.getMessage());
+            }
+            intent.setProcessedAt(now);
+            queueDelay.record(Duration.between(intent.getCreatedAt(), now));
+        }
+        batchSizes.record(intents.size());
+    }
+
+    private Card getLockedCard(Map<String, Card> cards, String cardNumber) {
+        Card card = cards.get(cardNumber);
+        if (card == null) {
+            throw new CardNotFoundException("Card not found: " + cardService.getMaskedCardNumber(cardNumber));
+        }
+        return card;
+    }
+
+    private void markFailed(Long id, RuntimeException error) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> intentRepository.findById(id)
+                    .filter(intent -> intent.getStatus() == TransferIntentStatus.PENDING)
+                    .ifPresent(intent -> {
+                        String message = error.getMessage() != null && error.getMessage().length() > 500
+                                ? error.getMessage().substring(0, 500) : error.getMessage();
+                        intent.setStatus(TransferIntentStatus.FAILED);
+                        intent.setError(message);
+                        intent.setProcessedAt(LocalDateTime.now());
+                    }));
+        } catch (RuntimeException e) {
+            // Останется PENDING и будет выполнен после перезапуска
+            log.error("Could not mark async transfer {} as failed: {}", id, e.getMessage());
+        }
+    }
+
+    // Обработчик: одна очередь и один поток
+    private final class Worker implements Runnable {
+
+        private final LinkedBlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+        private final Thread thread;
+
+        private Worker(int index) {
+            thread = new Thread(this, "transfer-async-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<Long> ids = new ArrayList<>();
+            while (!stopRequested) {
+                try {
+                    Long first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    ids.add(first);
+                    queue.drainTo(ids, batchSize - 1);
+                    process(ids);
+                } catch (InterruptedException e) {
+                    break;
+                } catch (RuntimeException e) {
+                    log.error("Async transfer worker failed: {}", e.getMessage(), e);
+                } finally {
+                    ids.clear();
+                }
+            }
+        }
+    }
+}
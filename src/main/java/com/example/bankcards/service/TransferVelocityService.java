@@ -0,0 +1,471 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.VelocityLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Лимиты частоты переводов (transfers.velocity.*): число переводов и сумма списаний с карты
+// и со всех карт пользователя за минуту, час и сутки (0 - без ограничения).
+// Счетчики в памяти: на каждое окно - кольцо корзин (минута - 60 по секунде, час - 60 по минуте,
+// сутки - 24 по часу) с итогами окна, поэтому проверка - O(1) без чтения БД, а окно скользит
+// с точностью до корзины. Перевод учитывается сразу при проверке, чтобы параллельные переводы
+// не прошли лимит вместе, и снимается, если перевод не состоялся.
+// Карты и пользователи - в LRU ограниченного размера (transfers.velocity.cache-size), счетчики
+// восстанавливаются при старте из переводов за последние сутки. Ключ, которого нет в памяти,
+// читается из БД, только если в последние сутки вытеснялся ключ с переводами в окне
+@Slf4j
+@Service
+public class TransferVelocityService {
+
+    private static final int SEGMENTS = 16;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // Окна: длина корзины, число корзин, имя для сообщений и метрик
+    private static final long[] BUCKET_MILLIS = {1_000L, 60_000L, 3_600_000L};
+    private static final int[] BUCKETS = {60, 60, 24};
+    private static final String[] WINDOW_NAMES = {"minute", "hour", "day"};
+
+    private static final String CARD_HISTORY_SQL = "SELECT amount, transaction_date FROM transactions " +
+            "WHERE from_card_number = ? AND transaction_date >= ?";
+    private static final String USER_HISTORY_SQL = "SELECT t.amount, t.transaction_date FROM transactions t " +
+            "JOIN cards c ON c.card_number = t.from_card_number WHERE c.user_id = ? AND t.transaction_date >= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${transfers.velocity.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transfers.velocity.cache-size:200000}")
+    private int cacheSize;
+
+    @Value("${transfers.velocity.card.per-minute.count:10}")
+    private long cardMinuteCount;
+
+    @Value("${transfers.velocity.card.per-minute.amount:0}")
+    private BigDecimal cardMinuteAmount;
+
+    @Value("${transfers.velocity.card.per-hour.count:100}")
+    private long cardHourCount;
+
+    @Value("${transfers.velocity.card.per-hour.amount:0}")
+    private BigDecimal cardHourAmount;
+
+    @Value("${transfers.velocity.card.per-day.count:300}")
+    private long cardDayCount;
+
+    @Value("${transfers.velocity.card.per-day.amount:1000000}")
+    private BigDecimal cardDayAmount;
+
+    @Value("${transfers.velocity.user.per-minute.count:30}")
+    private long userMinuteCount;
+
+    @Value("${transfers.velocity.user.per-minute.amount:0}")
+    private BigDecimal userMinuteAmount;
+
+    @Value("${transfers.velocity.user.per-hour.count:300}")
+    private long userHourCount;
+
+    @Value("${transfers.velocity.user.per-hour.amount:0}")
+    private BigDecimal userHourAmount;
+
+    @Value("${transfers.velocity.user.per-day.count:1000}")
+    private long userDayCount;
+
+    @Value("${transfers.velocity.user.per-day.amount:5000000}")
+    private BigDecimal userDayAmount;
+
+    private Limits cardLimits;
+    private Limits userLimits;
+    private Store<String> cards;
+    private Store<Long> users;
+    private Counter historyLoads;
+
+    // Время последнего вытеснения ключа, у которого были переводы в окне
+    private volatile long lastEviction;
+
+    @PostConstruct
+    void start() {
+        cardLimits = new Limits("card",
+                new long[]{cardMinuteCount, cardHourCount, cardDayCount},
+                new long[]{toCents(cardMinuteAmount), toCents(cardHourAmount), toCents(cardDayAmount)});
+        userLimits = new Limits("user",
+                new long[]{userMinuteCount, userHourCount, userDayCount},
+                new long[]{toCents(userMinuteAmount), toCents(userHourAmount), toCents(userDayAmount)});
+        cards = new Store<>(CARD_HISTORY_SQL);
+        users = new Store<>(USER_HISTORY_SQL);
+        historyLoads = Counter.builder("bank.transfer.velocity.loads")
+                .description("Velocity counters read from transactions after an eviction")
+                .register(meterRegistry);
+
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    // Счетчики из переводов за последние сутки. Выполняется до приема запросов (инициализация бина)
+    private void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        int[] rows = {0};
+        try {
+            jdbcTemplate.query("SELECT t.from_card_number, c.user_id, t.amount, t.transaction_date " +
+                            "FROM transactions t JOIN cards c ON c.card_number = t.from_card_number " +
+                            "WHERE t.transaction_date >= ?",
+                    rs -> {
+                        long at = rs.getTimestamp(4).getTime();
+                        long cents = toCents(rs.getBigDecimal(3));
+                        cards.getOrCreate(rs.getString(1)).add(at, 1, cents);
+                        users.getOrCreate(rs.getLong(2)).add(at, 1, cents);
+                        rows[0]++;
+                    },
+                    new Timestamp(startedAt - DAY_MILLIS));
+        } catch (DataAccessException e) {
+            log.warn("Could not rebuild transfer velocity counters, reading history on demand: {}", e.getMessage());
+            lastEviction = startedAt;
+            return;
+        }
+
+        // Сутки переводов не поместились в память: часть счетчиков неполная
+        if (lastEviction >= startedAt) {
+            log.warn("Transfer velocity counters exceed cache-size={}, reading history on demand", cacheSize);
+            cards.clear();
+            users.clear();
+            lastEviction = System.currentTimeMillis();
+        }
+        log.info("Transfer velocity counters rebuilt from {} transfers in {} ms",
+                rows[0], System.currentTimeMillis() - startedAt);
+    }
+
+    // Проверить лимиты отправителя и учесть перевод. В транзакции учет снимается при ее откате,
+    // вне транзакции его снимает вызывающий (Reservation.release)
+    public Reservation acquire(Card fromCard, BigDecimal amount) {
+        if (!enabled) {
+            return Reservation.NONE;
+        }
+        long now = System.currentTimeMillis();
+        long cents = toCents(amount);
+        String cardNumber = fromCard.getCardNumber();
+        Long userId = fromCard.getUser().getId();
+        Counters card;
+        Counters user;
+        while (true) {
+            Counters cardCounters = cards.get(cardNumber, now);
+            Counters userCounters = users.get(userId, now);
+            update(cardCounters, userCounters, () -> {
+                check(cardCounters, cardLimits, now, cents, () -> "card " + cardService.getMaskedCardNumber(fromCard));
+                check(userCounters, userLimits, now, cents, () -> "user " + userId);
+                cardCounters.add(now, 1, cents);
+                userCounters.add(now, 1, cents);
+            });
+
+            // LRU мог вытеснить счетчики, пока их меняли, и учет в них потерялся бы:
+            // тогда он снимается и повторяется на счетчиках, которые сейчас в кэше
+            if (cards.contains(cardNumber, cardCounters) && users.contains(userId, userCounters)) {
+                card = cardCounters;
+                user = userCounters;
+                break;
+            }
+            update(cardCounters, userCounters, () -> {
+                cardCounters.add(now, -1, -cents);
+                userCounters.add(now, -1, -cents);
+            });
+        }
+
+        Reservation reservation = new Reservation(card, user, now, cents);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        reservation.release();
+                    }
+                }
+            });
+        }
+        return reservation;
+    }
+
+    // Изменить счетчики под их блокировками: всегда карта, затем пользователь
+    private static void update(Counters card, Counters user, Runnable action) {
+        card.lock.lock();
+        try {
+            user.lock.lock();
+            try {
+                action.run();
+            } finally {
+                user.lock.unlock();
+            }
+        } finally {
+            card.lock.unlock();
+        }
+    }
+
+    private void check(Counters counters, Limits limits, long now, long cents, Supplier<String> subject) {
+        counters.advance(now);
+        for (int window = 0; window < WINDOW_NAMES.length; window++) {
+            long maxCount = limits.counts[window];
+            long maxCents = limits.cents[window];
+            boolean countExceeded = maxCount > 0 && counters.windows[window].total + 1 > maxCount;
+            boolean amountExceeded = maxCents > 0 && counters.windows[window].totalCents + cents > maxCents;
+            if (countExceeded || amountExceeded) {
+                meterRegistry.counter("bank.transfer.velocity.rejected",
+                        "scope", limits.scope, "window", WINDOW_NAMES[window]).increment();
+                String name = WINDOW_NAMES[window];
+                String limit = countExceeded
+                        ? maxCount + " transfers"
+                        : BigDecimal.valueOf(maxCents, 2).toPlainString();
+                throw new VelocityLimitExceededException(() ->
+                        "Transfer limit exceeded for " + subject.get() + ": " + limit + " per " + name);
+            }
+        }
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    // Учтенный перевод
+    public static final class Reservation {
+
+        static final Reservation NONE = new Reservation(null, null, 0, 0);
+
+        private final Counters card;
+        private final Counters user;
+        private final long at;
+        private final long cents;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(Counters card, Counters user, long at, long cents) {
+            this.card = card;
+            this.user = user;
+            this.at = at;
+            this.cents = cents;
+        }
+
+        // Перевод не состоялся. Корзина, уже вышедшая из окна, не меняется
+        void release() {
+            if (this == NONE || !released.compareAndSet(false, true)) {
+                return;
+            }
+            update(card, user, () -> {
+                card.add(at, -1, -cents);
+                user.add(at, -1, -cents);
+            });
+        }
+    }
+
+    // Лимиты по окнам: число переводов и сумма в копейках
+    private static final class Limits {
+        private final String scope;
+        private final long[] counts;
+        private final long[] cents;
+
+        private Limits(String scope, long[] counts, long[] cents) {
+            this.scope = scope;
+            this.counts = counts;
+            this.cents = cents;
+        }
+    }
+
+    // Скользящее окно: кольцо корзин и итоги по нему
+    private static final class Window {
+        private final long bucketMillis;
+        private final long[] bucketCounts;
+        private final long[] bucketCents;
+        // Номер последней корзины (время / длина корзины)
+        private long head;
+        private long total;
+        private long totalCents;
+
+        private Window(long bucketMillis, int buckets) {
+            this.bucketMillis = bucketMillis;
+            this.bucketCounts = new long[buckets];
+            this.bucketCents = new long[buckets];
+        }
+
+        // Сдвинуть окно, вычитая вышедшие корзины: не больше числа корзин за вызов
+        private void advance(long now) {
+            long index = now / bucketMillis;
+            if (index - head >= bucketCounts.length) {
+                Arrays.fill(bucketCounts, 0);
+                Arrays.fill(bucketCents, 0);
+                total = 0;
+                totalCents = 0;
+                head = index;
+                return;
+            }
+            while (head < index) {
+                head++;
+                int slot = (int) (head % bucketCounts.length);
+                total -= bucketCounts[slot];
+                totalCents -= bucketCents[slot];
+                bucketCounts[slot] = 0;
+                bucketCents[slot] = 0;
+            }
+        }
+
+        private void add(long at, long count, long cents) {
+            advance(Math.max(at, head * bucketMillis));
+            long index = at / bucketMillis;
+            if (head - index >= bucketCounts.length) {
+                return;
+            }
+            int slot = (int) (index % bucketCounts.length);
+            bucketCounts[slot] += count;
+            bucketCents[slot] += cents;
+            total += count;
+            totalCents += cents;
+        }
+    }
+
+    // Счетчики карты или пользователя; изменяются под lock (ReentrantLock, а не synchronized -
+    // не закрепляет carrier-поток виртуального потока на горячем пути перевода)
+    private static final class Counters {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Window[] windows = new Window[BUCKETS.length];
+        private volatile long lastActivity;
+
+        private Counters() {
+            for (int i = 0; i < windows.length; i++) {
+                windows[i] = new Window(BUCKET_MILLIS[i], BUCKETS[i]);
+            }
+        }
+
+        private void advance(long now) {
+            for (Window window : windows) {
+                window.advance(now);
+            }
+        }
+
+        private void add(long at, long count, long cents) {
+            for (Window window : windows) {
+                window.add(at, count, cents);
+            }
+            lastActivity = Math.max(lastActivity, at);
+        }
+    }
+
+    // LRU счетчиков по сегментам (блокировка сегмента - только на поиск и вставку)
+    private final class Store<K> {
+
+        private final String historySql;
+        private final Map<K, Counters>[] segments;
+        private final ReentrantLock[] locks = new ReentrantLock[SEGMENTS];
+
+        @SuppressWarnings("unchecked")
+        private Store(String historySql) {
+            this.historySql = historySql;
+            int capacity = Math.max(1, cacheSize / SEGMENTS);
+            segments = new Map[SEGMENTS];
+            for (int i = 0; i < SEGMENTS; i++) {
+                locks[i] = new ReentrantLock();
+                segments[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<K, Counters> eldest) {
+                        if (size() <= capacity) {
+                            return false;
+                        }
+                        // Без переводов за сутки счетчики пусты - вытеснение ничего не теряет
+                        if (eldest.getValue().lastActivity > System.currentTimeMillis() - DAY_MILLIS) {
+                            lastEviction = System.currentTimeMillis();
+                        }
+                        return true;
+                    }
+                };
+            }
+        }
+
+        private int segment(K key) {
+            return Math.floorMod(key.hashCode(), SEGMENTS);
+        }
+
+        private Counters get(K key, long now) {
+            int segment = segment(key);
+            locks[segment].lock();
+            try {
+                Counters counters = segments[segment].get(key);
+                if (counters != null) {
+                    return counters;
+                }
+            } finally {
+                locks[segment].unlock();
+            }
+
+            Counters created = new Counters();
+            if (now - lastEviction < DAY_MILLIS) {
+                historyLoads.increment();
+                jdbcTemplate.query(historySql,
+                        rs -> {
+                            created.add(rs.getTimestamp(2).getTime(), 1, toCents(rs.getBigDecimal(1)));
+                        },
+                        key, new Timestamp(now - DAY_MILLIS));
+            }
+            locks[segment].lock();
+            try {
+                Counters existing = segments[segment].putIfAbsent(key, created);
+                return existing != null ? existing : created;
+            } finally {
+                locks[segment].unlock();
+            }
+        }
+
+        // Счетчики все еще в кэше (не вытеснены)
+        private boolean contains(K key, Counters counters) {
+            int segment = segment(key);
+            locks[segment].lock();
+            try {
+                return segments[segment].get(key) == counters;
+            } finally {
+                locks[segment].unlock();
+            }
+        }
+
+        private Counters getOrCreate(K key) {
+            int segment = segment(key);
+            locks[segment].lock();
+            try {
+                return segments[segment].computeIfAbsent(key, k -> new Counters());
+            } finally {
+                locks[segment].unlock();
+            }
+        }
+
+        private void clear() {
+            for (int segment = 0; segment < SEGMENTS; segment++) {
+                locks[segment].lock();
+                try {
+                    segments[segment].clear();
+                } finally {
+                    locks[segment].unlock();
+                }
+            }
+        }
+    }
+}
@@ -5,8 +5,8 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -53,14 +53,16 @@ public class UserService implements UserDetailsService {
                 .orElseThrow(() -> new UserNotFoundException(userId));
     }
 
-    // Получить всех пользователей с пагинацией
-    public Page<User> getAllUsers(Pageable pageable) {
-        return userRepository.findAll(pageable);
+    // Получить всех пользователей с пагинацией (общее количество - только при includeTotal)
+    public Slice<User> getAllUsers(Pageable pageable, boolean includeTotal) {
+        return includeTotal ? userRepository.findAll(pageable) : userRepository.findSliceBy(pageable);
     }
 
     // Поиск пользователей по username
-    public Page<User> searchUsersByUsername(String username, Pageable pageable) {
-        return userRepository.findByUsernameContainingIgnoreCase(username, pageable);
+    public Slice<User> searchUsersByUsername(String username, Pageable pageable, boolean includeTotal) {
+        return includeTotal
+                ? userRepository.findByUsernameContainingIgnoreCase(username, pageable)
+                : userRepository.findSliceByUsernameContainingIgnoreCase(username, pageable);
     }
 
     // Получить общее количество пользователей
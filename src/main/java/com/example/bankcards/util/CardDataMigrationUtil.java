@@ -3,7 +3,10 @@ package com.example.bankcards.util;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
+import com.example.bankcards.entity.KeyRotationCheckpoint;
+import com.example.bankcards.service.CardKeyRotationService;
 import com.example.bankcards.service.EncryptionService;
+import com.example.bankcards.service.SyntheticDataGenerator;
 
 @Component
 public class CardDataMigrationUtil implements CommandLineRunner {
@@ -11,8 +14,39 @@ public class CardDataMigrationUtil implements CommandLineRunner {
     @Autowired
     private EncryptionService encryptionService;
 
+    @Autowired
+    private CardKeyRotationService cardKeyRotationService;
+
+    @Autowired
+    private SyntheticDataGenerator syntheticDataGenerator;
+
     @Override
     public void run(String... args) throws Exception {
+        // Перешифровать все карты ключом encryption.current-key-version (продолжает с контрольной точки)
+        if (args.length > 0 && "rotate-card-keys".equals(args[0])) {
+            System.out.println("=== CARD KEY ROTATION ===");
+            KeyRotationCheckpoint result = cardKeyRotationService.rotate();
+            System.out.println("Target key version: " + result.getTargetVersion());
+            System.out.println("Status: " + result.getStatus());
+            System.out.println("Processed: " + result.getProcessed() + ", failed: " + result.getFailed());
+            return;
+        }
+
+        // Синтетические данные для нагрузочных тестов: generate-data [users] [cards] [transactions]
+        if (args.length > 0 && "generate-data".equals(args[0])) {
+            long users = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+            long cards = args.length > 2 ? Long.parseLong(args[2]) : users * 3;
+            long transactions = args.length > 3 ? Long.parseLong(args[3]) : cards * 10;
+
+            System.out.println("=== SYNTHETIC DATA GENERATION ===");
+            SyntheticDataGenerator.Result result = syntheticDataGenerator.generate(users, cards, transactions);
+            System.out.println("Users: " + result.users + ", cards: " + result.cards
+                    + ", transactions: " + result.transactions);
+            System.out.println("Write mode: " + (result.copyUsed ? "COPY" : "JDBC batches"));
+            System.out.println("Duration: " + result.durationMs + " ms");
+            return;
+        }
+
         if (args.length > 0 && "migrate-cards".equals(args[0])) {
             System.out.println("=== CARD DATA MIGRATION UTILITY ===");
             System.out.println();
@@ -0,0 +1,147 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.BulkBlockRequestResult;
+import com.example.bankcards.entity.*;
+import com.example.bankcards.event.BlockRequestEvent;
+import com.example.bankcards.event.BlockRequestEventBus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.EncryptionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ssetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "admin.events.buffer-size=3"
+})
+@AutoConfigureMockMvc
+class AdminBlockRequestStreamTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BlockRequestEventBus eventBus;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    private MockHttpServletResponse subscribe(Long lastEventId) throws Exception {
+        MockHttpServletRequestBuilder builder = get("/api/admin/block-requests/stream");
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+    }
+
+    // Отправка идет в пуле потоков - ждем появления фрагмента в ответе
+    private String awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = response.getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            content = response.getContentAsString();
+        }
+        assertTrue(content.contains(expected), "Expected '" + expected + "' in stream: " + content);
+        return content;
+    }
+
+    private long publishBulkEvent() {
+        eventBus.onBlockRequestEvent(new BlockRequestEvent(
+                new BulkBlockRequestResult(BlockRequestStatus.APPROVED, 1, 1, 0)));
+        return (long) eventBus.getStats().get("lastEventId");
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void stream_ShouldPushCreatedBlockRequest() throws Exception {
+        // Given
+        String suffix = String.valueOf(System.nanoTime());
+        User user = userRepository.save(new User("sse" + suffix, "sse" + suffix + "@bank.com", "password", Role.ROLE_USER));
+        String cardNumber = "4000" + suffix.substring(suffix.length() - 12);
+        cardRepository.save(new Card(encryptionService.encrypt(cardNumber), "SSE USER", LocalDate.now().plusYears(1),
+                CardStatus.ACTIVE, BigDecimal.TEN, user));
+
+        MockHttpServletResponse response = subscribe(null);
+        awaitContent(response, ":connected");
+
+        // When
+        BlockRequest blockRequest = cardService.requestCardBlock(cardNumber, user, "Lost");
+
+        // Then
+        String content = awaitContent(response, "event:created");
+        assertTrue(content.contains("\"id\":" + blockRequest.getId()));
+        assertTrue(content.contains("\"status\":\"PENDING\""));
+        assertFalse(content.contains(cardNumber));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void stream_WithLastEventId_ShouldReplayMissedEvents() throws Exception {
+        // Given
+        long first = publishBulkEvent();
+        long second = publishBulkEvent();
+        long third = publishBulkEvent();
+
+        // When
+        MockHttpServletResponse response = subscribe(first);
+
+        // Then
+        String content = awaitContent(response, "id:" + third + "\n");
+        assertTrue(content.contains("id:" + second + "\n"));
+        assertFalse(content.contains("id:" + first + "\n"));
+        assertTrue(content.contains("event:bulk-processed"));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void stream_WithEvictedLastEventId_ShouldSendReset() throws Exception {
+        // Given - буфер на 3 события, клиент отстал на 5
+        long first = publishBulkEvent();
+        for (int i = 0; i < 4; i++) {
+            publishBulkEvent();
+        }
+
+        // When
+        MockHttpServletResponse response = subscribe(first - 1);
+
+        // Then
+        String content = awaitContent(response, "event:reset");
+        assertFalse(content.contains("event:bulk-processed"));
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = "USER")
+    void stream_AsUser_ShouldBeForbidden() throws Exception {
+        mockMvc.perform(get("/api/admin/block-requests/stream"))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.EncryptionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:bulktest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "cards.bulk.chunk-size=2"
+})
+@AutoConfigureMockMvc
+class AdminBulkCardIssueTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    private User user;
+    private String prefix;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        user = userRepository.save(new User("bulk" + suffix, "bulk" + suffix + "@bank.com", "password", Role.ROLE_USER));
+        // Уникальные 12 первых цифр для каждого теста
+        prefix = suffix.substring(suffix.length() - 12);
+    }
+
+    private String pan(int n) {
+        return prefix + String.format("%04d", n);
+    }
+
+    private String issue(String contentType, String body) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/admin/cards/bulk")
+                        .contentType(contentType)
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void issueCardsBulk_Csv_CreatesValidRowsAndReportsErrors() throws Exception {
+        // Given - одна карта уже существует
+        cardRepository.save(new Card(encryptionService.encrypt(pan(5)), "EXISTING", LocalDate.now().plusYears(1),
+                CardStatus.ACTIVE, BigDecimal.TEN, user));
+
+        String csv = String.join("\n",
+                "cardNumber,owner,expiryDate,balance,userId",
+                pan(1) + ",\"IVANOV, IVAN\"," + LocalDate.now().plusYears(3) + ",500.00," + user.getId(),
+                pan(2) + ",PETR PETROV," + LocalDate.now().plusYears(3) + ",," + user.getId(),
+                "12345,BAD NUMBER," + LocalDate.now().plusYears(3) + ",1.00," + user.getId(),
+                pan(3) + ",NO USER," + LocalDate.now().plusYears(3) + ",1.00,999999",
+                pan(1) + ",DUPLICATE," + LocalDate.now().plusYears(3) + ",1.00," + user.getId(),
+                pan(5) + ",EXISTING," + LocalDate.now().plusYears(3) + ",1.00," + user.getId(),
+                pan(4) + ",ANNA SIDOROVA," + LocalDate.now().plusYears(3) + ",1.00," + user.getId());
+
+        // When
+        List<String> lines = issue("text/csv", csv).lines().toList();
+
+        // Then
+        String summary = lines.get(lines.size() - 1);
+        assertTrue(summary.contains("\"type\":\"summary\""), summary);
+        assertTrue(summary.contains("\"total\":7"), summary);
+        assertTrue(summary.contains("\"created\":3"), summary);
+        assertTrue(summary.contains("\"failed\":4"), summary);
+
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0).contains("\"line\":4") && lines.get(0).contains("16 digits"), lines.get(0));
+        assertTrue(lines.get(1).contains("\"line\":5") && lines.get(1).contains("User not found"), lines.get(1));
+        assertTrue(lines.get(2).contains("\"line\":6") && lines.get(2).contains("already exists"), lines.get(2));
+        assertTrue(lines.get(3).contains("\"line\":7") && lines.get(3).contains("already exists"), lines.get(3));
+
+        Card created = cardRepository.findById(encryptionService.encrypt(pan(1))).orElseThrow();
+        assertEquals("IVANOV, IVAN", created.getOwner());
+        assertEquals(0, new BigDecimal("500.00").compareTo(created.getBalance()));
+        assertEquals(0, new BigDecimal("1000.00").compareTo(
+                cardRepository.findById(encryptionService.encrypt(pan(2))).orElseThrow().getBalance()));
+        assertTrue(cardRepository.existsById(encryptionService.encrypt(pan(4))));
+        assertFalse(cardRepository.existsById(encryptionService.encrypt(pan(3))));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void issueCardsBulk_Ndjson_CreatesCards() throws Exception {
+        // Given
+        String ndjson = String.join("\n",
+                "{\"cardNumber\":\"" + pan(1) + "\",\"owner\":\"JSON USER\",\"expiryDate\":\""
+                        + LocalDate.now().plusYears(2) + "\",\"userId\":" + user.getId() + "}",
+                "{\"cardNumber\":\"" + pan(1) + "\",\"owner\":\"JSON USER\",\"expiryDate\":\""
+                        + LocalDate.now().plusYears(2) + "\",\"userId\":" + user.getId() + "}",
+                "not a json");
+
+        // When
+        List<String> lines = issue("application/x-ndjson", ndjson).lines().toList();
+
+        // Then
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).contains("Duplicate card number in file"), lines.get(0));
+        assertTrue(lines.get(1).contains("Invalid row"), lines.get(1));
+        assertTrue(lines.get(2).contains("\"created\":1"), lines.get(2));
+        assertTrue(cardRepository.existsById(encryptionService.encrypt(pan(1))));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.EncryptionService;
+import com.example.bankcards.service.SpendingLimitService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AdminSpendingLimitTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private SpendingLimitService spendingLimitService;
+
+    @MockBean
+    private CardService cardService;
+
+    @MockBean
+    private EncryptionService encryptionService;
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void updateCardLimits_ShouldReturnLimitsAndSpent() throws Exception {
+        // Given
+        Card card = new Card("encrypted-4111", "TEST USER", LocalDate.now().plusYears(1),
+                CardStatus.ACTIVE, new BigDecimal("1000.00"), new User());
+        card.setDailyLimit(new BigDecimal("500.00"));
+
+        when(encryptionService.encrypt("4111111111111111")).thenReturn("encrypted-4111");
+        when(spendingLimitService.updateCardLimits("encrypted-4111", new BigDecimal("500.00"), null)).thenReturn(card);
+        when(spendingLimitService.getSpent(SpendingScope.CARD, "encrypted-4111", SpendingPeriod.DAY))
+                .thenReturn(new BigDecimal("120.00"));
+        when(spendingLimitService.getSpent(SpendingScope.CARD, "encrypted-4111", SpendingPeriod.MONTH))
+                .thenReturn(new BigDecimal("300.00"));
+        when(cardService.getMaskedCardNumber(card)).thenReturn("**** **** **** 1111");
+
+        // When & Then - monthlyLimit не передан: без ограничения
+        mockMvc.perform(put("/api/admin/cards/limits")
+                        .param("cardNumber", "4111111111111111")
+                        .param("dailyLimit", "500.00")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cardNumber").value("**** **** **** 1111"))
+                .andExpect(jsonPath("$.dailyLimit").value(500.00))
+                .andExpect(jsonPath("$.monthlyLimit").doesNotExist())
+                .andExpect(jsonPath("$.spentToday").value(120.00))
+                .andExpect(jsonPath("$.spentThisMonth").value(300.00));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void updateUserLimits_WithNonPositiveLimit_ShouldReturnBadRequest() throws Exception {
+        // Given
+        when(spendingLimitService.updateUserLimits(eq(5L), any(), any()))
+                .thenThrow(new IllegalArgumentException("Limit must be positive"));
+
+        // When & Then
+        mockMvc.perform(put("/api/admin/users/5/limits")
+                        .param("dailyLimit", "0")
+                        .with(csrf()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Limit must be positive"));
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = "USER")
+    void updateCardLimits_AsUser_ShouldBeForbidden() throws Exception {
+        mockMvc.perform(put("/api/admin/cards/limits")
+                        .param("cardNumber", "4111111111111111")
+                        .param("dailyLimit", "1.00")
+                        .with(csrf()))
+                .andExpect(status().isForbidden());
+    }
+}
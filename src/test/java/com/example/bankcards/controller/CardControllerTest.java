@@ -1,7 +1,9 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.entity.*;
+import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardSetVersionService;
 import com.example.bankcards.service.UserService;
 import com.example.bankcards.service.EncryptionService;
 import org.junit.jupiter.api.Test;
@@ -13,6 +15,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
@@ -24,7 +28,11 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -48,6 +56,12 @@ class CardControllerTest {
     @MockBean
     private EncryptionService encryptionService;
 
+    @Autowired
+    private CardSetVersionService cardSetVersionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
     private User createTestUser() {
         User user = new User();
         user.setId(1L);
@@ -76,7 +90,7 @@ class CardControllerTest {
         Page<Card> cardPage = new PageImpl<>(List.of(card), PageRequest.of(0, 10), 1); // ИСПРАВИЛИ: добавили PageRequest
 
         when(userService.findByUsername("testuser")).thenReturn(user);
-        when(cardService.getUserCards(eq(user), any(Pageable.class))).thenReturn(cardPage); // УТОЧНИЛИ тип
+        when(cardService.getUserCards(eq(user), any(Pageable.class), eq(false))).thenReturn(cardPage); // УТОЧНИЛИ тип
         when(cardService.getMaskedCardNumber(any(Card.class))).thenReturn("**** **** **** 1234");
 
         // When & Then
@@ -110,6 +124,119 @@ class CardControllerTest {
                 .andExpect(content().string("1000.00"));
     }
 
+    @Test
+    @WithMockUser(username = "testuser", roles = "USER")
+    void getUserCards_ShouldReturnSlimEnvelopeWithoutTotal() throws Exception {
+        // Given
+        User user = createTestUser();
+        Card card = createTestCard();
+        Slice<Card> cardSlice = new SliceImpl<>(List.of(card), PageRequest.of(0, 1), true);
+
+        when(userService.findByUsername("testuser")).thenReturn(user);
+        when(cardService.getUserCards(eq(user), any(Pageable.class), eq(false))).thenReturn(cardSlice);
+        when(cardService.getMaskedCardNumber(any(Card.class))).thenReturn("**** **** **** 1234");
+
+        // When & Then
+        mockMvc.perform(get("/api/cards").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].maskedNumber").value("**** **** **** 1234"))
+                .andExpect(jsonPath("$.page").value(0))
+                .andExpect(jsonPath("$.size").value(1))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.totalElements").doesNotExist())
+                .andExpect(jsonPath("$.pageable").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = "USER")
+    void getUserCards_ShouldReturnTotalWhenRequested() throws Exception {
+        // Given
+        User user = createTestUser();
+        Card card = createTestCard();
+        Page<Card> cardPage = new PageImpl<>(List.of(card), PageRequest.of(0, 10), 1);
+
+        when(userService.findByUsername("testuser")).thenReturn(user);
+        when(cardService.getUserCards(eq(user), any(Pageable.class), eq(true))).thenReturn(cardPage);
+        when(cardService.getMaskedCardNumber(any(Card.class))).thenReturn("**** **** **** 1234");
+
+        // When & Then
+        mockMvc.perform(get("/api/cards").param("includeTotal", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hasNext").value(false))
+                .andExpect(jsonPath("$.totalElements").value(1))
+                .andExpect(jsonPath("$.totalPages").value(1));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = "USER")
+    void getUserCards_NotModified() throws Exception {
+        // Given
+        User user = createTestUser();
+        when(userService.findByUsername("testuser")).thenReturn(user);
+        String eTag = cardSetVersionService.getETag(user.getId(), MediaType.APPLICATION_JSON);
+
+        // When & Then - карты не загружаются
+        mockMvc.perform(get("/api/cards").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().string(""));
+        verify(cardService, never()).getUserCards(any(), any(), anyBoolean());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = "USER")
+    void getCardBalance_ShouldReturnNewETagAfterCardChange() throws Exception {
+        // Given - версия хранится в строке users, поэтому пользователь нужен в БД
+        String suffix = String.valueOf(System.nanoTime());
+        User user = userRepository.save(new User("etag" + suffix, "etag" + suffix + "@bank.com", "password", Role.ROLE_USER));
+        Card card = createTestCard();
+        when(userService.findByUsername("testuser")).thenReturn(user);
+        when(encryptionService.encrypt("4111111111111111")).thenReturn("encrypted-card");
+        when(cardService.getByCardNumberAndUser("encrypted-card", user)).thenReturn(card);
+        String oldETag = cardSetVersionService.getETag(user.getId(), MediaType.APPLICATION_JSON);
+
+        // When
+        cardSetVersionService.bump(user.getId());
+
+        // Then
+        mockMvc.perform(get("/api/cards/balance")
+                        .param("cardNumber", "4111111111111111")
+                        .header("If-None-Match", oldETag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", cardSetVersionService.getETag(user.getId(), MediaType.APPLICATION_JSON)))
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andExpect(content().string("1000.00"));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = "USER")
+    void getCardBalance_ShouldVaryETagByNegotiatedMediaType() throws Exception {
+        // Given
+        String suffix = String.valueOf(System.nanoTime());
+        User user = userRepository.save(new User("etag" + suffix, "etag" + suffix + "@bank.com", "password", Role.ROLE_USER));
+        when(userService.findByUsername("testuser")).thenReturn(user);
+        when(encryptionService.encrypt("4111111111111111")).thenReturn("encrypted-card");
+        when(cardService.getByCardNumberAndUser("encrypted-card", user)).thenReturn(createTestCard());
+        String jsonETag = cardSetVersionService.getETag(user.getId(), MediaType.APPLICATION_JSON);
+        String cborETag = cardSetVersionService.getETag(user.getId(), MediaType.APPLICATION_CBOR);
+
+        // When & Then - закэшированный JSON не подходит клиенту, запросившему CBOR
+        assertNotEquals(jsonETag, cborETag);
+        mockMvc.perform(get("/api/cards/balance")
+                        .param("cardNumber", "4111111111111111")
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .header("If-None-Match", jsonETag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", cborETag))
+                .andExpect(header().stringValues("Vary", hasItem("Accept")))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR));
+        mockMvc.perform(get("/api/cards/balance")
+                        .param("cardNumber", "4111111111111111")
+                        .header("If-None-Match", jsonETag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues("Vary", hasItem("Accept")));
+    }
+
     @Test
     @WithMockUser(username = "testuser", roles = "USER")
     void activateCard_Success() throws Exception {
@@ -0,0 +1,99 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.service.CardService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class CborContentNegotiationTest {
+
+    private static final MediaType APPLICATION_CBOR = MediaType.parseMediaType("application/cbor");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CardService cardService;
+
+    private void givenAdminCards() {
+        User user = new User("cboruser", "cbor@bank.com", "password", Role.ROLE_USER);
+        user.setId(7L);
+        Card card = new Card("encrypted", "CBOR USER", LocalDate.of(2030, 12, 31),
+                CardStatus.ACTIVE, new BigDecimal("1234.50"), user);
+        when(cardService.getAllCards(any(Pageable.class), anyBoolean()))
+                .thenReturn(new PageImpl<>(List.of(card), PageRequest.of(0, 10), 1));
+        when(cardService.getMaskedCardNumber(any(Card.class))).thenReturn("**** **** **** 4242");
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void getAllCards_ShouldReturnCborWhenAccepted() throws Exception {
+        // Given
+        givenAdminCards();
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/admin/cards").accept(APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(APPLICATION_CBOR))
+                .andReturn();
+
+        // Then - значения те же, что в JSON, поля по алфавиту
+        JsonNode page = new CBORMapper().readTree(result.getResponse().getContentAsByteArray());
+        JsonNode card = page.get("content").get(0);
+        assertEquals("**** **** **** 4242", card.get("maskedNumber").asText());
+        assertEquals(0, new BigDecimal("1234.50").compareTo(card.get("balance").decimalValue()));
+        assertEquals("2030-12-31", card.get("expiryDate").asText());
+        assertEquals(7L, card.get("userId").asLong());
+
+        List<String> fields = new ArrayList<>();
+        for (Iterator<String> names = card.fieldNames(); names.hasNext(); ) {
+            fields.add(names.next());
+        }
+        assertEquals(fields.stream().sorted().toList(), fields);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void getAllCards_ShouldKeepJsonByDefault() throws Exception {
+        // Given
+        givenAdminCards();
+
+        // When & Then
+        mockMvc.perform(get("/api/admin/cards"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.content[0].maskedNumber").value("**** **** **** 4242"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.JwtUtil;
+import com.example.bankcards.service.EncryptionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:metricstest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "jwt.secret=metricsTestJwtSecretThatIsLongEnoughForHmacSha256",
+        "management.endpoints.web.exposure.include=health,prometheus",
+        "management.metrics.distribution.percentiles-histogram.spring.data.repository.invocations=true"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class PrometheusMetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Test
+    void prometheus_ShouldExposeHotPathTimersWithoutAuthentication() throws Exception {
+        // Given
+        encryptionService.decrypt(encryptionService.encrypt("4111111111111111"));
+        String suffix = String.valueOf(System.nanoTime());
+        userRepository.save(new User("metrics" + suffix, "metrics" + suffix + "@bank.com", "password", Role.ROLE_USER));
+
+        // When
+        String body = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Then
+        assertTrue(body.contains("bank_encryption_seconds_bucket{"));
+        assertTrue(body.contains("operation=\"decrypt\""));
+        assertTrue(body.contains("spring_data_repository_invocations_seconds_bucket{"));
+        assertTrue(body.contains("hikaricp_connections_pending"));
+    }
+
+    @Test
+    void jwtFilter_ShouldRecordAuthenticationOutcome() throws Exception {
+        // Given
+        String suffix = String.valueOf(System.nanoTime());
+        User user = userRepository.save(new User("jwt" + suffix, "jwt" + suffix + "@bank.com", "password", Role.ROLE_USER));
+        String token = jwtUtil.generateToken(userDetailsService.loadUserByUsername(user.getUsername()));
+
+        // When
+        mockMvc.perform(get("/api/cards").header("Authorization", "Bearer " + token));
+
+        // Then
+        String body = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(body.contains("bank_jwt_authentication_seconds_bucket{"));
+        assertTrue(body.contains("outcome=\"success\""));
+    }
+
+    @Test
+    void connectionHoldFilter_ShouldRecordHoldTimePerRequestPattern() throws Exception {
+        // Given
+        String suffix = String.valueOf(System.nanoTime());
+        User user = userRepository.save(new User("hold" + suffix, "hold" + suffix + "@bank.com", "password", Role.ROLE_USER));
+        String token = jwtUtil.generateToken(userDetailsService.loadUserByUsername(user.getUsername()));
+
+        // When
+        mockMvc.perform(get("/api/cards").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        // Then
+        String body = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(body.contains("bank_http_connection_hold_seconds_count{"));
+        assertTrue(body.lines().anyMatch(line -> line.startsWith("bank_http_connection_count_sum{")
+                && line.contains("uri=\"/api/cards\"") && !line.endsWith(" 0.0")));
+    }
+
+    @Test
+    void metricsEndpoint_WithoutAdmin_ShouldBeRejected() throws Exception {
+        mockMvc.perform(get("/actuator/metrics"))
+                .andExpect(status().isForbidden());
+    }
+}
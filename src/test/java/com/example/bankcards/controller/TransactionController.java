@@ -1,13 +1,19 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.RecurringTransferRequest;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.RecurringFrequency;
+import com.example.bankcards.entity.RecurringTransfer;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.TransferIntent;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.RecurringTransferService;
 import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.service.TransferIntentService;
 import com.example.bankcards.service.UserService;
 import com.example.bankcards.service.EncryptionService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -23,8 +29,11 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -54,6 +63,12 @@ class TransactionControllerTest {
     @MockBean
     private EncryptionService encryptionService;
 
+    @MockBean
+    private TransferIntentService transferIntentService;
+
+    @MockBean
+    private RecurringTransferService recurringTransferService;
+
     private User createTestUser() {
         User user = new User();
         user.setId(1L);
@@ -112,4 +127,88 @@ class TransactionControllerTest {
                 .andExpect(jsonPath("$.toCardMasked").value("**** **** **** 2222"))
                 .andExpect(jsonPath("$.amount").value(100.00));
     }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = "USER")
+    void transferBetweenCards_Async_ShouldAcceptWithoutExecuting() throws Exception {
+        // Given
+        User user = createTestUser();
+        Card fromCard = createTestCard("4111111111111111");
+        Card toCard = createTestCard("4222222222222222");
+        TransferIntent intent = new TransferIntent(user.getId(), fromCard.getCardNumber(), toCard.getCardNumber(),
+                new BigDecimal("100.00"), "Test transfer");
+        intent.setId(7L);
+
+        TransferRequest transferRequest = new TransferRequest(
+                "4111111111111111",
+                "4222222222222222",
+                new BigDecimal("100.00"),
+                "Test transfer"
+        );
+
+        when(userService.findByUsername("testuser")).thenReturn(user);
+        when(encryptionService.encrypt("4111111111111111")).thenReturn("encrypted-4111");
+        when(encryptionService.encrypt("4222222222222222")).thenReturn("encrypted-4222");
+        when(cardService.getByCardNumberAndUser("encrypted-4111", user)).thenReturn(fromCard);
+        when(cardService.getByCardNumberAndUser("encrypted-4222", user)).thenReturn(toCard);
+        when(transferIntentService.accept(eq(fromCard), eq(toCard), any(BigDecimal.class), anyString(), eq(user)))
+                .thenReturn(intent);
+        when(cardService.getMaskedCardNumber(fromCard.getCardNumber())).thenReturn("**** **** **** 1111");
+
+        // When & Then
+        mockMvc.perform(post("/api/transactions/transfer")
+                        .param("async", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferRequest))
+                        .with(csrf()))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/transactions/transfer/7"))
+                .andExpect(jsonPath("$.id").value(7))
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andExpect(jsonPath("$.fromCardMasked").value("**** **** **** 1111"));
+
+        verify(transactionService, never()).transferBetweenCards(any(), any(), any(), any());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser", roles = "USER")
+    void createRecurringTransfer_ShouldScheduleWithoutExecuting() throws Exception {
+        // Given
+        User user = createTestUser();
+        Card fromCard = createTestCard("4111111111111111");
+        Card toCard = createTestCard("4222222222222222");
+        LocalDateTime firstRunAt = LocalDateTime.of(2030, 1, 31, 0, 0);
+        RecurringTransfer transfer = new RecurringTransfer(user.getId(), fromCard.getCardNumber(),
+                toCard.getCardNumber(), new BigDecimal("50.00"), "Savings", RecurringFrequency.MONTHLY, firstRunAt);
+        transfer.setId(3L);
+
+        RecurringTransferRequest request = new RecurringTransferRequest();
+        request.setFromCardNumber("4111111111111111");
+        request.setToCardNumber("4222222222222222");
+        request.setAmount(new BigDecimal("50.00"));
+        request.setDescription("Savings");
+        request.setFrequency(RecurringFrequency.MONTHLY);
+        request.setFirstRunAt(firstRunAt);
+
+        when(userService.findByUsername("testuser")).thenReturn(user);
+        when(encryptionService.encrypt("4111111111111111")).thenReturn("encrypted-4111");
+        when(encryptionService.encrypt("4222222222222222")).thenReturn("encrypted-4222");
+        when(cardService.getByCardNumberAndUser("encrypted-4111", user)).thenReturn(fromCard);
+        when(cardService.getByCardNumberAndUser("encrypted-4222", user)).thenReturn(toCard);
+        when(recurringTransferService.create(fromCard, toCard, new BigDecimal("50.00"), "Savings",
+                RecurringFrequency.MONTHLY, firstRunAt, user)).thenReturn(transfer);
+
+        // When & Then
+        mockMvc.perform(post("/api/transactions/recurring")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request))
+                        .with(csrf()))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/transactions/recurring/3"))
+                .andExpect(jsonPath("$.status").value("ACTIVE"))
+                .andExpect(jsonPath("$.frequency").value("MONTHLY"))
+                .andExpect(jsonPath("$.nextRunAt").value("2030-01-31T00:00:00"));
+
+        verify(transactionService, never()).transferBetweenCards(any(), any(), any(), any());
+    }
 }
\ No newline at end of file
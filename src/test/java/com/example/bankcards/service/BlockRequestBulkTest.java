@@ -0,0 +1,169 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BulkBlockRequestAction;
+import com.example.bankcards.dto.BulkBlockRequestResult;
+import com.example.bankcards.entity.*;
+import com.example.bankcards.exception.CardExpiredException;
+import com.example.bankcards.repository.BlockRequestRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Контекст общий с SecondLevelCacheTest (общие на JVM регионы L2-кэша)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class BlockRequestBulkTest {
+
+    @Autowired private CardService cardService;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private BlockRequestRepository blockRequestRepository;
+
+    private User user;
+    private User admin;
+    private final List<Card> cards = new ArrayList<>();
+    private final List<BlockRequest> requests = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        user = userRepository.save(new User("bulkblock" + suffix, "bulkblock" + suffix + "@bank.com",
+                "password", Role.ROLE_USER));
+        admin = userRepository.save(new User("bulkadmin" + suffix, "bulkadmin" + suffix + "@bank.com",
+                "password", Role.ROLE_ADMIN));
+
+        cards.clear();
+        requests.clear();
+        for (int i = 0; i < 3; i++) {
+            Card card = cardRepository.save(new Card("bulk-block-" + i + "-" + suffix, "BULK USER",
+                    LocalDate.now().plusYears(1), CardStatus.PENDING_BLOCK, BigDecimal.TEN, user));
+            cards.add(card);
+
+            BlockRequest request = new BlockRequest();
+            request.setCard(card);
+            request.setUser(user);
+            request.setReason("fraud");
+            requests.add(blockRequestRepository.save(request));
+        }
+    }
+
+    @Test
+    void approveBlockRequests_ByIds_ShouldBlockOnlySelectedCards() {
+        // Given
+        BulkBlockRequestAction action = new BulkBlockRequestAction();
+        action.setIds(List.of(requests.get(0).getId(), requests.get(1).getId()));
+
+        // When
+        BulkBlockRequestResult result = cardService.approveBlockRequests(action, admin);
+
+        // Then
+        assertEquals(BlockRequestStatus.APPROVED, result.getResultStatus());
+        assertEquals(2, result.getRequestsUpdated());
+        assertEquals(2, result.getCardsUpdated());
+
+        assertEquals(CardStatus.BLOCKED, cardRepository.findById(cards.get(0).getCardNumber()).orElseThrow().getStatus());
+        assertEquals(CardStatus.BLOCKED, cardRepository.findById(cards.get(1).getCardNumber()).orElseThrow().getStatus());
+        assertEquals(CardStatus.PENDING_BLOCK, cardRepository.findById(cards.get(2).getCardNumber()).orElseThrow().getStatus());
+
+        BlockRequest approved = blockRequestRepository.findById(requests.get(0).getId()).orElseThrow();
+        assertEquals(BlockRequestStatus.APPROVED, approved.getStatus());
+        assertNotNull(approved.getProcessedDate());
+        assertEquals(BlockRequestStatus.PENDING,
+                blockRequestRepository.findById(requests.get(2).getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void rejectBlockRequests_ByUserFilter_ShouldReactivateCards() {
+        // Given
+        BulkBlockRequestAction action = new BulkBlockRequestAction();
+        action.setUserId(user.getId());
+        action.setReason("false alarm");
+
+        // When
+        BulkBlockRequestResult result = cardService.rejectBlockRequests(action, admin);
+
+        // Then
+        assertEquals(3, result.getRequestsUpdated());
+        assertEquals(3, result.getCardsUpdated());
+        for (Card card : cards) {
+            assertEquals(CardStatus.ACTIVE, cardRepository.findById(card.getCardNumber()).orElseThrow().getStatus());
+        }
+        BlockRequest rejected = blockRequestRepository.findById(requests.get(0).getId()).orElseThrow();
+        assertEquals(BlockRequestStatus.REJECTED, rejected.getStatus());
+        assertEquals("fraud [REJECTED: false alarm]", rejected.getReason());
+    }
+
+    @Test
+    void rejectBlockRequest_OnExpiredCard_ShouldNotReactivateIt() {
+        // Given - одну карту уже перевел в EXPIRED CardExpirySweeper, у другой срок истек до его запуска
+        Card swept = cardRepository.findById(cards.get(0).getCardNumber()).orElseThrow();
+        swept.setExpiryDate(LocalDate.now().minusMonths(1));
+        swept.setStatus(CardStatus.EXPIRED);
+        cardRepository.save(swept);
+        Card pastExpiry = cardRepository.findById(cards.get(1).getCardNumber()).orElseThrow();
+        pastExpiry.setExpiryDate(LocalDate.now().minusDays(1));
+        cardRepository.save(pastExpiry);
+
+        // When
+        cardService.rejectBlockRequest(requests.get(0).getId(), admin, "false alarm");
+        cardService.rejectBlockRequest(requests.get(1).getId(), admin, "false alarm");
+
+        // Then - переводы с них по-прежнему отклоняются по статусу
+        assertEquals(CardStatus.EXPIRED, cardRepository.findById(swept.getCardNumber()).orElseThrow().getStatus());
+        assertEquals(CardStatus.EXPIRED, cardRepository.findById(pastExpiry.getCardNumber()).orElseThrow().getStatus());
+        assertEquals(BlockRequestStatus.REJECTED,
+                blockRequestRepository.findById(requests.get(0).getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void rejectBlockRequests_WithCardPastExpiry_ShouldExpireIt() {
+        // Given
+        Card pastExpiry = cardRepository.findById(cards.get(2).getCardNumber()).orElseThrow();
+        pastExpiry.setExpiryDate(LocalDate.now().minusDays(1));
+        cardRepository.save(pastExpiry);
+        BulkBlockRequestAction action = new BulkBlockRequestAction();
+        action.setUserId(user.getId());
+
+        // When
+        cardService.rejectBlockRequests(action, admin);
+
+        // Then
+        assertEquals(CardStatus.ACTIVE, cardRepository.findById(cards.get(0).getCardNumber()).orElseThrow().getStatus());
+        assertEquals(CardStatus.EXPIRED, cardRepository.findById(pastExpiry.getCardNumber()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void updateCardStatus_ActivateCardPastExpiry_ShouldThrowException() {
+        // Given
+        Card card = cardRepository.findById(cards.get(0).getCardNumber()).orElseThrow();
+        card.setExpiryDate(LocalDate.now().minusDays(1));
+        card.setStatus(CardStatus.EXPIRED);
+        cardRepository.save(card);
+
+        // When & Then
+        assertThrows(CardExpiredException.class, () ->
+                cardService.updateCardStatus(card.getCardNumber(), CardStatus.ACTIVE, user));
+        assertEquals(CardStatus.EXPIRED, cardRepository.findById(card.getCardNumber()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void processBlockRequests_WithoutIdsAndFilter_ShouldThrowException() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () ->
+                cardService.approveBlockRequests(new BulkBlockRequestAction(), admin)
+        );
+    }
+}
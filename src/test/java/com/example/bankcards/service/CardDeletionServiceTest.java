@@ -0,0 +1,149 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.repository.BlockRequestRepository;
+import com.example.bankcards.repository.CardDeletionJobRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Контекст общий с SecondLevelCacheTest (общие на JVM регионы L2-кэша)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class CardDeletionServiceTest {
+
+    @Autowired private CardDeletionService cardDeletionService;
+    @Autowired private CardDeletionJobRepository jobRepository;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TransactionRepository transactionRepository;
+    @Autowired private BlockRequestRepository blockRequestRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private Card card;
+    private Card otherCard;
+
+    @BeforeEach
+    void setUp() {
+        // Маленькие пачки, чтобы задание прошло несколько транзакций
+        ReflectionTestUtils.setField(cardDeletionService, "chunkSize", 2);
+
+        String suffix = String.valueOf(System.nanoTime());
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.save(new User("deletion" + suffix, "deletion" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            card = cardRepository.save(new Card("deleted-card-" + suffix, "DELETION USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("100.00"), user));
+            otherCard = cardRepository.save(new Card("kept-card-" + suffix, "DELETION USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("100.00"), user));
+
+            for (int i = 0; i < 3; i++) {
+                transactionRepository.save(new Transaction(card, otherCard, new BigDecimal("1.00"), "out " + i));
+            }
+            for (int i = 0; i < 2; i++) {
+                transactionRepository.save(new Transaction(otherCard, card, new BigDecimal("2.00"), "in " + i));
+            }
+            transactionRepository.save(new Transaction(otherCard, otherCard, new BigDecimal("3.00"), "kept"));
+
+            BlockRequest request = new BlockRequest();
+            request.setCard(card);
+            request.setUser(user);
+            request.setReason("lost");
+            request.setStatus(BlockRequestStatus.REJECTED);
+            blockRequestRepository.save(request);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(cardDeletionService, "chunkSize", 1000);
+    }
+
+    @Test
+    void requestDeletion_ShouldArchiveHistoryInBackgroundAndDeleteCard() throws Exception {
+        // When
+        CardDeletionJob job = cardDeletionService.requestDeletion(card);
+
+        // Then - карта сразу недоступна для переводов, история обрабатывается в фоне
+        assertEquals(CardDeletionStatus.RUNNING, job.getStatus());
+        assertEquals(CardStatus.DELETED, card.getStatus());
+
+        job = awaitCompletion(card.getCardNumber());
+        assertEquals(5, job.getArchivedTransactions());
+        assertEquals(1, job.getDeletedBlockRequests());
+        assertNotNull(job.getFinishedAt());
+
+        assertFalse(cardRepository.findById(card.getCardNumber()).isPresent());
+        assertTrue(cardRepository.findById(otherCard.getCardNumber()).isPresent());
+        assertEquals(0, count("SELECT COUNT(*) FROM transactions WHERE from_card_number = ? OR to_card_number = ?",
+                card.getCardNumber(), card.getCardNumber()));
+        assertEquals(1, count("SELECT COUNT(*) FROM transactions WHERE from_card_number = ?",
+                otherCard.getCardNumber()));
+        assertEquals(5, count("SELECT COUNT(*) FROM transactions_archive WHERE from_card_number = ? OR to_card_number = ?",
+                card.getCardNumber(), card.getCardNumber()));
+        assertEquals(0, count("SELECT COUNT(*) FROM block_requests WHERE card_number = ?", card.getCardNumber()));
+    }
+
+    @Test
+    void run_ShouldContinueInterruptedJobFromSavedProgress() {
+        // Given - задание прервано перезапуском после первой пачки переводов
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE cards SET status = ? WHERE card_number = ?",
+                    CardStatus.DELETED.name(), card.getCardNumber());
+            jdbcTemplate.update("INSERT INTO transactions_archive " +
+                    "(id, from_card_number, to_card_number, amount, transaction_date, description, archived_at) " +
+                    "SELECT id, from_card_number, to_card_number, amount, transaction_date, description, CURRENT_TIMESTAMP " +
+                    "FROM transactions WHERE description = 'out 0' AND from_card_number = ?", card.getCardNumber());
+            jdbcTemplate.update("DELETE FROM transactions WHERE description = 'out 0' AND from_card_number = ?",
+                    card.getCardNumber());
+
+            CardDeletionJob interrupted = new CardDeletionJob(card.getCardNumber(), card.getUser().getId());
+            interrupted.setArchivedTransactions(1);
+            jobRepository.save(interrupted);
+        });
+
+        // When
+        CardDeletionJob job = cardDeletionService.run(card.getCardNumber());
+
+        // Then
+        assertEquals(CardDeletionStatus.COMPLETED, job.getStatus());
+        assertEquals(5, job.getArchivedTransactions());
+        assertEquals(5, count("SELECT COUNT(*) FROM transactions_archive WHERE from_card_number = ? OR to_card_number = ?",
+                card.getCardNumber(), card.getCardNumber()));
+        assertEquals(0, count("SELECT COUNT(*) FROM cards WHERE card_number = ?", card.getCardNumber()));
+    }
+
+    private CardDeletionJob awaitCompletion(String cardNumber) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            CardDeletionJob job = jobRepository.findById(cardNumber).orElseThrow();
+            if (job.getStatus() != CardDeletionStatus.RUNNING) {
+                assertEquals(CardDeletionStatus.COMPLETED, job.getStatus(), job.getError());
+                return job;
+            }
+            Thread.sleep(20);
+        }
+        return fail("Card deletion job did not finish");
+    }
+
+    private long count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Long.class, args);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:expirytest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "cards.expiry-sweeper.enabled=true",
+        "cards.expiry-sweeper.chunk-size=2"
+})
+class CardExpirySweeperTest {
+
+    @Autowired private CardExpirySweeper cardExpirySweeper;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private Card saveCard(User user, String number, LocalDate expiryDate, CardStatus status) {
+        return cardRepository.save(new Card(number, "EXPIRY USER", expiryDate, status, BigDecimal.TEN, user));
+    }
+
+    @Test
+    void sweepBefore_ShouldExpireActiveCardsAfterMonthEnd() {
+        // Given - новый месяц наступил 1 марта 2026, карты MM/YY хранятся последним днем месяца
+        LocalDate cutoff = LocalDate.of(2026, 3, 1);
+        String suffix = String.valueOf(System.nanoTime());
+        User user = userRepository.save(new User("expiry" + suffix, "expiry" + suffix + "@bank.com",
+                "password", Role.ROLE_USER));
+
+        saveCard(user, "exp-1-" + suffix, LocalDate.of(2026, 2, 28), CardStatus.ACTIVE);
+        saveCard(user, "exp-2-" + suffix, LocalDate.of(2026, 1, 31), CardStatus.ACTIVE);
+        saveCard(user, "exp-3-" + suffix, LocalDate.of(2025, 12, 31), CardStatus.ACTIVE);
+        saveCard(user, "pending-" + suffix, LocalDate.of(2026, 2, 28), CardStatus.PENDING_BLOCK);
+        saveCard(user, "valid-" + suffix, LocalDate.of(2026, 3, 31), CardStatus.ACTIVE);
+        saveCard(user, "blocked-" + suffix, LocalDate.of(2026, 2, 28), CardStatus.BLOCKED);
+
+        // Карта уже в кэше второго уровня со статусом ACTIVE
+        assertEquals(CardStatus.ACTIVE, cardRepository.findById("exp-1-" + suffix).orElseThrow().getStatus());
+        long runsBefore = meterRegistry.get("cards.expiry.sweep.expired").summary().count();
+
+        // When - четыре карты (включая ожидающую блокировки) при размере пачки 2
+        int expired = cardExpirySweeper.sweepBefore(cutoff);
+
+        // Then
+        assertEquals(4, expired);
+        assertEquals(CardStatus.EXPIRED, cardRepository.findById("exp-1-" + suffix).orElseThrow().getStatus());
+        assertEquals(CardStatus.EXPIRED, cardRepository.findById("exp-2-" + suffix).orElseThrow().getStatus());
+        assertEquals(CardStatus.EXPIRED, cardRepository.findById("exp-3-" + suffix).orElseThrow().getStatus());
+        assertEquals(CardStatus.EXPIRED, cardRepository.findById("pending-" + suffix).orElseThrow().getStatus());
+        assertEquals(CardStatus.ACTIVE, cardRepository.findById("valid-" + suffix).orElseThrow().getStatus());
+        assertEquals(CardStatus.BLOCKED, cardRepository.findById("blocked-" + suffix).orElseThrow().getStatus());
+
+        assertEquals(runsBefore + 1, meterRegistry.get("cards.expiry.sweep.expired").summary().count());
+        assertEquals(0, cardExpirySweeper.sweepBefore(cutoff));
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.repository.BlockRequestRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.KeyRotationCheckpointRepository;
+import com.example.bankcards.repository.RecurringTransferRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.TransferIntentRepository;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rotationtest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "encryption.current-key-version=1",
+        "encryption.keys.v1=rotatedKey123456",
+        "encryption.rotation.chunk-size=2",
+        "encryption.rotation.rows-per-second=0"
+})
+class CardKeyRotationServiceTest {
+
+    private static final List<String> PANS = List.of(
+            "4111111111111111", "4222222222222222", "4333333333333333", "4555555555555555", "4666666666666666");
+
+    @Autowired private CardKeyRotationService cardKeyRotationService;
+    @Autowired private EncryptionService encryptionService;
+    @Autowired private CardService cardService;
+    @Autowired private TransactionService transactionService;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TransactionRepository transactionRepository;
+    @Autowired private BlockRequestRepository blockRequestRepository;
+    @Autowired private KeyRotationCheckpointRepository checkpointRepository;
+    @Autowired private RecurringTransferRepository recurringTransferRepository;
+    @Autowired private TransferIntentRepository transferIntentRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM block_requests");
+        jdbcTemplate.update("DELETE FROM recurring_transfers");
+        jdbcTemplate.update("DELETE FROM transfer_intents");
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM cards");
+        checkpointRepository.deleteAll();
+        // Строки удалены в обход Hibernate - сбрасываем кэш второго уровня
+        entityManagerFactory.getCache().evictAll();
+
+        // Карты зашифрованы старым ключом (версия 0)
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.save(new User("rotation" + System.nanoTime(), "rotation" + System.nanoTime() + "@bank.com",
+                    "password", Role.ROLE_USER));
+            for (String pan : PANS) {
+                cardRepository.save(new Card(encryptionService.encrypt(pan, 0), "ROTATION USER",
+                        LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("100.00"), user));
+            }
+
+            Card from = cardRepository.findById(encryptionService.encrypt(PANS.get(0), 0)).orElseThrow();
+            Card to = cardRepository.findById(encryptionService.encrypt(PANS.get(1), 0)).orElseThrow();
+            transactionRepository.save(new Transaction(from, to, BigDecimal.TEN, "before rotation"));
+
+            BlockRequest request = new BlockRequest();
+            request.setCard(to);
+            request.setUser(user);
+            request.setStatus(BlockRequestStatus.PENDING);
+            blockRequestRepository.save(request);
+        });
+    }
+
+    @Test
+    void lookup_BeforeRotation_ShouldFindCardEncryptedWithPreviousKey() {
+        // When - номер шифруется текущим ключом (v1), карта в БД еще под ключом 0
+        String encrypted = encryptionService.encrypt(PANS.get(2));
+        Card card = cardService.getByCardNumber(encrypted);
+
+        // Then
+        assertTrue(encrypted.startsWith("v1:"));
+        assertEquals(encryptionService.encrypt(PANS.get(2), 0), card.getCardNumber());
+    }
+
+    @Test
+    void rotate_ShouldReencryptAllCardsAndMoveReferences() {
+        // When
+        KeyRotationCheckpoint result = cardKeyRotationService.rotate();
+
+        // Then
+        assertEquals(KeyRotationStatus.COMPLETED, result.getStatus());
+        assertEquals(PANS.size(), result.getProcessed());
+        assertEquals(0, result.getFailed());
+
+        List<String> cardNumbers = jdbcTemplate.queryForList("SELECT card_number FROM cards", String.class);
+        assertEquals(PANS.size(), cardNumbers.size());
+        assertTrue(cardNumbers.stream().allMatch(number -> number.startsWith("v1:")));
+
+        String from = encryptionService.encrypt(PANS.get(0));
+        String to = encryptionService.encrypt(PANS.get(1));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transactions WHERE from_card_number = ? AND to_card_number = ?",
+                Integer.class, from, to));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM block_requests WHERE card_number = ?", Integer.class, to));
+
+        // Баланс и остальные поля перенесены, карта находится по новому номеру
+        Card card = cardService.getByCardNumber(to);
+        assertEquals(0, new BigDecimal("100.00").compareTo(card.getBalance()));
+        assertEquals(PANS.get(1), encryptionService.decrypt(card.getCardNumber()));
+    }
+
+    @Test
+    void rotate_ShouldResumeFromCheckpoint() {
+        // Given - первые две карты (по порядку номеров) уже обработаны в прошлом запуске
+        List<String> oldNumbers = jdbcTemplate.queryForList(
+                "SELECT card_number FROM cards ORDER BY card_number", String.class);
+        KeyRotationCheckpoint checkpoint = new KeyRotationCheckpoint(1);
+        checkpoint.setStatus(KeyRotationStatus.PAUSED);
+        checkpoint.setLastCardNumber(oldNumbers.get(1));
+        checkpoint.setProcessed(2);
+        checkpointRepository.save(checkpoint);
+
+        // When
+        KeyRotationCheckpoint result = cardKeyRotationService.rotate();
+
+        // Then - обработаны только карты после контрольной точки
+        assertEquals(KeyRotationStatus.COMPLETED, result.getStatus());
+        assertEquals(PANS.size(), result.getProcessed());
+        assertTrue(cardRepository.existsById(oldNumbers.get(0)));
+        assertTrue(cardRepository.existsById(oldNumbers.get(1)));
+        assertFalse(cardRepository.existsById(oldNumbers.get(2)));
+    }
+
+    @Test
+    void rotate_ShouldMoveActiveRecurringTransferToNewCardNumbers() {
+        // Given
+        Card from = cardRepository.findById(encryptionService.encrypt(PANS.get(0), 0)).orElseThrow();
+        RecurringTransfer transfer = recurringTransferRepository.save(new RecurringTransfer(from.getUser().getId(),
+                encryptionService.encrypt(PANS.get(0), 0), encryptionService.encrypt(PANS.get(1), 0),
+                BigDecimal.ONE, "standing order", RecurringFrequency.MONTHLY, LocalDateTime.now().plusDays(1)));
+
+        // When
+        cardKeyRotationService.rotate();
+
+        // Then - поручение ссылается на карты под новым ключом и по-прежнему их находит
+        RecurringTransfer moved = recurringTransferRepository.findById(transfer.getId()).orElseThrow();
+        assertEquals(RecurringTransferStatus.ACTIVE, moved.getStatus());
+        assertEquals(encryptionService.encrypt(PANS.get(0)), moved.getFromCardNumber());
+        assertEquals(encryptionService.encrypt(PANS.get(1)), moved.getToCardNumber());
+        assertEquals(PANS.get(0), encryptionService.decrypt(
+                cardService.getByCardNumber(moved.getFromCardNumber()).getCardNumber()));
+    }
+
+    @Test
+    void rotate_ShouldMovePendingTransferIntentToNewCardNumbers() {
+        // Given - перевод принят, но еще не выполнен
+        Card from = cardRepository.findById(encryptionService.encrypt(PANS.get(0), 0)).orElseThrow();
+        TransferIntent intent = transferIntentRepository.save(new TransferIntent(from.getUser().getId(),
+                encryptionService.encrypt(PANS.get(0), 0), encryptionService.encrypt(PANS.get(1), 0),
+                BigDecimal.ONE, "queued"));
+
+        // When
+        cardKeyRotationService.rotate();
+
+        // Then
+        TransferIntent moved = transferIntentRepository.findById(intent.getId()).orElseThrow();
+        assertEquals(TransferIntentStatus.PENDING, moved.getStatus());
+        assertEquals(encryptionService.encrypt(PANS.get(0)), moved.getFromCardNumber());
+        assertEquals(encryptionService.encrypt(PANS.get(1)), moved.getToCardNumber());
+    }
+
+    @Test
+    void transfer_WithCardsMovedByRotation_ShouldLockCardsUnderNewNumbers() throws Exception {
+        // Given - перевод загрузил карты по старым номерам, после чего ротация перенесла строки
+        Transaction transaction = transactionTemplate.execute(status -> {
+            Card from = cardRepository.findById(encryptionService.encrypt(PANS.get(0), 0)).orElseThrow();
+            Card to = cardRepository.findById(encryptionService.encrypt(PANS.get(1), 0)).orElseThrow();
+            CompletableFuture.runAsync(cardKeyRotationService::rotate).join();
+
+            // When
+            return transactionService.transferBetweenCards(from, to, BigDecimal.TEN, "during rotation");
+        });
+
+        // Then - перевод прошел по перенесенным строкам
+        assertEquals(encryptionService.encrypt(PANS.get(0)), transaction.getFromCard().getCardNumber());
+        assertEquals(0, new BigDecimal("90.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT balance FROM cards WHERE card_number = ?", BigDecimal.class, encryptionService.encrypt(PANS.get(0)))));
+        assertEquals(0, new BigDecimal("110.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT balance FROM cards WHERE card_number = ?", BigDecimal.class, encryptionService.encrypt(PANS.get(1)))));
+    }
+
+    @Test
+    void rotate_WhenAnotherInstanceHoldsCheckpoint_ShouldRefuse() {
+        // Given - ротацию ведет другой экземпляр, контрольная точка обновлялась недавно
+        KeyRotationCheckpoint checkpoint = new KeyRotationCheckpoint(1);
+        checkpoint.setClaimedBy("other-instance");
+        checkpointRepository.save(checkpoint);
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> cardKeyRotationService.rotate());
+        assertTrue(cardKeyRotationService.isRunning());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM cards WHERE card_number LIKE 'v1:%'", Integer.class));
+    }
+
+    @Test
+    void rotate_WhenHolderLeaseExpired_ShouldTakeOver() {
+        // Given - экземпляр упал посреди ротации и давно не обновлял контрольную точку
+        KeyRotationCheckpoint checkpoint = checkpointRepository.save(new KeyRotationCheckpoint(1));
+        jdbcTemplate.update("UPDATE key_rotation_checkpoints SET claimed_by = ?, updated_at = ? WHERE target_version = 1",
+                "crashed-instance", Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+
+        // When
+        KeyRotationCheckpoint result = cardKeyRotationService.rotate();
+
+        // Then
+        assertEquals(checkpoint.getTargetVersion(), result.getTargetVersion());
+        assertEquals(KeyRotationStatus.COMPLETED, result.getStatus());
+        assertNull(result.getClaimedBy());
+        assertFalse(cardKeyRotationService.isRunning());
+    }
+}
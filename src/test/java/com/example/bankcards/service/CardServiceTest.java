@@ -1,15 +1,18 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.entity.*;
+import com.example.bankcards.event.BlockRequestEvent;
 import com.example.bankcards.exception.*;
 import com.example.bankcards.repository.BlockRequestRepository;
 import com.example.bankcards.repository.CardRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -25,6 +28,7 @@ class CardServiceTest {
     @Mock private CardRepository cardRepository;
     @Mock private EncryptionService encryptionService;
     @Mock private BlockRequestRepository blockRequestRepository;
+    @Mock private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks private CardService cardService;
 
@@ -105,8 +109,8 @@ class CardServiceTest {
 
     @Test
     void validateCardForTransaction_WithExpiredCard_ShouldThrowCardExpiredException() {
-        // Given
-        testCard.setStatus(CardStatus.ACTIVE);
+        // Given - статус EXPIRED выставляет CardExpirySweeper
+        testCard.setStatus(CardStatus.EXPIRED);
         testCard.setExpiryDate(LocalDate.now().minusDays(1));
 
         // When & Then
@@ -115,6 +119,38 @@ class CardServiceTest {
         );
     }
 
+    @Test
+    void transferValidation_SuccessPath_ShouldNotDecryptCardNumber() {
+        // Given
+        testCard.setStatus(CardStatus.ACTIVE);
+        testCard.setBalance(new BigDecimal("100.00"));
+
+        // When
+        cardService.validateCardForTransaction(testCard);
+        cardService.validateSufficientFunds(testCard, new BigDecimal("100.00"));
+
+        // Then
+        verifyNoInteractions(encryptionService);
+    }
+
+    @Test
+    void validateSufficientFunds_ShouldBuildMessageLazilyWithoutStackTrace() {
+        // Given
+        testCard.setBalance(new BigDecimal("50.5"));
+        when(encryptionService.decrypt("encrypted123")).thenReturn("4111111111111111");
+
+        // When
+        InsufficientFundsException exception = assertThrows(InsufficientFundsException.class, () ->
+                cardService.validateSufficientFunds(testCard, new BigDecimal("100")));
+
+        // Then - номер расшифровывается только при чтении сообщения
+        verifyNoInteractions(encryptionService);
+        assertEquals("Insufficient funds on card **** **** **** 1111: balance=50.50, required=100.00",
+                exception.getMessage());
+        assertEquals(0, exception.getStackTrace().length);
+        verify(encryptionService, times(1)).decrypt("encrypted123");
+    }
+
     @Test
     void getMaskedCardNumber_ShouldReturnCorrectMaskFormat() {
         // Given
@@ -180,6 +216,11 @@ class CardServiceTest {
         assertEquals(BlockRequestStatus.PENDING, request.getStatus());
         assertEquals(reason, request.getReason());
         assertEquals(CardStatus.PENDING_BLOCK, testCard.getStatus());
+
+        ArgumentCaptor<BlockRequestEvent> event = ArgumentCaptor.forClass(BlockRequestEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(BlockRequestEvent.Type.CREATED, event.getValue().getType());
+        assertEquals(1L, event.getValue().getRequest().getId());
     }
 
     @Test
@@ -0,0 +1,128 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cardsetversiontest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class CardSetVersionServiceTest {
+
+    @Autowired
+    private CardSetVersionService cardSetVersionService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User createUser() {
+        String suffix = String.valueOf(System.nanoTime());
+        return userRepository.save(new User("version" + suffix, "version" + suffix + "@bank.com", "password", Role.ROLE_USER));
+    }
+
+    private Card createCard(User user) {
+        String suffix = String.valueOf(System.nanoTime());
+        return cardRepository.save(new Card("4000" + suffix.substring(suffix.length() - 12), "VERSION USER",
+                LocalDate.now().plusYears(2), CardStatus.ACTIVE, new BigDecimal("100.00"), user));
+    }
+
+    @Test
+    void cardChanges_ShouldChangeOnlyOwnersETag() {
+        // Given
+        User owner = createUser();
+        User other = createUser();
+        Card card = createCard(owner);
+        String ownerETag = cardSetVersionService.getETag(owner.getId(), MediaType.APPLICATION_JSON);
+        String otherETag = cardSetVersionService.getETag(other.getId(), MediaType.APPLICATION_JSON);
+
+        // When
+        card.setBalance(new BigDecimal("150.00"));
+        cardRepository.save(card);
+
+        // Then
+        assertNotEquals(ownerETag, cardSetVersionService.getETag(owner.getId(), MediaType.APPLICATION_JSON));
+        assertEquals(otherETag, cardSetVersionService.getETag(other.getId(), MediaType.APPLICATION_JSON));
+        assertTrue(ownerETag.startsWith("\"") && ownerETag.endsWith("\""));
+    }
+
+    @Test
+    void bumpInsideTransaction_ShouldApplyAfterCommit() throws Exception {
+        // Given
+        User owner = createUser();
+        String before = cardSetVersionService.getETag(owner.getId(), MediaType.APPLICATION_JSON);
+
+        // When - параллельный GET (другое соединение) читает версию до коммита
+        String during = transactionTemplate.execute(status -> {
+            createCard(owner);
+            cardSetVersionService.bump(owner.getId());
+            return CompletableFuture.supplyAsync(() -> cardSetVersionService.getETag(owner.getId(), MediaType.APPLICATION_JSON)).join();
+        });
+
+        // Then - до коммита параллельный GET не должен получить новую версию со старыми данными
+        assertEquals(before, during);
+        String after = cardSetVersionService.getETag(owner.getId(), MediaType.APPLICATION_JSON);
+        assertNotEquals(before, after);
+        assertEquals(after, cardSetVersionService.getETag(owner.getId(), MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void bumpInRolledBackTransaction_ShouldKeepETag() {
+        // Given
+        User owner = createUser();
+        String before = cardSetVersionService.getETag(owner.getId(), MediaType.APPLICATION_JSON);
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> {
+            cardSetVersionService.bump(owner.getId());
+            cardSetVersionService.bump(owner.getId());
+            status.setRollbackOnly();
+        });
+
+        // Then - увеличение откладывается до коммита и при откате не выполняется
+        assertEquals(before, cardSetVersionService.getETag(owner.getId(), MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void bumpInsideTransaction_ShouldNotLockUserRow() {
+        // Given
+        User owner = createUser();
+
+        // When - другое соединение изменяет строку пользователя, пока транзакция с увеличением не завершена
+        Integer updated = transactionTemplate.execute(status -> {
+            cardSetVersionService.bump(owner.getId());
+            return CompletableFuture.supplyAsync(() -> jdbcTemplate.update(
+                    "UPDATE users SET updated_at = CURRENT_TIMESTAMP WHERE id = ?", owner.getId()))
+                    .orTimeout(5, TimeUnit.SECONDS).join();
+        });
+
+        // Then
+        assertEquals(1, updated);
+    }
+}
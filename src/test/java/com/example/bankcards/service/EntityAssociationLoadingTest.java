@@ -0,0 +1,116 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// equals/hashCode/toString сущностей не должны обходить ленивые связи:
+// на путях перевода и списков не инициализируется ни одна коллекция.
+// Контекст общий с SecondLevelCacheTest: регионы L2-кэша Caffeine общие на JVM, и сущности
+// из разных баз H2 с одинаковыми id перемешались бы
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class EntityAssociationLoadingTest {
+
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TransactionRepository transactionRepository;
+    @Autowired private CardService cardService;
+    @Autowired private TransactionService transactionService;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+    private User user;
+    private String fromCardNumber;
+    private String toCardNumber;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        String suffix = String.valueOf(System.nanoTime());
+        fromCardNumber = "assoc-from-" + suffix;
+        toCardNumber = "assoc-to-" + suffix;
+
+        user = transactionTemplate.execute(status -> {
+            User saved = userRepository.save(new User("assoc" + suffix, "assoc" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            Card from = cardRepository.save(new Card(fromCardNumber, "ASSOC USER", LocalDate.now().plusYears(1),
+                    CardStatus.ACTIVE, new BigDecimal("1000.00"), saved));
+            Card to = cardRepository.save(new Card(toCardNumber, "ASSOC USER", LocalDate.now().plusYears(1),
+                    CardStatus.ACTIVE, new BigDecimal("0.00"), saved));
+            for (int i = 0; i < 5; i++) {
+                transactionRepository.save(new Transaction(from, to, new BigDecimal("1.00"), "history " + i));
+            }
+            return saved;
+        });
+        statistics.clear();
+    }
+
+    @Test
+    void transferPath_ShouldNotInitializeCollections() {
+        // When - как в TransactionController: карты по номеру, перевод, карты в логах и в множествах
+        transactionTemplate.executeWithoutResult(status -> {
+            Card from = cardService.getByCardNumberAndUser(fromCardNumber, user);
+            Card to = cardService.getByCardNumberAndUser(toCardNumber, user);
+            Transaction transaction = transactionService.transferBetweenCards(from, to, new BigDecimal("10.00"), "test");
+
+            Set<Object> entities = new HashSet<>(Set.of(from, to, transaction, from.getUser()));
+            assertFalse(entities.toString().isEmpty());
+            assertEquals(from, cardService.getByCardNumberAndUser(fromCardNumber, user));
+        });
+
+        // Then
+        assertEquals(0, statistics.getCollectionLoadCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    @Test
+    void listingPath_ShouldNotInitializeCollections() {
+        // When
+        transactionTemplate.executeWithoutResult(status -> {
+            Slice<Card> cards = cardService.getUserCards(user, PageRequest.of(0, 10), false);
+            Slice<Transaction> history = transactionService.getCardTransactions(fromCardNumber, PageRequest.of(0, 10), false);
+
+            Set<Object> entities = new HashSet<>(cards.getContent());
+            entities.addAll(history.getContent());
+            assertEquals(2 + 5, entities.size());
+            assertFalse(entities.toString().isEmpty());
+        });
+
+        // Then
+        assertEquals(0, statistics.getCollectionLoadCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    @Test
+    void collectionAccess_ShouldBeCountedByStatistics() {
+        // Проверка самой метрики: явное обращение к истории карты загружает коллекцию
+        transactionTemplate.executeWithoutResult(status ->
+                assertEquals(5, cardRepository.findById(fromCardNumber).orElseThrow().getSentTransactions().size()));
+
+        assertEquals(1, statistics.getCollectionLoadCount());
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:batchtest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.order_updates=true"
+})
+class JdbcBatchingTest {
+
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TransactionRepository transactionRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    @Test
+    void saveAll_ShouldInsertTransactionsInJdbcBatches() {
+        // Given
+        String suffix = String.valueOf(System.nanoTime());
+        List<Card> cards = transactionTemplate.execute(status -> {
+            User user = userRepository.save(new User("batch" + suffix, "batch" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            Card from = cardRepository.save(new Card("batch-from-" + suffix, "BATCH USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("1000.00"), user));
+            Card to = cardRepository.save(new Card("batch-to-" + suffix, "BATCH USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("1000.00"), user));
+            return List.of(from, to);
+        });
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When - 100 переводов в одной транзакции
+        List<Long> ids = transactionTemplate.execute(status -> {
+            List<Transaction> transactions = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                transactions.add(new Transaction(cards.get(0), cards.get(1), BigDecimal.ONE, "batch " + i));
+            }
+            return transactionRepository.saveAll(transactions).stream().map(Transaction::getId).toList();
+        });
+
+        // Then - 2 обращения к последовательности и 2 батча INSERT вместо 100 отдельных запросов
+        assertEquals(100, ids.stream().distinct().count());
+        assertTrue(statistics.getPrepareStatementCount() <= 4,
+                "prepared statements: " + statistics.getPrepareStatementCount());
+    }
+}
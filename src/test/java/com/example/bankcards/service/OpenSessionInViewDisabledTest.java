@@ -0,0 +1,88 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BlockRequestResponse;
+import com.example.bankcards.entity.*;
+import com.example.bankcards.repository.BlockRequestRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// open-in-view выключен: сервисы возвращают сущности, из которых ответ строится без открытой сессии.
+// Контекст общий с SecondLevelCacheTest (общие на JVM регионы L2-кэша)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class OpenSessionInViewDisabledTest {
+
+    @Autowired private CardService cardService;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private BlockRequestRepository blockRequestRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    private User user;
+    private User admin;
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        transactionTemplate.executeWithoutResult(status -> {
+            user = userRepository.save(new User("osiv" + suffix, "osiv" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            admin = userRepository.save(new User("osivadmin" + suffix, "osivadmin" + suffix + "@bank.com",
+                    "password", Role.ROLE_ADMIN));
+            card = cardRepository.save(new Card("osiv-card-" + suffix, "OSIV USER", LocalDate.now().plusYears(1),
+                    CardStatus.PENDING_BLOCK, new BigDecimal("100.00"), user));
+        });
+    }
+
+    @Test
+    void cardListing_ShouldLoadOwnerWithCards() {
+        // When
+        Slice<Card> cards = cardService.getUserCards(user, PageRequest.of(0, 10), false);
+
+        // Then - владелец загружен тем же запросом, username доступен после закрытия сессии
+        assertEquals(1, cards.getNumberOfElements());
+        Card loaded = cards.getContent().get(0);
+        assertTrue(Hibernate.isInitialized(loaded.getUser()));
+        assertEquals(user.getUsername(), loaded.getUser().getUsername());
+    }
+
+    @Test
+    void approveBlockRequest_ShouldNotNeedSessionFromCaller() {
+        // Given
+        Long requestId = transactionTemplate.execute(status -> {
+            BlockRequest request = new BlockRequest();
+            request.setCard(card);
+            request.setUser(user);
+            request.setReason("lost");
+            request.setStatus(BlockRequestStatus.PENDING);
+            return blockRequestRepository.save(request).getId();
+        });
+
+        // When - вызов вне транзакции, как из контроллера
+        Card blocked = cardService.approveBlockRequest(requestId, admin);
+
+        // Then
+        assertEquals(CardStatus.BLOCKED, blocked.getStatus());
+        BlockRequestResponse response = transactionTemplate.execute(status ->
+                cardService.toBlockRequestResponse(blockRequestRepository.findById(requestId).orElseThrow()));
+        assertEquals(BlockRequestStatus.APPROVED, response.getStatus());
+        assertEquals(admin.getUsername(), response.getProcessedByUsername());
+    }
+}
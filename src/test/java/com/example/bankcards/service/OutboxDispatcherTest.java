@@ -0,0 +1,239 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BulkBlockRequestAction;
+import com.example.bankcards.entity.*;
+import com.example.bankcards.event.FileOutboxSink;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.context.event.ApplicationEventMulticaster;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Контекст общий с SecondLevelCacheTest (общие на JVM регионы L2-кэша)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class OutboxDispatcherTest {
+
+    @Autowired private OutboxDispatcher outboxDispatcher;
+    @Autowired private TransactionService transactionService;
+    @Autowired private CardService cardService;
+    @Autowired private EncryptionService encryptionService;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private ConfigurableApplicationContext context;
+
+    private final List<OutboxEvent> received = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean failNextDelivery = new AtomicBoolean();
+    private ApplicationListener<PayloadApplicationEvent<OutboxEvent>> listener;
+
+    private User user;
+    private Card first;
+    private Card second;
+
+    @BeforeEach
+    void setUp() {
+        // Получатель событий внутри процесса (ApplicationEventOutboxSink)
+        listener = event -> {
+            if (failNextDelivery.compareAndSet(true, false)) {
+                throw new IllegalStateException("consumer is down");
+            }
+            received.add(event.getPayload());
+        };
+        context.addApplicationListener(listener);
+
+        String suffix = String.valueOf(System.nanoTime());
+        // Настоящий номер: запрос на блокировку принимает его в открытом виде
+        String cardNumber = String.format("5%015d", System.nanoTime() % 1_000_000_000_000_000L);
+        transactionTemplate.executeWithoutResult(status -> {
+            user = userRepository.save(new User("outbox" + suffix, "outbox" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            first = cardRepository.save(new Card(encryptionService.encrypt(cardNumber),
+                    "OUTBOX USER", LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("100.00"), user));
+            second = cardRepository.save(new Card("outbox-second-" + suffix, "OUTBOX USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("100.00"), user));
+        });
+        // События других тестов контекста здесь не нужны
+        outboxDispatcher.dispatch();
+        received.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.getBean(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME,
+                ApplicationEventMulticaster.class).removeApplicationListener(listener);
+    }
+
+    @Test
+    void transfer_ShouldWriteEventInSameTransaction() throws Exception {
+        // When
+        Transaction transaction = transactionService.transferBetweenCards(
+                first, second, new BigDecimal("25.00"), "outbox");
+        assertThrows(InsufficientFundsException.class, () -> transactionService.transferBetweenCards(
+                first, second, new BigDecimal("1000.00"), "rolled back"));
+
+        // Then - только выполненный перевод, откаченный события не оставил
+        List<JsonNode> payloads = pendingPayloads(OutboxService.TRANSFER_COMPLETED);
+        assertEquals(1, payloads.size());
+        assertEquals(transaction.getId().longValue(), payloads.get(0).get("transactionId").asLong());
+        assertEquals(first.getCardNumber(), payloads.get(0).get("fromCardNumber").asText());
+        assertEquals(0, new BigDecimal("25.00").compareTo(payloads.get(0).get("amount").decimalValue()));
+    }
+
+    @Test
+    void blockRequest_ShouldWriteEventWithRequest() throws Exception {
+        // When
+        BlockRequest request = cardService.requestCardBlock(
+                encryptionService.decrypt(first.getCardNumber()), user, "lost");
+
+        // Then
+        List<JsonNode> payloads = pendingPayloads(OutboxService.BLOCK_REQUEST_PREFIX + "CREATED");
+        assertEquals(1, payloads.size());
+        assertEquals(request.getId().longValue(), payloads.get(0).get("request").get("id").asLong());
+    }
+
+    @Test
+    void bulkApprove_ShouldWriteEventPerRequest() throws Exception {
+        // Given
+        String plainNumber = encryptionService.decrypt(first.getCardNumber());
+        BlockRequest request = cardService.requestCardBlock(plainNumber, user, "lost");
+        User admin = userRepository.save(new User("outboxadmin" + System.nanoTime(),
+                "outboxadmin" + System.nanoTime() + "@bank.com", "password", Role.ROLE_ADMIN));
+        BulkBlockRequestAction action = new BulkBlockRequestAction();
+        action.setUserId(user.getId());
+
+        // When
+        cardService.approveBlockRequests(action, admin);
+
+        // Then - у внешних систем та же строка, что при одиночном одобрении, а не только итоги
+        List<JsonNode> payloads = pendingPayloads(OutboxService.BLOCK_REQUEST_PREFIX + "APPROVED");
+        assertEquals(1, payloads.size());
+        JsonNode approved = payloads.get(0).get("request");
+        assertEquals(request.getId().longValue(), approved.get("id").asLong());
+        assertEquals(first.getCardNumber(), approved.get("cardNumber").asText());
+        assertEquals("APPROVED", approved.get("status").asText());
+        assertEquals(admin.getUsername(), approved.get("processedByUsername").asText());
+        assertTrue(pendingPayloads(OutboxService.BLOCK_REQUEST_PREFIX + "BULK_PROCESSED").isEmpty());
+    }
+
+    @Test
+    void dispatch_ShouldDeliverInOrderAndRetryAfterSinkFailure() {
+        // Given
+        Transaction firstTransfer = transactionService.transferBetweenCards(first, second, new BigDecimal("1.00"), "a");
+        Transaction secondTransfer = transactionService.transferBetweenCards(second, first, new BigDecimal("2.00"), "b");
+
+        // When - получатель недоступен: пачка откатывается и остается в таблице
+        failNextDelivery.set(true);
+        assertEquals(0, outboxDispatcher.dispatch());
+        assertEquals(2, countPending());
+
+        // Then - следующий опрос доставляет по порядку и удаляет
+        assertEquals(2, outboxDispatcher.dispatch());
+        assertEquals(List.of(String.valueOf(firstTransfer.getId()), String.valueOf(secondTransfer.getId())),
+                received.stream().map(OutboxEvent::getAggregateId).toList());
+        assertEquals(0, countPending());
+    }
+
+    @Test
+    void dispatchBatch_ShouldSkipRowsLockedByAnotherDispatcher() throws Exception {
+        // Given - другой экземпляр держит первое событие
+        transactionService.transferBetweenCards(first, second, new BigDecimal("1.00"), "locked");
+        transactionService.transferBetweenCards(first, second, new BigDecimal("1.00"), "free");
+        Long lockedId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM outbox_events", Long.class);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread otherDispatcher = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList("SELECT id FROM outbox_events WHERE id = ? FOR UPDATE", lockedId);
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        otherDispatcher.start();
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        // When - без ожидания блокировки
+        int delivered;
+        try {
+            delivered = outboxDispatcher.dispatchBatch();
+        } finally {
+            release.countDown();
+            otherDispatcher.join();
+        }
+
+        // Then
+        assertEquals(1, delivered);
+        assertEquals("free", objectMapper.readTree(received.get(0).getPayload()).get("description").asText());
+        assertEquals(1, countPending());
+    }
+
+    @Test
+    void fileSink_ShouldAppendJsonLines(@TempDir Path directory) throws Exception {
+        // Given
+        FileOutboxSink sink = new FileOutboxSink();
+        ReflectionTestUtils.setField(sink, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(sink, "path", directory.resolve("outbox.jsonl"));
+        OutboxEvent event = new OutboxEvent(OutboxService.TRANSFER_COMPLETED, "42", "{\"transactionId\":42}");
+        event.setId(7L);
+
+        // When
+        sink.deliver(List.of(event));
+        sink.deliver(List.of(event));
+
+        // Then
+        List<String> lines = Files.readAllLines(directory.resolve("outbox.jsonl"));
+        assertEquals(2, lines.size());
+        JsonNode line = objectMapper.readTree(lines.get(0));
+        assertEquals(7, line.get("id").asLong());
+        assertEquals(OutboxService.TRANSFER_COMPLETED, line.get("type").asText());
+        assertEquals(42, line.get("payload").get("transactionId").asLong());
+    }
+
+    private List<JsonNode> pendingPayloads(String eventType) throws Exception {
+        List<String> payloads = jdbcTemplate.queryForList(
+                "SELECT payload FROM outbox_events WHERE event_type = ? ORDER BY id", String.class, eventType);
+        List<JsonNode> nodes = new CopyOnWriteArrayList<>();
+        for (String payload : payloads) {
+            nodes.add(objectMapper.readTree(payload));
+        }
+        return nodes;
+    }
+
+    private long countPending() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Long.class);
+    }
+}
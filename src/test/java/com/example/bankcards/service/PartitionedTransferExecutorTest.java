@@ -0,0 +1,167 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.exception.CardBlockedException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Движок включается свойством; здесь создается вручную, чтобы не поднимать отдельный контекст.
+// Контекст общий с SecondLevelCacheTest (общие на JVM регионы L2-кэша)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class PartitionedTransferExecutorTest {
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100.00");
+
+    @Autowired private AutowireCapableBeanFactory beanFactory;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private PartitionedTransferExecutor executor;
+    private final List<String> cardNumbers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        executor = new PartitionedTransferExecutor();
+        beanFactory.autowireBean(executor);
+        ReflectionTestUtils.setField(executor, "partitionCount", 4);
+        executor.start();
+
+        String suffix = String.valueOf(System.nanoTime());
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.save(new User("partitioned" + suffix, "partitioned" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            for (int i = 0; i < 6; i++) {
+                Card card = cardRepository.save(new Card("partitioned-card-" + i + "-" + suffix, "PARTITIONED USER",
+                        LocalDate.now().plusYears(1), CardStatus.ACTIVE, INITIAL_BALANCE, user));
+                cardNumbers.add(card.getCardNumber());
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Test
+    void concurrentTransfers_ShouldConserveTotalAndMatchHistory() throws Exception {
+        // Given - встречные переводы между картами разных партиций, часть - без средств
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int client = 0; client < 8; client++) {
+            int seed = client;
+            results.add(clients.submit(() -> {
+                Random random = new Random(seed);
+                int succeeded = 0;
+                for (int i = 0; i < 100; i++) {
+                    int from = random.nextInt(cardNumbers.size());
+                    int to = (from + 1 + random.nextInt(cardNumbers.size() - 1)) % cardNumbers.size();
+                    try {
+                        executor.transfer(load(from), load(to), new BigDecimal(1 + random.nextInt(30)), "load");
+                        succeeded++;
+                    } catch (InsufficientFundsException e) {
+                        // ожидаемо при случайных суммах
+                    }
+                }
+                return succeeded;
+            }));
+        }
+        int succeeded = 0;
+        for (Future<Integer> result : results) {
+            succeeded += result.get(60, TimeUnit.SECONDS);
+        }
+        clients.shutdown();
+
+        // Then - сумма сохранилась, минусов нет, баланс каждой карты сходится с историей
+        assertTrue(succeeded > 0);
+        BigDecimal total = BigDecimal.ZERO;
+        for (String cardNumber : cardNumbers) {
+            BigDecimal balance = balance(cardNumber);
+            assertTrue(balance.signum() >= 0);
+            BigDecimal received = sum("SELECT COALESCE(SUM(amount), 0) FROM transactions WHERE to_card_number = ?", cardNumber);
+            BigDecimal sent = sum("SELECT COALESCE(SUM(amount), 0) FROM transactions WHERE from_card_number = ?", cardNumber);
+            assertEquals(0, INITIAL_BALANCE.add(received).subtract(sent).compareTo(balance));
+            total = total.add(balance);
+        }
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardNumbers.size())).compareTo(total));
+        assertEquals(succeeded, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transactions WHERE description = 'load' AND from_card_number IN (?, ?, ?, ?, ?, ?)",
+                Integer.class, cardNumbers.toArray()));
+    }
+
+    @Test
+    void cardBlockedOutsideEngine_ShouldReplayWithRowLocks() {
+        // Given - баланс отправителя уже в памяти партиции, затем получателя блокируют в обход движка
+        Card from = load(0);
+        Card to = load(1);
+        executor.transfer(from, to, new BigDecimal("10.00"), "first");
+        jdbcTemplate.update("UPDATE cards SET status = ? WHERE card_number = ?",
+                CardStatus.BLOCKED.name(), cardNumbers.get(1));
+
+        // When / Then - пачка откатывается, повтор с блокировками видит актуальный статус
+        assertThrows(CardBlockedException.class,
+                () -> executor.transfer(from, to, new BigDecimal("10.00"), "second"));
+        assertEquals(0, new BigDecimal("90.00").compareTo(balance(cardNumbers.get(0))));
+        assertEquals(0, new BigDecimal("110.00").compareTo(balance(cardNumbers.get(1))));
+    }
+
+    @Test
+    void balanceLoweredOutsideEngine_ShouldNotOverdraw() {
+        // Given - в памяти 90, администратор уменьшил баланс до 5
+        executor.transfer(load(0), load(1), new BigDecimal("10.00"), "first");
+        jdbcTemplate.update("UPDATE cards SET balance = ? WHERE card_number = ?",
+                new BigDecimal("5.00"), cardNumbers.get(0));
+        entityManagerFactory.getCache().evict(Card.class, cardNumbers.get(0));
+
+        // When / Then
+        assertThrows(InsufficientFundsException.class,
+                () -> executor.transfer(load(0), load(1), new BigDecimal("50.00"), "second"));
+        assertEquals(0, new BigDecimal("5.00").compareTo(balance(cardNumbers.get(0))));
+
+        // Память партиции перечитана - следующий перевод по актуальному балансу
+        executor.transfer(load(0), load(1), new BigDecimal("5.00"), "third");
+        assertEquals(0, BigDecimal.ZERO.compareTo(balance(cardNumbers.get(0))));
+    }
+
+    private Card load(int index) {
+        return cardRepository.findById(cardNumbers.get(index)).orElseThrow();
+    }
+
+    private BigDecimal balance(String cardNumber) {
+        return sum("SELECT balance FROM cards WHERE card_number = ?", cardNumber);
+    }
+
+    private BigDecimal sum(String sql, String cardNumber) {
+        return jdbcTemplate.queryForObject(sql, BigDecimal.class, cardNumber);
+    }
+}
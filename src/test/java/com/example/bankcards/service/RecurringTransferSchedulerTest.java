@@ -0,0 +1,150 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.RecurringTransferRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Фоновое выполнение в тестах выключено; планировщик без разброса запусков создается вручную.
+// Контекст общий с SecondLevelCacheTest (общие на JVM регионы L2-кэша)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class RecurringTransferSchedulerTest {
+
+    @Autowired private AutowireCapableBeanFactory beanFactory;
+    @Autowired private RecurringTransferRepository recurringTransferRepository;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Card first;
+    private Card second;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        transactionTemplate.executeWithoutResult(status -> {
+            user = userRepository.save(new User("recurring" + suffix, "recurring" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            first = cardRepository.save(new Card("recurring-first-" + suffix, "RECURRING USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("1000.00"), user));
+            second = cardRepository.save(new Card("recurring-second-" + suffix, "RECURRING USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("0.00"), user));
+        });
+    }
+
+    @Test
+    void dueSlot_ShouldExecuteTransferOnceAndScheduleNextMonth() {
+        // Given
+        LocalDateTime firstRunAt = LocalDateTime.now().minusMinutes(5).withNano(0);
+        RecurringTransfer transfer = save(new BigDecimal("100.00"), RecurringFrequency.MONTHLY, firstRunAt);
+        RecurringTransferScheduler scheduler = create();
+
+        // When - слот срабатывает дважды (второй раз - как на другом экземпляре после освобождения слота)
+        List<RecurringTransferScheduler.Slot> slots = dueSlots(scheduler, transfer);
+        slots.forEach(scheduler::runSlot);
+        slots.forEach(scheduler::runSlot);
+
+        // Then
+        RecurringTransfer executed = recurringTransferRepository.findById(transfer.getId()).orElseThrow();
+        assertEquals(firstRunAt.plusMonths(1), executed.getNextRunAt());
+        assertEquals(1, executed.getNextRunNumber());
+        assertNotNull(executed.getLastTransactionId());
+        assertNull(executed.getLastError());
+        assertEquals(1, sentCount(first));
+        assertEquals(0, new BigDecimal("900.00").compareTo(balance(first)));
+        assertEquals(0, new BigDecimal("100.00").compareTo(balance(second)));
+    }
+
+    @Test
+    void dueSlot_WithInsufficientFunds_ShouldRecordErrorAndSkipMissedRuns() {
+        // Given - ежедневное поручение, приложение стояло 10 дней
+        LocalDateTime firstRunAt = LocalDateTime.now().minusDays(10).minusMinutes(5).withNano(0);
+        RecurringTransfer transfer = save(new BigDecimal("5000.00"), RecurringFrequency.DAILY, firstRunAt);
+        RecurringTransferScheduler scheduler = create();
+
+        // When
+        dueSlots(scheduler, transfer).forEach(scheduler::runSlot);
+
+        // Then - один неудачный запуск, следующий - завтра, пропущенные дни не догоняются
+        RecurringTransfer failed = recurringTransferRepository.findById(transfer.getId()).orElseThrow();
+        assertTrue(failed.getLastError().contains("Insufficient funds"), failed.getLastError());
+        assertEquals(firstRunAt.plusDays(11), failed.getNextRunAt());
+        assertEquals(RecurringTransferStatus.ACTIVE, failed.getStatus());
+        assertEquals(0, sentCount(first));
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balance(first)));
+    }
+
+    @Test
+    void cancelledTransfer_ShouldNotBeExecuted() {
+        // Given - отменено после загрузки в колесо
+        RecurringTransfer transfer = save(new BigDecimal("10.00"), RecurringFrequency.WEEKLY,
+                LocalDateTime.now().minusMinutes(5));
+        RecurringTransferScheduler scheduler = create();
+        List<RecurringTransferScheduler.Slot> slots = dueSlots(scheduler, transfer);
+        jdbcTemplate.update("UPDATE recurring_transfers SET status = ? WHERE id = ?",
+                RecurringTransferStatus.CANCELLED.name(), transfer.getId());
+
+        // When
+        slots.forEach(scheduler::runSlot);
+
+        // Then
+        assertEquals(0, sentCount(first));
+        assertNull(recurringTransferRepository.findById(transfer.getId()).orElseThrow().getLastRunAt());
+    }
+
+    private RecurringTransfer save(BigDecimal amount, RecurringFrequency frequency, LocalDateTime firstRunAt) {
+        return recurringTransferRepository.save(new RecurringTransfer(user.getId(), first.getCardNumber(),
+                second.getCardNumber(), amount, "standing order", frequency, firstRunAt));
+    }
+
+    private RecurringTransferScheduler create() {
+        RecurringTransferScheduler scheduler = new RecurringTransferScheduler();
+        beanFactory.autowireBean(scheduler);
+        ReflectionTestUtils.setField(scheduler, "workerCount", 0);
+        ReflectionTestUtils.setField(scheduler, "batchSize", 100);
+        ReflectionTestUtils.setField(scheduler, "spreadSeconds", 0);
+        ReflectionTestUtils.setField(scheduler, "lookaheadMinutes", 60);
+        scheduler.start();
+        return scheduler;
+    }
+
+    // Загрузить просроченные поручения и продвинуть колесо на следующую секунду
+    private List<RecurringTransferScheduler.Slot> dueSlots(RecurringTransferScheduler scheduler,
+                                                           RecurringTransfer transfer) {
+        scheduler.reload();
+        List<RecurringTransferScheduler.Slot> slots = scheduler.advance(System.currentTimeMillis() + 1000);
+        assertTrue(slots.stream().anyMatch(slot -> slot.ids.contains(transfer.getId())));
+        return slots;
+    }
+
+    private int sentCount(Card card) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE from_card_number = ?",
+                Integer.class, card.getCardNumber());
+    }
+
+    private BigDecimal balance(Card card) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM cards WHERE card_number = ?",
+                BigDecimal.class, card.getCardNumber());
+    }
+}
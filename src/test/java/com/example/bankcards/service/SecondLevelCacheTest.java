@@ -0,0 +1,97 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class SecondLevelCacheTest {
+
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private CardService cardService;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+    private String cardNumber;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        String suffix = String.valueOf(System.nanoTime());
+        cardNumber = "cached-card-" + suffix;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.save(new User("cache" + suffix, "cache" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            cardRepository.save(new Card(cardNumber, "CACHE USER", LocalDate.now().plusYears(1),
+                    CardStatus.ACTIVE, new BigDecimal("100.00"), user));
+        });
+        statistics.clear();
+    }
+
+    @Test
+    void findById_ShouldBeServedFromSecondLevelCache() {
+        // When
+        transactionTemplate.executeWithoutResult(status -> cardRepository.findById(cardNumber).orElseThrow());
+        transactionTemplate.executeWithoutResult(status -> cardRepository.findById(cardNumber).orElseThrow());
+
+        // Then
+        assertTrue(statistics.getDomainDataRegionStatistics("cards").getHitCount() >= 2);
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void findByUsername_ShouldUseQueryCache() {
+        // Given
+        String username = transactionTemplate.execute(status ->
+                cardRepository.findById(cardNumber).orElseThrow().getUser().getUsername());
+        statistics.clear();
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> userRepository.findByUsername(username).orElseThrow());
+        transactionTemplate.executeWithoutResult(status -> userRepository.findByUsername(username).orElseThrow());
+
+        // Then
+        assertEquals(1, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    void lockForBalanceUpdate_ShouldBypassStaleCache() {
+        // Given - баланс изменен в БД в обход Hibernate, в L2-кэше осталось старое значение
+        jdbcTemplate.update("UPDATE cards SET balance = 250.00 WHERE card_number = ?", cardNumber);
+
+        // When
+        BigDecimal balance = transactionTemplate.execute(status -> {
+            Card card = cardRepository.findById(cardNumber).orElseThrow();
+            assertEquals(0, new BigDecimal("100.00").compareTo(card.getBalance()));
+
+            cardService.lockForBalanceUpdate(card);
+            return card.getBalance();
+        });
+
+        // Then
+        assertEquals(0, new BigDecimal("250.00").compareTo(balance));
+    }
+}
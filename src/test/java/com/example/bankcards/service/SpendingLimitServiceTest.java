@@ -0,0 +1,131 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.exception.SpendingLimitExceededException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.SpendingTotalRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Контекст общий с SecondLevelCacheTest (общие на JVM регионы L2-кэша)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class SpendingLimitServiceTest {
+
+    @Autowired private SpendingLimitService spendingLimitService;
+    @Autowired private TransactionService transactionService;
+    @Autowired private SpendingTotalRepository totalRepository;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private User user;
+    private Card first;
+    private Card second;
+    private Card other;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        transactionTemplate.executeWithoutResult(status -> {
+            user = userRepository.save(new User("limits" + suffix, "limits" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            User recipient = userRepository.save(new User("limits-to" + suffix, "limits-to" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            first = cardRepository.save(new Card("limits-first-" + suffix, "LIMITS USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("1000.00"), user));
+            second = cardRepository.save(new Card("limits-second-" + suffix, "LIMITS USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("1000.00"), user));
+            other = cardRepository.save(new Card("limits-other-" + suffix, "LIMITS RECIPIENT",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("0.00"), recipient));
+        });
+    }
+
+    @Test
+    void transfer_OverCardDailyLimit_ShouldBeRejectedWithoutChanges() {
+        // Given
+        spendingLimitService.updateCardLimits(first.getCardNumber(), new BigDecimal("100.00"), null);
+        transactionService.transferBetweenCards(load(first), other, new BigDecimal("60.00"), "within limit");
+
+        // When / Then
+        SpendingLimitExceededException e = assertThrows(SpendingLimitExceededException.class, () ->
+                transactionService.transferBetweenCards(load(first), other, new BigDecimal("40.01"), "over limit"));
+        assertTrue(e.getMessage().contains("Daily spending limit exceeded"), e.getMessage());
+        assertEquals(0, new BigDecimal("940.00").compareTo(balance(first)));
+        assertEquals(0, new BigDecimal("60.00").compareTo(spent(SpendingScope.CARD, first.getCardNumber(), SpendingPeriod.DAY)));
+
+        // Ровно до лимита - можно
+        transactionService.transferBetweenCards(load(first), other, new BigDecimal("40.00"), "up to limit");
+        assertEquals(0, new BigDecimal("100.00").compareTo(spent(SpendingScope.CARD, first.getCardNumber(), SpendingPeriod.DAY)));
+    }
+
+    @Test
+    void transfer_AfterLimitIsSet_ShouldCountEarlierTransfersOnceAndThenUseCachedTotal() {
+        // Given - переводы до появления лимита: суммы не ведутся
+        transactionService.transferBetweenCards(load(first), other, new BigDecimal("70.00"), "before limit");
+        transactionService.transferBetweenCards(load(second), other, new BigDecimal("20.00"), "before limit");
+        spendingLimitService.updateUserLimits(user.getId(), null, new BigDecimal("100.00"));
+        assertTrue(totalRepository.findAll().stream().noneMatch(total -> total.getOwnerKey().equals(user.getId().toString())));
+
+        // When - первый перевод пересчитывает сумму по истории, следующие читают ее по ключу
+        transactionService.transferBetweenCards(load(second), other, new BigDecimal("5.00"), "recalculated");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long queriesBefore = statistics.getQueryExecutionCount();
+        transactionService.transferBetweenCards(load(first), other, new BigDecimal("5.00"), "cached total");
+
+        // Then - лимит пользователя общий для его карт
+        assertEquals(queriesBefore, statistics.getQueryExecutionCount());
+        assertThrows(SpendingLimitExceededException.class, () ->
+                transactionService.transferBetweenCards(load(second), other, new BigDecimal("0.01"), "over limit"));
+        assertEquals(0, new BigDecimal("100.00").compareTo(
+                spent(SpendingScope.USER, user.getId().toString(), SpendingPeriod.MONTH)));
+    }
+
+    @Test
+    void updateLimits_RemovingLimit_ShouldDropTotals() {
+        // Given
+        spendingLimitService.updateCardLimits(first.getCardNumber(), new BigDecimal("100.00"), new BigDecimal("500.00"));
+        transactionService.transferBetweenCards(load(first), other, new BigDecimal("10.00"), "tracked");
+
+        // When
+        spendingLimitService.updateCardLimits(first.getCardNumber(), null, new BigDecimal("500.00"));
+
+        // Then - дневная сумма удалена, месячная ведется дальше; без строки списанное считается по истории
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM spending_totals WHERE owner_key = ?", Integer.class, first.getCardNumber()));
+        assertEquals(0, new BigDecimal("10.00").compareTo(spent(SpendingScope.CARD, first.getCardNumber(), SpendingPeriod.DAY)));
+        assertThrows(IllegalArgumentException.class,
+                () -> spendingLimitService.updateCardLimits(first.getCardNumber(), BigDecimal.ZERO, null));
+    }
+
+    private Card load(Card card) {
+        return cardRepository.findById(card.getCardNumber()).orElseThrow();
+    }
+
+    private BigDecimal balance(Card card) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM cards WHERE card_number = ?",
+                BigDecimal.class, card.getCardNumber());
+    }
+
+    private BigDecimal spent(SpendingScope scope, String ownerKey, SpendingPeriod period) {
+        return spendingLimitService.getSpent(scope, ownerKey, period);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:datagentest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false",
+        "data-generator.chunk-size=70",
+        "data-generator.threads=3",
+        "data-generator.card-cache-size=10"
+})
+class SyntheticDataGeneratorTest {
+
+    @Autowired
+    private SyntheticDataGenerator generator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    @Test
+    void generate_ShouldWriteSkewedConsistentData() throws Exception {
+        // Given
+        long usersBefore = count("users");
+        long cardsBefore = count("cards");
+        long transactionsBefore = count("transactions");
+
+        // When
+        SyntheticDataGenerator.Result result = generator.generate(50, 200, 1000);
+
+        // Then
+        assertFalse(result.copyUsed);
+        assertEquals(usersBefore + 50, count("users"));
+        assertEquals(cardsBefore + 200, count("cards"));
+        assertEquals(transactionsBefore + 1000, count("transactions"));
+
+        // Номера карт расшифровываются и проходят проверку Луна
+        List<String> cardNumbers = jdbcTemplate.queryForList(
+                "SELECT card_number FROM cards ORDER BY card_number FETCH FIRST 20 ROWS ONLY", String.class);
+        for (String cardNumber : cardNumbers) {
+            String pan = encryptionService.decrypt(cardNumber);
+            assertEquals(16, pan.length());
+            assertTrue(luhnValid(pan), pan);
+        }
+
+        // Степенное распределение: на самую частую карту приходится заметно больше среднего (10 на карту)
+        Long hottest = jdbcTemplate.queryForObject(
+                "SELECT MAX(c) FROM (SELECT COUNT(*) AS c FROM transactions GROUP BY from_card_number) t", Long.class);
+        assertTrue(hottest > 50, "hottest card has " + hottest + " transfers");
+    }
+
+    @Test
+    void generate_ShouldAdvanceSequencesForApplicationInserts() throws Exception {
+        // Given
+        generator.generate(5, 10, 20);
+
+        // When - вставки через Hibernate после генерации не конфликтуют по id
+        String suffix = String.valueOf(System.nanoTime());
+        User user = userRepository.save(new User("after" + suffix, "after" + suffix + "@bank.com", "password", Role.ROLE_USER));
+
+        // Then
+        Long maxGeneratedId = jdbcTemplate.queryForObject(
+                "SELECT MAX(id) FROM users WHERE username LIKE 'gen_user_%'", Long.class);
+        assertTrue(user.getId() > maxGeneratedId);
+    }
+
+    private static boolean luhnValid(String pan) {
+        int sum = 0;
+        for (int i = 0; i < pan.length(); i++) {
+            int digit = pan.charAt(pan.length() - 1 - i) - '0';
+            if (i % 2 == 1) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return sum % 10 == 0;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.bankcards.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void advanceTo_ShouldFireEachEntryAtItsTickAcrossLevels() {
+        // Given - 60 секунд / 60 минут / 24 часа, старт не с границы минуты
+        TimingWheel<Long> wheel = new TimingWheel<>(1_000_005, 60, 60, 24);
+        long[] ticks = {1_000_006, 1_000_064, 1_000_065, 1_000_200, 1_003_604, 1_050_000, 1_086_404};
+        for (long tick : ticks) {
+            assertTrue(wheel.add(tick, tick));
+        }
+
+        // When
+        List<Long> fired = new ArrayList<>();
+        wheel.advanceTo(1_086_404, (tick, values) -> {
+            values.forEach(value -> assertEquals(tick, value));
+            fired.addAll(values);
+        });
+
+        // Then - каждая запись ровно в свой тик, по порядку
+        assertEquals(List.of(1_000_006L, 1_000_064L, 1_000_065L, 1_000_200L, 1_003_604L, 1_050_000L, 1_086_404L), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void add_ShouldRejectBeyondHorizonAndFireOverdueOnNextTick() {
+        // Given
+        TimingWheel<String> wheel = new TimingWheel<>(100, 60, 60, 24);
+
+        // When / Then
+        assertFalse(wheel.add(100 + 86_400, "beyond"));
+        assertTrue(wheel.add(100 + 86_399, "last"));
+        assertTrue(wheel.add(50, "overdue"));
+
+        List<String> fired = new ArrayList<>();
+        wheel.advanceTo(101, (tick, values) -> fired.addAll(values));
+        assertEquals(List.of("overdue"), fired);
+        assertEquals(1, wheel.size());
+    }
+}
@@ -24,6 +24,9 @@ class TransactionServiceTest {
 
     @Mock private TransactionRepository transactionRepository;
     @Mock private CardService cardService;
+    @Mock private OutboxService outboxService;
+    @Mock private TransferVelocityService velocityService;
+    @Mock private SpendingLimitService spendingLimitService;
 
     @InjectMocks private TransactionService transactionService;
 
@@ -45,6 +48,10 @@ class TransactionServiceTest {
         toCard.setExpiryDate(LocalDate.now().plusYears(1));
         toCard.setStatus(CardStatus.ACTIVE);
         toCard.setBalance(new BigDecimal("500.00"));
+
+        // Блокировка возвращает те же карты (строки не переносились ротацией ключа)
+        lenient().when(cardService.lockForBalanceUpdate(any(), any())).thenAnswer(invocation ->
+                new Card[]{invocation.getArgument(0), invocation.getArgument(1)});
     }
 
     @Test
@@ -73,6 +80,8 @@ class TransactionServiceTest {
         // Verify balances updated correctly
         assertEquals(new BigDecimal("900.00"), fromCard.getBalance());
         assertEquals(new BigDecimal("600.00"), toCard.getBalance());
+        verify(spendingLimitService).checkAndRecord(fromCard, amount);
+        verify(outboxService).recordTransfer(result);
     }
 
     @Test
@@ -137,4 +146,20 @@ class TransactionServiceTest {
                 transactionService.transferBetweenCards(fromCard, toCard, amount, "Insufficient funds")
         );
     }
+
+    @Test
+    void transferBetweenCards_OverVelocityLimit_ShouldNotChangeBalances() {
+        // Given
+        BigDecimal amount = new BigDecimal("100.00");
+
+        when(velocityService.acquire(fromCard, amount))
+                .thenThrow(new VelocityLimitExceededException("Transfer limit exceeded"));
+
+        // When & Then
+        assertThrows(VelocityLimitExceededException.class, () ->
+                transactionService.transferBetweenCards(fromCard, toCard, amount, "Too many transfers")
+        );
+        assertEquals(new BigDecimal("1000.00"), fromCard.getBalance());
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
 }
\ No newline at end of file
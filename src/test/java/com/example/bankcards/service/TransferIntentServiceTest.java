@@ -0,0 +1,190 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.exception.TransferIntentNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferIntentRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Контекст общий с SecondLevelCacheTest (общие на JVM регионы L2-кэша)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class TransferIntentServiceTest {
+
+    @Autowired private TransferIntentService transferIntentService;
+    @Autowired private TransferIntentRepository intentRepository;
+    @Autowired private SpendingLimitService spendingLimitService;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private AutowireCapableBeanFactory beanFactory;
+
+    private User user;
+    private Card first;
+    private Card second;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        transactionTemplate.executeWithoutResult(status -> {
+            user = userRepository.save(new User("async" + suffix, "async" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            first = cardRepository.save(new Card("async-first-" + suffix, "ASYNC USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("100.00"), user));
+            second = cardRepository.save(new Card("async-second-" + suffix, "ASYNC USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("100.00"), user));
+        });
+    }
+
+    @Test
+    void accept_ShouldReturnPendingAndCompleteInBackground() throws InterruptedException {
+        // When
+        TransferIntent intent = transferIntentService.accept(first, second, new BigDecimal("30.00"), "async", user);
+
+        // Then
+        assertEquals(TransferIntentStatus.PENDING, intent.getStatus());
+        TransferIntent done = awaitOutcome(intent.getId());
+        assertEquals(TransferIntentStatus.COMPLETED, done.getStatus(), done.getError());
+        assertNotNull(done.getTransactionId());
+        assertNotNull(done.getProcessedAt());
+        assertEquals(0, new BigDecimal("70.00").compareTo(balance(first)));
+        assertEquals(0, new BigDecimal("130.00").compareTo(balance(second)));
+    }
+
+    @Test
+    void process_ShouldApplyBatchInOrderAndFailOnlyRejectedIntents() {
+        // Given - принятые, но еще не обработанные переводы (мимо очереди обработчиков)
+        Long[] ids = transactionTemplate.execute(status -> new Long[]{
+                intentRepository.save(intent(first, second, "60.00")).getId(),
+                intentRepository.save(intent(first, second, "60.00")).getId(),
+                intentRepository.save(intent(second, first, "10.00")).getId()
+        });
+
+        // When
+        transferIntentService.process(List.of(ids));
+
+        // Then - второй перевод отклонен по балансу после первого, третий выполнен в той же пачке
+        assertEquals(TransferIntentStatus.COMPLETED, intentRepository.findById(ids[0]).orElseThrow().getStatus());
+        TransferIntent rejected = intentRepository.findById(ids[1]).orElseThrow();
+        assertEquals(TransferIntentStatus.FAILED, rejected.getStatus());
+        assertTrue(rejected.getError().contains("Insufficient"), rejected.getError());
+        assertNull(rejected.getTransactionId());
+        assertEquals(TransferIntentStatus.COMPLETED, intentRepository.findById(ids[2]).orElseThrow().getStatus());
+
+        assertEquals(0, new BigDecimal("50.00").compareTo(balance(first)));
+        assertEquals(0, new BigDecimal("150.00").compareTo(balance(second)));
+    }
+
+    @Test
+    void process_OverSpendingLimit_ShouldFailOnlyThatIntent() {
+        // Given - дневной лимит карты 50, второй перевод его превышает (баланса хватает)
+        spendingLimitService.updateCardLimits(first.getCardNumber(), new BigDecimal("50.00"), null);
+        Long[] ids = transactionTemplate.execute(status -> new Long[]{
+                intentRepository.save(intent(first, second, "30.00")).getId(),
+                intentRepository.save(intent(first, second, "30.00")).getId(),
+                intentRepository.save(intent(second, first, "10.00")).getId()
+        });
+
+        // When
+        transferIntentService.process(List.of(ids));
+
+        // Then - остальные переводы пачки выполнены, у отклоненного - причина отказа по лимиту
+        assertEquals(TransferIntentStatus.COMPLETED, intentRepository.findById(ids[0]).orElseThrow().getStatus());
+        TransferIntent rejected = intentRepository.findById(ids[1]).orElseThrow();
+        assertEquals(TransferIntentStatus.FAILED, rejected.getStatus());
+        assertTrue(rejected.getError().contains("Daily spending limit exceeded"), rejected.getError());
+        assertEquals(TransferIntentStatus.COMPLETED, intentRepository.findById(ids[2]).orElseThrow().getStatus());
+
+        assertEquals(0, new BigDecimal("80.00").compareTo(balance(first)));
+        assertEquals(0, new BigDecimal("120.00").compareTo(balance(second)));
+        assertEquals(0, new BigDecimal("30.00").compareTo(
+                spendingLimitService.getSpent(SpendingScope.CARD, first.getCardNumber(), SpendingPeriod.DAY)));
+    }
+
+    @Test
+    void process_OverSpendingLimit_ShouldReleaseVelocityReservation() {
+        // Given - лимиты частоты в тестах выключены: сервис с лимитом 2 перевода карты в минуту
+        TransferVelocityService velocity = new TransferVelocityService();
+        beanFactory.autowireBean(velocity);
+        ReflectionTestUtils.setField(velocity, "enabled", true);
+        ReflectionTestUtils.setField(velocity, "cardMinuteCount", 2L);
+        velocity.start();
+        Object original = ReflectionTestUtils.getField(transferIntentService, "velocityService");
+        ReflectionTestUtils.setField(transferIntentService, "velocityService", velocity);
+
+        spendingLimitService.updateCardLimits(first.getCardNumber(), new BigDecimal("50.00"), null);
+        Long[] ids = transactionTemplate.execute(status -> new Long[]{
+                intentRepository.save(intent(first, second, "30.00")).getId(),
+                intentRepository.save(intent(first, second, "30.00")).getId(),
+                intentRepository.save(intent(first, second, "20.00")).getId()
+        });
+
+        // When
+        try {
+            transferIntentService.process(List.of(ids));
+        } finally {
+            ReflectionTestUtils.setField(transferIntentService, "velocityService", original);
+        }
+
+        // Then - отклоненный по лимиту списаний перевод не занял место в лимите частоты
+        assertEquals(TransferIntentStatus.COMPLETED, intentRepository.findById(ids[0]).orElseThrow().getStatus());
+        assertEquals(TransferIntentStatus.FAILED, intentRepository.findById(ids[1]).orElseThrow().getStatus());
+        TransferIntent last = intentRepository.findById(ids[2]).orElseThrow();
+        assertEquals(TransferIntentStatus.COMPLETED, last.getStatus(), last.getError());
+        assertEquals(0, new BigDecimal("50.00").compareTo(balance(first)));
+    }
+
+    @Test
+    void getIntent_ShouldHideOtherUsersTransfers() {
+        // Given
+        TransferIntent intent = transactionTemplate.execute(status ->
+                intentRepository.save(intent(first, second, "1.00")));
+        User stranger = new User();
+        stranger.setId(user.getId() + 1);
+
+        // When / Then
+        assertEquals(intent.getId(), transferIntentService.getIntent(intent.getId(), user).getId());
+        assertThrows(TransferIntentNotFoundException.class,
+                () -> transferIntentService.getIntent(intent.getId(), stranger));
+    }
+
+    private TransferIntent intent(Card from, Card to, String amount) {
+        return new TransferIntent(user.getId(), from.getCardNumber(), to.getCardNumber(),
+                new BigDecimal(amount), "batch");
+    }
+
+    private TransferIntent awaitOutcome(Long id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            TransferIntent intent = intentRepository.findById(id).orElseThrow();
+            if (intent.getStatus() != TransferIntentStatus.PENDING) {
+                return intent;
+            }
+            Thread.sleep(20);
+        }
+        return fail("Async transfer was not processed");
+    }
+
+    private BigDecimal balance(Card card) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM cards WHERE card_number = ?",
+                BigDecimal.class, card.getCardNumber());
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.*;
+import com.example.bankcards.exception.VelocityLimitExceededException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Лимиты в тестах выключены; сервис с маленькими лимитами создается вручную.
+// Контекст общий с SecondLevelCacheTest (общие на JVM регионы L2-кэша)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cachetest;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+class TransferVelocityServiceTest {
+
+    @Autowired private AutowireCapableBeanFactory beanFactory;
+    @Autowired private TransactionService transactionService;
+    @Autowired private CardRepository cardRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    private User user;
+    private Card first;
+    private Card second;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        transactionTemplate.executeWithoutResult(status -> {
+            user = userRepository.save(new User("velocity" + suffix, "velocity" + suffix + "@bank.com",
+                    "password", Role.ROLE_USER));
+            first = cardRepository.save(new Card("velocity-first-" + suffix, "VELOCITY USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("1000.00"), user));
+            second = cardRepository.save(new Card("velocity-second-" + suffix, "VELOCITY USER",
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("1000.00"), user));
+        });
+    }
+
+    @Test
+    void acquire_ShouldRejectOverCountLimitAndReleaseOnRollback() {
+        // Given
+        TransferVelocityService velocity = create(2, 0);
+
+        // When - откаченные переводы лимит не расходуют
+        transactionTemplate.executeWithoutResult(status -> {
+            velocity.acquire(first, new BigDecimal("1.00"));
+            velocity.acquire(first, new BigDecimal("1.00"));
+            status.setRollbackOnly();
+        });
+        velocity.acquire(first, new BigDecimal("1.00"));
+        velocity.acquire(first, new BigDecimal("1.00"));
+
+        // Then
+        VelocityLimitExceededException e = assertThrows(VelocityLimitExceededException.class,
+                () -> velocity.acquire(first, new BigDecimal("1.00")));
+        assertTrue(e.getMessage().contains("2 transfers per minute"), e.getMessage());
+        velocity.acquire(second, new BigDecimal("1.00"));
+    }
+
+    @Test
+    void acquire_ShouldLimitUserAmountAcrossCards() {
+        // Given
+        TransferVelocityService velocity = create(0, 100);
+
+        // When
+        velocity.acquire(first, new BigDecimal("60.00"));
+        VelocityLimitExceededException e = assertThrows(VelocityLimitExceededException.class,
+                () -> velocity.acquire(second, new BigDecimal("40.01")));
+
+        // Then
+        assertTrue(e.getMessage().contains("user " + user.getId()), e.getMessage());
+        velocity.acquire(second, new BigDecimal("40.00"));
+    }
+
+    @Test
+    void start_ShouldRestoreCountersFromRecentTransfers() {
+        // Given - переводы до старта сервиса
+        transactionService.transferBetweenCards(first, second, new BigDecimal("1.00"), "before start");
+        transactionService.transferBetweenCards(first, second, new BigDecimal("1.00"), "before start");
+
+        // When
+        TransferVelocityService velocity = create(2, 0);
+
+        // Then
+        assertThrows(VelocityLimitExceededException.class, () -> velocity.acquire(first, new BigDecimal("1.00")));
+        velocity.acquire(second, new BigDecimal("1.00"));
+    }
+
+    @Test
+    void acquire_AfterEviction_ShouldReadMissingCardFromDatabase() {
+        // Given - переводы прошли мимо счетчиков, а недавно вытеснялись ключи с переводами в окне
+        TransferVelocityService velocity = create(2, 0);
+        ReflectionTestUtils.setField(velocity, "lastEviction", System.currentTimeMillis());
+        transactionService.transferBetweenCards(first, second, new BigDecimal("1.00"), "not in memory");
+        transactionService.transferBetweenCards(first, second, new BigDecimal("1.00"), "not in memory");
+
+        // When / Then
+        assertThrows(VelocityLimitExceededException.class, () -> velocity.acquire(first, new BigDecimal("1.00")));
+    }
+
+    // Лимит числа переводов карты в минуту и суммы пользователя за сутки, остальное - без ограничения
+    private TransferVelocityService create(long cardPerMinute, long userAmountPerDay) {
+        TransferVelocityService velocity = new TransferVelocityService();
+        beanFactory.autowireBean(velocity);
+        ReflectionTestUtils.setField(velocity, "enabled", true);
+        ReflectionTestUtils.setField(velocity, "cardMinuteCount", cardPerMinute);
+        ReflectionTestUtils.setField(velocity, "cardHourCount", 0L);
+        ReflectionTestUtils.setField(velocity, "cardDayCount", 0L);
+        ReflectionTestUtils.setField(velocity, "cardDayAmount", BigDecimal.ZERO);
+        ReflectionTestUtils.setField(velocity, "userMinuteCount", 0L);
+        ReflectionTestUtils.setField(velocity, "userHourCount", 0L);
+        ReflectionTestUtils.setField(velocity, "userDayCount", 0L);
+        ReflectionTestUtils.setField(velocity, "userDayAmount", BigDecimal.valueOf(userAmountPerDay));
+        velocity.start();
+        return velocity;
+    }
+}